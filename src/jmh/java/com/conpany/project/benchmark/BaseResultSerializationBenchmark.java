@@ -0,0 +1,133 @@
+package com.conpany.project.benchmark;
+
+import com.company.project.bean.BaseResult;
+import com.company.project.biz.entity.TransferRecord;
+import com.company.project.configurer.WebMvcConfigurer;
+import com.company.project.core.SnowflakeIdGenerator;
+import com.company.project.core.StreamingFastJsonHttpMessageConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接口响应序列化：BaseResult 经 WebMvcConfigurer 注册的 FastJson 消息转换器写出
+ * 响应体为一页转账记录，rows 为每页条数，1 即单条查询
+ * mode：buffered 整体缓冲后写出（原 FastJsonHttpMessageConverter 行为），streaming 流式写出，compact 流式写出并省略 null 字段
+ * 响应体写入只计数的输出流，不额外分配字节缓冲，配合 -prof gc 对比 gc.alloc.rate.norm 即转换器每次写出的分配字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BaseResultSerializationBenchmark {
+
+    @Param({"1", "20", "200"})
+    public int rows;
+
+    @Param({"buffered", "streaming", "compact"})
+    public String mode;
+
+    private HttpMessageConverter<Object> converter;
+    private BaseResult<List<TransferRecord>> result;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        List<HttpMessageConverter<?>> converters = new ArrayList<>();
+        WebMvcConfigurer configurer = new WebMvcConfigurer();
+        configurer.setStreamingJson(!"buffered".equals(mode));
+        configurer.configureMessageConverters(converters);
+        converter = (HttpMessageConverter<Object>) converters.get(0);
+        if ("compact".equals(mode)) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader(StreamingFastJsonHttpMessageConverter.COMPACT_HEADER, "true");
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        }
+
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 1556640000000L);
+        List<TransferRecord> records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            TransferRecord record = new TransferRecord();
+            record.setId((long) i + 1);
+            record.setFromUserId(10001L);
+            record.setToUserId(20000L + i);
+            record.setChangeMoney(100L + i);
+            record.setRecordNo(generator.nextRecordNo());
+            record.setTransactionId("C0A8006400002A9F0000000000000" + i);
+            record.setCreateTime(new Date());
+            records.add(record);
+        }
+        result = new BaseResult<>(records);
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        DiscardingOutputMessage output = new DiscardingOutputMessage();
+        converter.write(result, MediaType.APPLICATION_JSON_UTF8, output);
+        return output.body.count;
+    }
+
+    /**
+     * 每次写出新建响应头，响应体丢弃，只记录写出的字节数
+     */
+    private static final class DiscardingOutputMessage implements HttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+        private final CountingOutputStream body = new CountingOutputStream();
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.conpany.project.benchmark;
+
+import com.company.project.MainApplication;
+import com.company.project.biz.entity.TransferCredit;
+import com.company.project.biz.mapper.TransferCreditMapper;
+import com.company.project.core.SnowflakeIdGenerator;
+import com.company.project.datasource.DataSourceContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消费者入账去重：ConsumerService 入账前执行的 TransferCreditMapper#insertIgnore，record_no 唯一键冲突时插入 0 行即为重复投递
+ * 以 loadtest profile 启动应用（H2 内存库 MySQL 兼容模式，schema 同 loadtest/schema.sql），经 Spring 注入的 Mapper 与分片数据源执行，
+ * 先写入 processed 条已入账流水，hitRatio 为重复投递的比例，其余为新流水号
+ * H2 只用来对比不同已入账规模与重复比例下的相对开销，绝对耗时以 MySQL 上的压测为准
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ConsumerDedupBenchmark {
+
+    private static final int SETUP_CHUNK = 1000;
+
+    @Param({"10000", "1000000"})
+    public int processed;
+
+    @Param({"0.01", "0.5"})
+    public double hitRatio;
+
+    private ConfigurableApplicationContext context;
+    private TransferCreditMapper transferCreditMapper;
+    private SnowflakeIdGenerator generator;
+    private String[] processedKeys;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(MainApplication.class).web(false).run("--spring.profiles.active=loadtest");
+        transferCreditMapper = context.getBean(TransferCreditMapper.class);
+        generator = context.getBean(SnowflakeIdGenerator.class);
+        DataSource dataSource = context.getBean(DataSource.class);
+        DataSourceContext.callOnShard(0, () -> {
+            new ResourceDatabasePopulator(new ClassPathResource("loadtest/schema.sql")).execute(dataSource);
+            return null;
+        });
+        processedKeys = new String[processed];
+        for (int i = 0; i < processed; i++) {
+            processedKeys[i] = generator.nextRecordNo();
+        }
+        DataSourceContext.callOnShard(0, () -> {
+            List<TransferCredit> chunk = new ArrayList<>(SETUP_CHUNK);
+            for (String recordNo : processedKeys) {
+                chunk.add(credit(recordNo));
+                if (chunk.size() == SETUP_CHUNK) {
+                    transferCreditMapper.insertIgnoreBatch(chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                transferCreditMapper.insertIgnoreBatch(chunk);
+            }
+            return null;
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 按 hitRatio 重复写入已入账的流水号（返回 0），其余写入新流水号（返回 1）
+     */
+    @Benchmark
+    public int insertIgnore() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String recordNo = random.nextDouble() < hitRatio
+                ? processedKeys[random.nextInt(processedKeys.length)]
+                : generator.nextRecordNo();
+        return DataSourceContext.callOnShard(0, () -> transferCreditMapper.insertIgnore(credit(recordNo)));
+    }
+
+    private static TransferCredit credit(String recordNo) {
+        return new TransferCredit()
+                .setRecordNo(recordNo)
+                .setToUserId(1L)
+                .setChangeMoney(1L)
+                .setCreateTime(new Date());
+    }
+}
@@ -0,0 +1,100 @@
+package com.conpany.project.benchmark;
+
+import com.company.project.core.ZipfDistribution;
+import com.company.project.isolation.PerKeySerialExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PerKeySerialExecutor 吞吐：一批任务按 key 提交后等待全部完成，与 ConsumeEngine#consumePerKey 的用法一致
+ * - UNIFORM：key 在全部账户上均匀分布
+ * - SKEWED：key 服从 Zipf 分布（s=1.1），少数热点账户集中大部分任务，同一 key 的任务只能串行
+ * 每个任务消耗固定的 CPU（Blackhole.consumeCPU），模拟入账处理
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerKeySerialExecutorBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({"UNIFORM", "SKEWED"})
+    public String distribution;
+
+    @Param({"16"})
+    public int parallelism;
+
+    @Param({"10000"})
+    public int keys;
+
+    @Param({"200"})
+    public long workTokens;
+
+    private PerKeySerialExecutor executor;
+    private String[] batchKeys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = new PerKeySerialExecutor(parallelism, "bench-per-key-");
+        Random random = new Random(42);
+        // 指数为 0 时即均匀分布
+        ZipfDistribution zipf = new ZipfDistribution(keys, "SKEWED".equals(distribution) ? 1.1 : 0);
+        batchKeys = new String[BATCH * 64];
+        for (int i = 0; i < batchKeys.length; i++) {
+            batchKeys[i] = String.valueOf(zipf.sample(random));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void submitBatch(Cursor cursor) {
+        int offset = cursor.next() % (batchKeys.length / BATCH) * BATCH;
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Boolean>[] futures = new CompletableFuture[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            futures[i] = executor.submit(batchKeys[offset + i], () -> {
+                Blackhole.consumeCPU(workTokens);
+                return true;
+            });
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    /**
+     * 每次调用换一段 key，避免总是命中同一批队列
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int position;
+
+        int next() {
+            position = position == Integer.MAX_VALUE ? 0 : position + 1;
+            return position;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.conpany.project.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.company.project.biz.entity.TransferRecord;
+import com.company.project.core.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 转账消息体的 fastjson 编解码，与 TransactionProducer 构造消息、ConsumerService 解析消息的方式一致
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferRecordJsonBenchmark {
+
+    private TransferRecord transferRecord;
+    private byte[] body;
+    private String bodyString;
+
+    @Setup
+    public void setup() {
+        transferRecord = new TransferRecord();
+        transferRecord.setFromUserId(10001L);
+        transferRecord.setToUserId(20002L);
+        transferRecord.setChangeMoney(100L);
+        transferRecord.setRecordNo(new SnowflakeIdGenerator(1, 1556640000000L).nextRecordNo());
+        transferRecord.setCreateTime(new Date());
+        body = JSON.toJSONString(transferRecord).getBytes(StandardCharsets.UTF_8);
+        bodyString = new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 生产者：对象 -> 消息体字节
+     */
+    @Benchmark
+    public byte[] encode() {
+        return JSON.toJSONString(transferRecord).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 生产者：直接编码为 UTF-8 字节，省去中间字符串
+     */
+    @Benchmark
+    public byte[] encodeBytes() {
+        return JSON.toJSONBytes(transferRecord);
+    }
+
+    /**
+     * 本地事务：消息体字节 -> 对象
+     */
+    @Benchmark
+    public TransferRecord decodeBytes() {
+        return JSON.parseObject(body, TransferRecord.class);
+    }
+
+    /**
+     * 消费者：消息体先转字符串再解析
+     */
+    @Benchmark
+    public TransferRecord decodeString() {
+        return JSON.parseObject(new String(body, StandardCharsets.UTF_8), TransferRecord.class);
+    }
+
+    /**
+     * 仅解析，不含字节转字符串
+     */
+    @Benchmark
+    public TransferRecord decodeParsedString() {
+        return JSON.parseObject(bodyString, TransferRecord.class);
+    }
+}
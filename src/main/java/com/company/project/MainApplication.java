@@ -6,10 +6,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.ImportResource;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @ImportResource({"classpath:spring/*.xml"})
 @EnableConfigurationProperties
+@EnableScheduling
 //@EnableAspectJAutoProxy(exposeProxy = true, proxyTargetClass = true)
 public class MainApplication {
     public static void main(String[] args) {
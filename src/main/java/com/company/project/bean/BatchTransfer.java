@@ -0,0 +1,37 @@
+package com.company.project.bean;
+
+import com.company.project.biz.entity.TransferRecord;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 批量转账事务消息体：一个转账人，多个收款明细
+ */
+@Data
+public class BatchTransfer implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 批次号，同时作为消息key
+     */
+    private String batchNo;
+
+    /**
+     * 转账人id
+     */
+    private Long fromUserId;
+
+    /**
+     * 创建时间，所有明细共用，作为分区键
+     */
+    private Date createTime;
+
+    /**
+     * 转账明细，每条明细有独立的转账流水编号
+     */
+    private List<TransferRecord> legs;
+}
@@ -0,0 +1,25 @@
+package com.company.project.bean;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * keyset 分页结果，下一页请求带上 nextLastId 即可，不依赖 offset
+ */
+@Data
+public class KeysetPage<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 当前页数据
+     */
+    private List<T> records;
+
+    /**
+     * 下一页的起始游标，没有更多数据时为 null
+     */
+    private Long nextLastId;
+}
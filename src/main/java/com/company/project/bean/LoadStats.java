@@ -0,0 +1,73 @@
+package com.company.project.bean;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 压测发压统计，区间字段为最近一个统计周期的值，累计字段从本次压测开始计算
+ */
+@Data
+public class LoadStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 是否仍在发压，最后一次推送为 false
+     */
+    private boolean running;
+
+    /**
+     * 已运行毫秒数
+     */
+    private long elapsedMillis;
+
+    /**
+     * 目标 TPS
+     */
+    private double targetTps;
+
+    /**
+     * 区间实际完成 TPS（提交+回滚+失败）
+     */
+    private double intervalTps;
+
+    /**
+     * 区间耗时分位（微秒），从发送 half 消息到本地事务结果返回
+     */
+    private long intervalP50Micros;
+    private long intervalP99Micros;
+    private long intervalMaxMicros;
+
+    /**
+     * 累计本地事务提交数
+     */
+    private long committed;
+
+    /**
+     * 累计本地事务回滚数（如余额不足）
+     */
+    private long rolledBack;
+
+    /**
+     * 累计发送失败数
+     */
+    private long failed;
+
+    /**
+     * 工作线程全部占满而放弃的发送数，持续增长说明目标 TPS 超过了当前能力
+     */
+    private long skipped;
+
+    /**
+     * 当前正在发送的请求数
+     */
+    private int inFlight;
+
+    /**
+     * 累计耗时分位（微秒）
+     */
+    private long p50Micros;
+    private long p99Micros;
+    private long maxMicros;
+}
@@ -0,0 +1,30 @@
+package com.company.project.bean;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * 转账提交回执，流水号在提交时生成，超时返回 PENDING 时可按流水号查询转账记录确认结果
+ */
+@Data
+@Accessors(chain = true)
+public class TransferReceipt implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String COMMITTED = "COMMITTED";
+    public static final String ROLLED_BACK = "ROLLED_BACK";
+    public static final String PENDING = "PENDING";
+
+    /**
+     * 转账流水编号
+     */
+    private String recordNo;
+
+    /**
+     * COMMITTED 已扣款，入账异步完成；ROLLED_BACK 未扣款（含排队超时被取消）；PENDING 等待超时，结果未知
+     */
+    private String status;
+}
@@ -0,0 +1,29 @@
+package com.company.project.bean;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 单笔转账请求
+ */
+@Data
+public class TransferRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 转账人id
+     */
+    private Long fromUserId;
+
+    /**
+     * 被转账人id
+     */
+    private Long toUserId;
+
+    /**
+     * 转账金额
+     */
+    private Long changeMoney;
+}
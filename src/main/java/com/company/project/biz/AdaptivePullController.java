@@ -0,0 +1,120 @@
+package com.company.project.biz;
+
+import com.company.project.configurer.RocketMQConfigurer.AdaptivePullProperties;
+import com.company.project.core.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.impl.consumer.ProcessQueue;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消费者预取自适应控制（AIMD）
+ * - 过载（消费耗时 p99 超过目标或堆使用率超限）：预取阈值、拉取批量、消费批量按比例下降，DB 变慢时本地积压随之收缩
+ * - 未过载且 broker 上仍有积压：按步长上升，逐步逼近最大吞吐
+ * - 无积压时保持不变
+ * 推送消费者每次拉取、提交消费时都会重新读取这些参数，调整即时生效
+ */
+@Slf4j
+public class AdaptivePullController {
+
+    private final DefaultMQPushConsumer consumer;
+    private final AdaptivePullProperties properties;
+    private final LatencyHistogram consumeMicros = new LatencyHistogram();
+
+    private final LongAdder increases = new LongAdder();
+    private final LongAdder decreases = new LongAdder();
+    private volatile long lastP99Micros;
+    private volatile long cachedMessages;
+    private volatile long brokerBacklog;
+    private volatile double heapUsage;
+
+    public AdaptivePullController(DefaultMQPushConsumer consumer, AdaptivePullProperties properties) {
+        this.consumer = consumer;
+        this.properties = properties;
+    }
+
+    /**
+     * 记录单条消息消费耗时
+     */
+    public void record(long micros) {
+        consumeMicros.record(micros);
+    }
+
+    /**
+     * 采样并调整一次，由定时任务按 intervalMillis 调用
+     */
+    public void adjust() {
+        LatencyHistogram.Snapshot latency = consumeMicros.snapshotAndReset();
+        lastP99Micros = latency.percentile(0.99);
+        sampleQueues();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        heapUsage = heap.getMax() > 0 ? (double) heap.getUsed() / heap.getMax() : 0;
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        boolean overloaded = (latency.getCount() > 0 && lastP99Micros > properties.getTargetLatencyMillis() * 1000)
+                || heapUsage > properties.getMaxHeapUsage();
+        if (overloaded) {
+            double factor = properties.getDecreaseFactor();
+            consumer.setPullThresholdForQueue(Math.max(properties.getMinPullThreshold(),
+                    (int) (consumer.getPullThresholdForQueue() * factor)));
+            consumer.setPullBatchSize(Math.max(properties.getMinPullBatchSize(),
+                    (int) (consumer.getPullBatchSize() * factor)));
+            consumer.setConsumeMessageBatchMaxSize(Math.max(1,
+                    (int) (consumer.getConsumeMessageBatchMaxSize() * factor)));
+            decreases.increment();
+            log.info("消费过载，收缩预取 p99={}us heap={} pullThreshold={} pullBatch={} consumeBatch={}",
+                    lastP99Micros, String.format("%.2f", heapUsage), consumer.getPullThresholdForQueue(),
+                    consumer.getPullBatchSize(), consumer.getConsumeMessageBatchMaxSize());
+        } else if (brokerBacklog > 0) {
+            consumer.setPullThresholdForQueue(Math.min(properties.getMaxPullThreshold(),
+                    consumer.getPullThresholdForQueue() + properties.getPullThresholdStep()));
+            consumer.setPullBatchSize(Math.min(properties.getMaxPullBatchSize(),
+                    consumer.getPullBatchSize() + properties.getPullBatchStep()));
+            consumer.setConsumeMessageBatchMaxSize(Math.min(properties.getMaxConsumeBatchSize(),
+                    consumer.getConsumeMessageBatchMaxSize() + 1));
+            increases.increment();
+        }
+    }
+
+    /**
+     * 本地缓存的消息数与 broker 上尚未拉取的消息数（各队列最近一次拉取时的估计值）
+     */
+    private void sampleQueues() {
+        long cached = 0;
+        long backlog = 0;
+        for (ProcessQueue processQueue : consumer.getDefaultMQPushConsumerImpl().getRebalanceImpl().getProcessQueueTable().values()) {
+            if (processQueue.isDropped()) {
+                continue;
+            }
+            cached += processQueue.getMsgCount().get();
+            backlog += processQueue.getMsgAccCnt();
+        }
+        cachedMessages = cached;
+        brokerBacklog = backlog;
+    }
+
+    public List<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        LatencyHistogram.Snapshot latency = consumeMicros.snapshot();
+        metrics.add(new Metric<>("rocketmq.consume.p50Micros", latency.percentile(0.5)));
+        metrics.add(new Metric<>("rocketmq.consume.p99Micros", latency.percentile(0.99)));
+        metrics.add(new Metric<>("rocketmq.consume.lastP99Micros", lastP99Micros));
+        metrics.add(new Metric<>("rocketmq.consume.cachedMessages", cachedMessages));
+        metrics.add(new Metric<>("rocketmq.consume.brokerBacklog", brokerBacklog));
+        metrics.add(new Metric<>("rocketmq.consume.heapUsage", heapUsage));
+        metrics.add(new Metric<>("rocketmq.pull.threshold", consumer.getPullThresholdForQueue()));
+        metrics.add(new Metric<>("rocketmq.pull.batchSize", consumer.getPullBatchSize()));
+        metrics.add(new Metric<>("rocketmq.consume.batchSize", consumer.getConsumeMessageBatchMaxSize()));
+        metrics.add(new Metric<>("rocketmq.pull.increases", increases.sum()));
+        metrics.add(new Metric<>("rocketmq.pull.decreases", decreases.sum()));
+        return metrics;
+    }
+}
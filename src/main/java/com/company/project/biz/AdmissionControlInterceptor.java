@@ -0,0 +1,277 @@
+package com.company.project.biz;
+
+import com.alibaba.fastjson.JSON;
+import com.company.project.bean.BaseResult;
+import com.company.project.configurer.AdmissionConfigurer;
+import com.company.project.core.AtomicTokenBucket;
+import com.company.project.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 转账提交准入控制，在进入 Controller 之前按客户端与全局令牌桶限流，超限直接返回 429，不触达数据库与 broker
+ * - 客户端维度：项目目前没有登录拦截器填充 UserContext，按客户端 IP 限流（可信代理后取 X-Forwarded-For 第一段）
+ * - 全局维度：保护提交池、数据库与 broker 的总吞吐，两个桶都有令牌才放行，被任一维度拒绝的请求不占另一维度的额度
+ * - 本地模式：每个客户端一个无锁令牌桶，存放在 ConcurrentHashMap 中，客户端数超过上限时清理已恢复满桶的客户端
+ * - Redis 模式：两个桶在一个 Lua 脚本中原子检查与扣减，时间取 Redis 服务器时间，多实例共享限额；
+ *   Redis 异常时退回本地令牌桶，并在退避时间内不再访问 Redis，避免每个请求都等待连接超时
+ */
+@Slf4j
+@ConditionalOnProperty(prefix = "admission", name = "enabled")
+@Component
+public class AdmissionControlInterceptor extends HandlerInterceptorAdapter implements InitializingBean, PublicMetrics {
+
+    /**
+     * GCRA：每个 key 保存下一个令牌的理论到达时间（微秒），全部 key 放行才一起写回
+     * ARGV 依次为每个 key 的令牌间隔与突发容忍时长（微秒）；返回 {0, 0} 放行，{i, wait} 表示第 i 个 key 超限及需等待的微秒数
+     */
+    private static final String SCRIPT = "redis.replicate_commands()\n"
+            + "local t = redis.call('TIME')\n"
+            + "local now = tonumber(t[1]) * 1000000 + tonumber(t[2])\n"
+            + "local tats = {}\n"
+            + "for i = 1, #KEYS do\n"
+            + "  local tat = tonumber(redis.call('GET', KEYS[i]) or now)\n"
+            + "  if tat < now then tat = now end\n"
+            + "  local wait = tat - tonumber(ARGV[i * 2]) - now\n"
+            + "  if wait > 0 then return {i, wait} end\n"
+            + "  tats[i] = tat + tonumber(ARGV[i * 2 - 1])\n"
+            + "end\n"
+            + "for i = 1, #KEYS do\n"
+            + "  redis.call('SET', KEYS[i], string.format('%.0f', tats[i]), 'PX', math.ceil((tats[i] - now) / 1000) + 1)\n"
+            + "end\n"
+            + "return {0, 0}";
+
+    private static final String GLOBAL_KEY = "global";
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Autowired
+    private AdmissionConfigurer admissionConfigurer;
+
+    @Autowired(required = false)
+    private JedisPool jedisPool;
+
+    private final ConcurrentHashMap<String, AtomicTokenBucket> clientBuckets = new ConcurrentHashMap<>();
+    private AtomicTokenBucket globalBucket;
+    private final AtomicLong lastSweepNanos = new AtomicLong(System.nanoTime());
+
+    private volatile String scriptSha;
+
+    /**
+     * Redis 出错后的恢复时间（System.nanoTime()），此前直接使用本地令牌桶
+     */
+    private final AtomicLong redisRetryAtNanos = new AtomicLong(System.nanoTime());
+
+    private byte[] clientRejectedBody;
+    private byte[] globalRejectedBody;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder clientRejected = new LongAdder();
+    private final LongAdder globalRejected = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+    private final LongAdder redisBypassed = new LongAdder();
+
+    @Override
+    public void afterPropertiesSet() {
+        if (admissionConfigurer.getGlobalPermitsPerSecond() > 0) {
+            globalBucket = new AtomicTokenBucket(admissionConfigurer.getGlobalPermitsPerSecond(),
+                    admissionConfigurer.getGlobalBurst());
+        }
+        clientRejectedBody = JSON.toJSONBytes(new BaseResult<Void>(ErrorCode.TOO_MANY_REQUESTS.getErrorCode(),
+                ErrorCode.TOO_MANY_REQUESTS.getErrorMsg()));
+        globalRejectedBody = JSON.toJSONBytes(new BaseResult<Void>(ErrorCode.TOO_MANY_REQUESTS.getErrorCode(),
+                "系统繁忙，请稍后重试"));
+        if (admissionConfigurer.isRedisEnabled() && jedisPool == null) {
+            log.warn("admission.redis-enabled=true 但未找到 jedisPool，仅使用本地令牌桶");
+        }
+        log.info("转账准入控制启用 client={}/s burst={} global={}/s burst={} redis={}",
+                admissionConfigurer.getUserPermitsPerSecond(), admissionConfigurer.getUserBurst(),
+                admissionConfigurer.getGlobalPermitsPerSecond(), admissionConfigurer.getGlobalBurst(), redisEnabled());
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        // DeferredResult 完成后的异步分派会再次经过拦截器，只在首次请求时计数
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        String clientKey = clientKey(request);
+        Rejection rejection;
+        if (!redisEnabled()) {
+            rejection = tryAcquireLocal(clientKey);
+        } else if (System.nanoTime() - redisRetryAtNanos.get() < 0) {
+            redisBypassed.increment();
+            rejection = tryAcquireLocal(clientKey);
+        } else {
+            try {
+                rejection = tryAcquireRedis(clientKey);
+            } catch (Exception e) {
+                redisErrors.increment();
+                backoffRedis(e);
+                rejection = tryAcquireLocal(clientKey);
+            }
+        }
+        if (rejection == null) {
+            admitted.increment();
+            return true;
+        }
+        (rejection.global ? globalRejected : clientRejected).increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        response.setHeader(HttpHeaders.RETRY_AFTER,
+                String.valueOf(Math.max(1, (rejection.waitNanos + 999_999_999L) / 1_000_000_000L)));
+        byte[] body = rejection.global ? globalRejectedBody : clientRejectedBody;
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        return false;
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        if (admissionConfigurer.isTrustForwardedFor()) {
+            String forwardedFor = request.getHeader("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isEmpty()) {
+                int comma = forwardedFor.indexOf(',');
+                return "ip:" + (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private Rejection tryAcquireLocal(String clientKey) {
+        long now = System.nanoTime();
+        AtomicTokenBucket bucket = clientBuckets.get(clientKey);
+        if (bucket == null) {
+            sweepIfFull(now);
+            bucket = clientBuckets.computeIfAbsent(clientKey, key -> new AtomicTokenBucket(
+                    admissionConfigurer.getUserPermitsPerSecond(), admissionConfigurer.getUserBurst()));
+        }
+        long waitNanos = bucket.tryAcquire(now);
+        if (waitNanos > 0) {
+            return new Rejection(false, waitNanos);
+        }
+        if (globalBucket != null && (waitNanos = globalBucket.tryAcquire(now)) > 0) {
+            // 与 Lua 脚本一致，全局拒绝的请求不消耗客户端令牌
+            bucket.release(now);
+            return new Rejection(true, waitNanos);
+        }
+        return null;
+    }
+
+    /**
+     * 满桶的客户端与从未出现过等价，可以直接移除；每秒最多清理一次，避免活跃客户端很多时每个新客户端都遍历一遍
+     */
+    private void sweepIfFull(long now) {
+        long last = lastSweepNanos.get();
+        if (clientBuckets.size() < admissionConfigurer.getMaxTrackedUsers() || now - last < SWEEP_INTERVAL_NANOS
+                || !lastSweepNanos.compareAndSet(last, now)) {
+            return;
+        }
+        int before = clientBuckets.size();
+        clientBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+        log.info("清理空闲客户端令牌桶 {} -> {}", before, clientBuckets.size());
+    }
+
+    /**
+     * 进入退避，只有设置退避的线程打印异常，同一次故障不会每个请求都输出一条堆栈
+     */
+    private void backoffRedis(Exception e) {
+        long retryAt = redisRetryAtNanos.get();
+        long now = System.nanoTime();
+        if (now - retryAt >= 0 && redisRetryAtNanos.compareAndSet(retryAt,
+                now + TimeUnit.MILLISECONDS.toNanos(admissionConfigurer.getRedisBackoffMillis()))) {
+            log.warn("Redis令牌桶不可用，{}ms内使用本地令牌桶", admissionConfigurer.getRedisBackoffMillis(), e);
+        }
+    }
+
+    private Rejection tryAcquireRedis(String clientKey) {
+        String prefix = admissionConfigurer.getRedisKeyPrefix();
+        List<String> keys = new ArrayList<>(2);
+        List<String> args = new ArrayList<>(4);
+        keys.add(prefix + clientKey);
+        addBucketArgs(args, admissionConfigurer.getUserPermitsPerSecond(), admissionConfigurer.getUserBurst());
+        if (admissionConfigurer.getGlobalPermitsPerSecond() > 0) {
+            keys.add(prefix + GLOBAL_KEY);
+            addBucketArgs(args, admissionConfigurer.getGlobalPermitsPerSecond(), admissionConfigurer.getGlobalBurst());
+        }
+        Object result;
+        try (Jedis jedis = jedisPool.getResource()) {
+            if (scriptSha == null) {
+                scriptSha = jedis.scriptLoad(SCRIPT);
+            }
+            try {
+                result = jedis.evalsha(scriptSha, keys, args);
+            } catch (JedisDataException e) {
+                // Redis 重启或执行过 SCRIPT FLUSH 后脚本缓存丢失，EVAL 会重新缓存
+                if (e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT")) {
+                    throw e;
+                }
+                result = jedis.eval(SCRIPT, keys, args);
+            }
+        }
+        List<?> reply = (List<?>) result;
+        long index = (Long) reply.get(0);
+        if (index == 0) {
+            return null;
+        }
+        return new Rejection(index == 2, TimeUnit.MICROSECONDS.toNanos((Long) reply.get(1)));
+    }
+
+    private static void addBucketArgs(List<String> args, double permitsPerSecond, int burst) {
+        long intervalMicros = Math.max(1, (long) (TimeUnit.SECONDS.toMicros(1) / permitsPerSecond));
+        args.add(String.valueOf(intervalMicros));
+        args.add(String.valueOf(intervalMicros * (Math.max(1, burst) - 1)));
+    }
+
+    private boolean redisEnabled() {
+        return admissionConfigurer.isRedisEnabled() && jedisPool != null;
+    }
+
+    public List<String> getPathPatterns() {
+        return admissionConfigurer.getPathPatterns();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("admission.admitted", admitted.sum()));
+        metrics.add(new Metric<>("admission.rejected.client", clientRejected.sum()));
+        metrics.add(new Metric<>("admission.rejected.global", globalRejected.sum()));
+        metrics.add(new Metric<>("admission.tracked", clientBuckets.size()));
+        metrics.add(new Metric<>("admission.redis.errors", redisErrors.sum()));
+        metrics.add(new Metric<>("admission.redis.bypassed", redisBypassed.sum()));
+        return metrics;
+    }
+
+    private static final class Rejection {
+        private final boolean global;
+        private final long waitNanos;
+
+        private Rejection(boolean global, long waitNanos) {
+            this.global = global;
+            this.waitNanos = waitNanos;
+        }
+    }
+}
@@ -1,25 +1,52 @@
 package com.company.project.biz;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.alibaba.fastjson.JSON;
+import com.company.project.bean.BatchTransfer;
+import com.company.project.biz.cache.TransferRecordLookupCache;
+import com.company.project.biz.cache.UserBalanceCache;
+import com.company.project.biz.entity.TransferOutbox;
 import com.company.project.biz.entity.TransferRecord;
+import com.company.project.biz.mapper.TransferOutboxMapper;
 import com.company.project.biz.mapper.TransferRecordMapper;
 import com.company.project.biz.mapper.UserMapper;
+import com.company.project.configurer.TransferRecordPartitionConfigurer;
+import com.company.project.core.ProjectConstant;
+import com.company.project.datasource.ReadReplica;
+import com.company.project.datasource.ShardKey;
 import com.company.project.exception.BizException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
+import java.util.Date;
+import java.util.List;
 
 /**
+ * 转出方本地事务，扣钱与转账记录写入均落在转账人所在分片
+ *
  * @author: chenyin
  * @date: 2019-05-10 17:37
  */
 @Service
 public class BusinessService {
+    /**
+     * 批量转账时单条 insert 语句包含的最大行数，避免超过 max_allowed_packet
+     */
+    private static final int INSERT_CHUNK_SIZE = 500;
+
     @Resource
     private UserMapper userMapper;
     @Resource
     private TransferRecordMapper transferRecordMapper;
+    @Autowired
+    private TransferRecordPartitionConfigurer partitionConfigurer;
+    @Resource
+    private UserBalanceCache userBalanceCache;
+    @Resource
+    private TransferRecordLookupCache transferRecordLookupCache;
+    @Resource
+    private TransferOutboxMapper transferOutboxMapper;
 
     /**
      * 转账操作 A扣钱，同时新增转账明细
@@ -28,11 +55,16 @@ public class BusinessService {
      * @param toUserId      被转账人id
      * @param changeMoney   转账金额
      * @param businessNo    单次转账唯一业务标识
+     * @param createTime    转账创建时间，随消息透传，作为分区键参与唯一键去重，不能为空
      * @param transactionId 事务消息事务id
      * @return true:转账成功 false:转账失败
      */
     @Transactional(rollbackFor = Exception.class)
-    public boolean doTransfer(Long fromUserId, Long toUserId, Long changeMoney, String businessNo, String transactionId) throws Exception {
+    public boolean doTransfer(@ShardKey Long fromUserId, Long toUserId, Long changeMoney, String businessNo, Date createTime, String transactionId) throws Exception {
+        //唯一键是(record_no, create_time) 重放时createTime必须与首次一致 不能在这里补当前时间 否则同一流水会插入第二行并重复扣钱
+        if (createTime == null) {
+            throw new BizException("转账创建时间不能为空");
+        }
         //插入转账记录明细 businessNo加唯一建 做去重操作 防止消息重试发送 导致本地事务多次执行 重复扣钱
         //转账记录中 记录 消息事务transactionId 用于后续状态回查
         TransferRecord transferRecord = new TransferRecord();
@@ -41,6 +73,7 @@ public class BusinessService {
         transferRecord.setTransactionId(transactionId);
         transferRecord.setToUserId(toUserId);
         transferRecord.setRecordNo(businessNo);
+        transferRecord.setCreateTime(createTime);
 
         transferRecordMapper.insert(transferRecord);
 
@@ -50,20 +83,123 @@ public class BusinessService {
         if (result <= 0) {
             throw new BizException("账户余额不足");
         }
+        userBalanceCache.evictAfterCommit(fromUserId);
+        transferRecordLookupCache.putAfterCommit(transferRecord);
         System.out.println("转账成功,fromUserId:"+fromUserId+",toUserId:"+toUserId+",money:"+changeMoney);
         return true;
     }
+    /**
+     * 批量转账 A一次扣除总金额，同时批量新增N条转账明细
+     *
+     * @param fromUserId    转账人id
+     * @param legs          转账明细 需包含被转账人id、转账金额、转账流水编号
+     * @param createTime    批次创建时间，随消息透传，作为分区键参与唯一键去重，不能为空
+     * @param transactionId 事务消息事务id
+     * @return true:转账成功 false:转账失败
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean doBatchTransfer(@ShardKey Long fromUserId, List<TransferRecord> legs, Date createTime, String transactionId) throws Exception {
+        if (legs == null || legs.isEmpty()) {
+            throw new BizException("转账明细不能为空");
+        }
+        if (createTime == null) {
+            throw new BizException("转账创建时间不能为空");
+        }
+        long totalMoney = 0;
+        for (TransferRecord leg : legs) {
+            if (leg.getToUserId() == null || leg.getChangeMoney() == null || leg.getChangeMoney() <= 0 || leg.getRecordNo() == null) {
+                throw new BizException("转账明细参数错误");
+            }
+            totalMoney = Math.addExact(totalMoney, leg.getChangeMoney());
+            leg.setFromUserId(fromUserId);
+            leg.setTransactionId(transactionId);
+            leg.setCreateTime(createTime);
+        }
+
+        //多行insert写入明细 每条明细的record_no唯一 同样起到去重作用
+        for (int from = 0; from < legs.size(); from += INSERT_CHUNK_SIZE) {
+            transferRecordMapper.insertBatch(legs.subList(from, Math.min(from + INSERT_CHUNK_SIZE, legs.size())));
+        }
+
+        //一次扣除总金额
+        int result = userMapper.reduceMoney(fromUserId, totalMoney);
+        if (result <= 0) {
+            throw new BizException("账户余额不足");
+        }
+        userBalanceCache.evictAfterCommit(fromUserId);
+        transferRecordLookupCache.putAfterCommit(transactionId, legs);
+        System.out.println("批量转账成功,fromUserId:"+fromUserId+",legs:"+legs.size()+",totalMoney:"+totalMoney);
+        return true;
+    }
+
+    /**
+     * 本地消息表方式的转账：扣钱、转账记录与待发送消息在同一个事务中写入，消息由 OutboxRelay 发送
+     * 没有事务消息id，用转账流水编号作为 transaction_id
+     *
+     * @param transferRecord 需包含被转账人id、转账金额、转账流水编号、创建时间
+     * @return true:转账成功
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean doTransferWithOutbox(@ShardKey Long fromUserId, TransferRecord transferRecord) throws Exception {
+        transferRecord.setFromUserId(fromUserId);
+        transferRecord.setTransactionId(transferRecord.getRecordNo());
+        doTransfer(fromUserId, transferRecord.getToUserId(), transferRecord.getChangeMoney(), transferRecord.getRecordNo(),
+                transferRecord.getCreateTime(), transferRecord.getTransactionId());
+        transferOutboxMapper.insert(new TransferOutbox()
+                .setMessageKey(transferRecord.getRecordNo())
+                .setAccountKey(String.valueOf(transferRecord.getToUserId()))
+                .setBody(JSON.toJSONString(transferRecord))
+                .setStatus(TransferOutbox.STATUS_PENDING)
+                .setCreateTime(new Date()));
+        return true;
+    }
+
+    /**
+     * 本地消息表方式的批量转账，批次号作为 transaction_id
+     *
+     * @param batchTransfer 批量转账消息，明细需包含被转账人id、转账金额、转账流水编号
+     * @return true:转账成功
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean doBatchTransferWithOutbox(@ShardKey Long fromUserId, BatchTransfer batchTransfer) throws Exception {
+        doBatchTransfer(fromUserId, batchTransfer.getLegs(), batchTransfer.getCreateTime(), batchTransfer.getBatchNo());
+        transferOutboxMapper.insert(new TransferOutbox()
+                .setMessageKey(batchTransfer.getBatchNo())
+                .setTransferType(ProjectConstant.TRANSFER_TYPE_BATCH)
+                .setBody(JSON.toJSONString(batchTransfer))
+                .setStatus(TransferOutbox.STATUS_PENDING)
+                .setCreateTime(new Date()));
+        return true;
+    }
+
     /**
      * 检查本地扣钱事务执行状态
      *
+     * @param fromUserId    转账人id，决定查询的分片
      * @param transactionId
      * @return
      */
-    public boolean checkTransferStatus(String transactionId) {
+    public boolean checkTransferStatus(@ShardKey Long fromUserId, String transactionId) {
         //根据transactionId查询转账记录 有转账记录 标识本地事务执行成功 即A扣钱成功
-        int count = transferRecordMapper.selectCount(new QueryWrapper<>(new TransferRecord().setTransactionId(transactionId)));
-        return count > 0;
+        //回查只发生在消息发送后的短时间内 只需扫描最近的热分区
+        //转账记录落库后不再变化 查到的结果可以缓存 同一事务的多次回查只读一次库
+        return transferRecordLookupCache.containsTransaction(transactionId,
+                id -> transferRecordMapper.countByTransactionId(id,
+                        TransferRecordPartitions.hotSince(partitionConfigurer.getHotMonths())) > 0);
+
+    }
 
+    /**
+     * 在从库上检查本地扣钱事务执行状态
+     * 从库可能尚未复制到刚提交的转账记录，只有返回 true 是可信的，返回 false 时需再到主库确认
+     *
+     * @param fromUserId    转账人id，决定查询的分片
+     * @param transactionId
+     * @return
+     */
+    @ReadReplica
+    public boolean checkTransferStatusOnReplica(@ShardKey Long fromUserId, String transactionId) {
+        return checkTransferStatus(fromUserId, transactionId);
     }
 
 }
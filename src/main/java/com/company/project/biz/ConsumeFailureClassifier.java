@@ -0,0 +1,36 @@
+package com.company.project.biz;
+
+import com.alibaba.fastjson.JSONException;
+import com.company.project.exception.PermanentConsumeException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+
+/**
+ * 消费失败分类
+ * - 不可重试：消息体无法解析、参数非法、收款用户不存在、唯一键/约束冲突、金额溢出等重投也不会成功的失败
+ * - 可重试：锁等待超时、死锁、查询超时、连接获取失败等数据库暂时性失败，以及无法识别的异常
+ * 无法识别的异常按可重试处理，由最大重试次数兜底隔离，避免误隔离资金消息
+ */
+public final class ConsumeFailureClassifier {
+
+    private ConsumeFailureClassifier() {
+    }
+
+    public static boolean isRetryable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PermanentConsumeException
+                    || cause instanceof JSONException
+                    || cause instanceof ArithmeticException) {
+                return false;
+            }
+            // 连接失败属于 NonTransient 体系，但数据库恢复后即可成功
+            if (cause instanceof DataAccessResourceFailureException) {
+                return true;
+            }
+            if (cause instanceof NonTransientDataAccessException) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,51 @@
+package com.company.project.biz;
+
+import com.company.project.biz.entity.TransferQuarantine;
+import com.company.project.biz.mapper.TransferQuarantineMapper;
+import com.company.project.core.ProjectConstant;
+import com.company.project.datasource.DataSourceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * 不可重试的消费失败写入隔离表 transfer_quarantine，修复数据后人工重放
+ * 隔离表不按用户分片，固定写在第一个分片
+ */
+@Slf4j
+@Component
+public class ConsumeQuarantine {
+
+    private static final int MAX_REASON_LENGTH = 512;
+
+    @Resource
+    private TransferQuarantineMapper transferQuarantineMapper;
+
+    /**
+     * @return 是否写入成功，失败时调用方应让消息重试，避免丢失
+     */
+    public boolean quarantine(MessageExt msg, String reason) {
+        TransferQuarantine quarantine = new TransferQuarantine()
+                .setMsgId(msg.getMsgId())
+                .setTopic(msg.getTopic())
+                .setMsgKeys(msg.getKeys())
+                .setTransferType(msg.getUserProperty(ProjectConstant.TRANSFER_TYPE_PROPERTY))
+                .setReconsumeTimes(msg.getReconsumeTimes())
+                .setReason(reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) : reason)
+                .setBody(new String(msg.getBody(), StandardCharsets.UTF_8))
+                .setCreateTime(new Date());
+        try {
+            DataSourceContext.callOnShard(0, () -> transferQuarantineMapper.insert(quarantine));
+            log.warn("消息已隔离 msgId={} keys={} reconsumeTimes={} reason={}",
+                    msg.getMsgId(), msg.getKeys(), msg.getReconsumeTimes(), reason);
+            return true;
+        } catch (Exception e) {
+            log.error("写入隔离表失败，消息将重试 msgId={}", msg.getMsgId(), e);
+            return false;
+        }
+    }
+}
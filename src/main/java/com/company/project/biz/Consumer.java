@@ -18,32 +18,49 @@ package com.company.project.biz;
 
 import com.company.project.biz.service.ConsumerService;
 import com.company.project.configurer.RocketMQConfigurer;
+import com.company.project.core.ProjectConstant;
+import com.company.project.isolation.ConsumeEngine;
+import com.company.project.isolation.RetryBackoff;
 import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
-import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
-import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
-import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
 import org.apache.rocketmq.client.exception.MQClientException;
 import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * RocketMQ事务消息消费者
  * 集成到Spring Boot中作为Bean
  */
+@ConditionalOnProperty(prefix = "rocketmq", name = "enabled", matchIfMissing = true)
 @Component
-public class Consumer implements InitializingBean, DisposableBean {
+public class Consumer implements InitializingBean, DisposableBean, PublicMetrics {
 
     private DefaultMQPushConsumer consumer;
+
+    private ConsumeEngine consumeEngine;
+
+    private AdaptivePullController pullController;
+
+    private TransferConsumeHandler consumeHandler;
     
     @Resource
     private ConsumerService consumerService;
+
+    @Resource
+    private ConsumeQuarantine consumeQuarantine;
     
     @Autowired
     private RocketMQConfigurer rocketMQConfigurer;
@@ -63,45 +80,34 @@ public class Consumer implements InitializingBean, DisposableBean {
             // 订阅主题
             consumer.subscribe(rocketMQConfigurer.getTransactionTopic(), rocketMQConfigurer.getMessageTag());
             
-            // 注册消息监听器
-            consumer.registerMessageListener(new MessageListenerConcurrently() {
-                @Override
-                public ConsumeConcurrentlyStatus consumeMessage(List<MessageExt> msgs,
-                                                                ConsumeConcurrentlyContext context) {
-                    for (MessageExt msg : msgs) {
-                        try {
-                            String messageBody = new String(msg.getBody());
-                            System.out.println("=== 收到事务消息 ===");
-                            System.out.println("消息ID: " + msg.getMsgId());
-                            System.out.println("消息内容: " + messageBody);
-                            System.out.println("消息标签: " + msg.getTags());
-                            System.out.println("消息主题: " + msg.getTopic());
-                            System.out.println("==================");
-                            
-                            // 使用ConsumerService处理业务逻辑
-                            boolean success = consumerService.processTransferMessage(messageBody);
-                            
-                            if (!success) {
-                                System.err.println("=== 业务处理失败，将重试 ===");
-                                return ConsumeConcurrentlyStatus.RECONSUME_LATER;
-                            }
-
-                        } catch (Exception e) {
-                            System.err.println("消费消息时发生异常: " + e.getMessage());
-                            e.printStackTrace();
-                            // 返回重试状态，让RocketMQ重新投递消息
-                            return ConsumeConcurrentlyStatus.RECONSUME_LATER;
-                        }
-                    }
-                    return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
-                }
-            });
+            // 拉取与消费线程参数
+            consumer.setConsumeThreadMin(rocketMQConfigurer.getConsumeThreadMin());
+            consumer.setConsumeThreadMax(Math.max(rocketMQConfigurer.getConsumeThreadMin(), rocketMQConfigurer.getConsumeThreadMax()));
+            consumer.setConsumeMessageBatchMaxSize(rocketMQConfigurer.getConsumeMessageBatchMaxSize());
+            consumer.setPullBatchSize(rocketMQConfigurer.getPullBatchSize());
+            consumer.setPullInterval(rocketMQConfigurer.getPullInterval());
+            consumer.setPullThresholdForQueue(rocketMQConfigurer.getPullThresholdForQueue());
+            consumer.setPullThresholdSizeForQueue(rocketMQConfigurer.getPullThresholdSizeForQueue());
+            pullController = new AdaptivePullController(consumer, rocketMQConfigurer.getAdaptivePull());
+            
+            // 按消费策略注册消息监听器 PER_KEY_SERIAL 以收款账户为串行key
+            RocketMQConfigurer.RetryProperties retry = rocketMQConfigurer.getRetry();
+            // broker 侧的重试上限留出一次余量，超过 max-retries 由消费者自己隔离而不是进死信队列
+            consumer.setMaxReconsumeTimes(retry.getMaxRetries() + 1);
+            RetryBackoff retryBackoff = new RetryBackoff(retry.getDelayLevels(), retry.getBaseSuspendMillis(), retry.getMaxSuspendMillis());
+            // 延迟级别 -1 由 broker 直接投入死信队列
+            consumeHandler = new TransferConsumeHandler(consumerService, consumeQuarantine, retry,
+                    msg -> consumer.sendMessageBack(msg, -1, null));
+            consumeEngine = new ConsumeEngine(rocketMQConfigurer.getConsumeStrategy(), rocketMQConfigurer.getAccountSerialThreads(), retryBackoff,
+                    msg -> msg.getUserProperty(ProjectConstant.ACCOUNT_KEY_PROPERTY), this::consume);
+            consumer.registerMessageListener(consumeEngine.createListener());
             
             // 启动消费者
             consumer.start();
             System.out.println("=== RocketMQ消费者启动成功 ===");
             System.out.println("消费者组: " + rocketMQConfigurer.getConsumerGroup());
             System.out.println("订阅主题: " + rocketMQConfigurer.getTransactionTopic());
+            System.out.println("消费策略: " + consumeEngine.getStrategy());
             System.out.println("NameServer: " + rocketMQConfigurer.getNamesrvAddr());
             System.out.println("================================");
             
@@ -112,12 +118,64 @@ public class Consumer implements InitializingBean, DisposableBean {
         }
     }
 
+    /**
+     * 处理单条消息，批量转账涉及多个收款人，没有账户属性，PER_KEY_SERIAL 下也在消费线程上处理
+     * 入账与失败处理见 {@link TransferConsumeHandler}，这里记录消费耗时用于调整预取
+     *
+     * @return false 表示需要退避重试；不可重试或重试耗尽的消息隔离后返回 true
+     */
+    private boolean consume(MessageExt msg) {
+        long start = System.nanoTime();
+        try {
+            return consumeHandler.consume(msg);
+        } finally {
+            pullController.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * 按消费耗时与积压调整预取
+     */
+    @Scheduled(fixedDelayString = "${rocketmq.adaptive-pull.interval-millis:1000}")
+    public void adjustPull() {
+        if (pullController != null) {
+            pullController.adjust();
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        if (pullController != null) {
+            metrics.addAll(pullController.metrics());
+        }
+        if (consumeHandler != null) {
+            metrics.add(new Metric<>("rocketmq.consume.retries", consumeHandler.getRetries()));
+            metrics.add(new Metric<>("rocketmq.consume.quarantined", consumeHandler.getQuarantined()));
+            metrics.add(new Metric<>("rocketmq.consume.deadLettered", consumeHandler.getDeadLettered()));
+        }
+        return metrics;
+    }
+
+    /**
+     * 定时清理没有待处理消息的账户队列
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void cleanupIdleAccounts() {
+        if (consumeEngine != null) {
+            consumeEngine.cleanupIdleKeys();
+        }
+    }
+
     @Override
     public void destroy() throws Exception {
         if (consumer != null) {
             consumer.shutdown();
             System.out.println("=== RocketMQ消费者已关闭 ===");
         }
+        if (consumeEngine != null) {
+            consumeEngine.shutdown();
+        }
     }
 
     /**
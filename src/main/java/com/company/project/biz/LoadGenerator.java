@@ -0,0 +1,275 @@
+package com.company.project.biz;
+
+import com.company.project.bean.LoadStats;
+import com.company.project.core.LatencyHistogram;
+import com.company.project.core.TokenBucket;
+import com.company.project.core.ZipfDistribution;
+import com.company.project.exception.BizException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.LocalTransactionState;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 内置压测发压器，在进程内按目标 TPS 调用 {@link TransactionProducer#sendTransfer}，不经过 HTTP
+ * - 令牌桶匀速发放请求（开环），工作线程全部占满时放弃本次发送并计入 skipped，不会排队拖慢发压节奏
+ * - 转账人与收款人按 Zipf 分布从 1~accounts 中选取，skew 为 0 时均匀分布，账户需预先存在
+ * - 每秒汇总一次区间吞吐与耗时分位，推送给订阅者，压测结束时推送最终统计
+ * 同一时间只运行一个压测，仅在 load-generator.enabled=true 时启用，生产环境不要开启
+ */
+@Slf4j
+@ConditionalOnProperty(prefix = "load-generator", name = "enabled")
+@Component
+public class LoadGenerator implements DisposableBean {
+
+    private static final long REPORT_INTERVAL_MILLIS = 1000;
+
+    @Resource
+    private TransactionProducer transactionProducer;
+
+    private volatile Run current;
+
+    /**
+     * 启动一次压测
+     *
+     * @param tps             目标 TPS
+     * @param durationSeconds 持续秒数
+     * @param accounts        账户数，账户 id 为 1~accounts
+     * @param skew            Zipf 指数，0 为均匀分布，越大热点越集中
+     * @param amount          每笔转账金额
+     * @param threads         发送线程数，即最大并发发送数
+     */
+    public synchronized LoadStats start(double tps, int durationSeconds, int accounts, double skew, long amount, int threads) {
+        if (current != null && current.running) {
+            throw new BizException("已有压测在运行，请先停止");
+        }
+        current = new Run(tps, durationSeconds, new ZipfDistribution(accounts, skew), amount, threads);
+        current.start();
+        log.info("压测开始 tps={} durationSeconds={} accounts={} skew={} amount={} threads={}",
+                tps, durationSeconds, accounts, skew, amount, threads);
+        return current.latest;
+    }
+
+    public void stop() {
+        Run run = current;
+        if (run != null) {
+            run.stopped = true;
+        }
+    }
+
+    /**
+     * 最近一次统计，没有运行过压测时返回 null
+     */
+    public LoadStats getLatest() {
+        Run run = current;
+        return run != null ? run.latest : null;
+    }
+
+    /**
+     * 订阅当前压测的统计推送，压测已结束时立即收到最终统计
+     */
+    public void subscribe(Consumer<LoadStats> listener) {
+        Run run = current;
+        if (run == null) {
+            throw new BizException("没有运行中的压测");
+        }
+        run.subscribe(listener);
+    }
+
+    public void unsubscribe(Consumer<LoadStats> listener) {
+        Run run = current;
+        if (run != null) {
+            run.listeners.remove(listener);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+    }
+
+    private class Run {
+        private final double tps;
+        private final long durationNanos;
+        private final ZipfDistribution zipf;
+        private final long amount;
+        private final int threads;
+
+        private final TokenBucket tokenBucket;
+        private final Semaphore permits;
+        private final ExecutorService workers;
+        private final ScheduledExecutorService reporter;
+        private final List<Consumer<LoadStats>> listeners = new CopyOnWriteArrayList<>();
+
+        private final LatencyHistogram interval = new LatencyHistogram();
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LongAdder committed = new LongAdder();
+        private final LongAdder rolledBack = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+
+        private long startNanos;
+        private long lastReportNanos;
+        private volatile boolean running = true;
+        private volatile boolean stopped;
+        private volatile LoadStats latest;
+
+        Run(double tps, int durationSeconds, ZipfDistribution zipf, long amount, int threads) {
+            this.tps = tps;
+            this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+            this.zipf = zipf;
+            this.amount = amount;
+            this.threads = threads;
+            // 桶容量为 10ms 的量，避免调度抖动后一次性补发大量请求
+            this.tokenBucket = new TokenBucket(tps, Math.max(1, tps / 100));
+            this.permits = new Semaphore(threads);
+            this.workers = Executors.newFixedThreadPool(threads, named("load-generator-worker"));
+            this.reporter = Executors.newSingleThreadScheduledExecutor(named("load-generator-reporter"));
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            lastReportNanos = startNanos;
+            latest = collect(startNanos, interval.snapshot());
+            reporter.scheduleAtFixedRate(this::report, REPORT_INTERVAL_MILLIS, REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            Thread dispatcher = new Thread(this::dispatch, "load-generator-dispatcher");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+
+        private void dispatch() {
+            long deadline = startNanos + durationNanos;
+            try {
+                while (!stopped && System.nanoTime() < deadline) {
+                    tokenBucket.acquire();
+                    if (!permits.tryAcquire()) {
+                        skipped.increment();
+                        continue;
+                    }
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long from = zipf.sample(random);
+                    long to = zipf.sample(random);
+                    if (to == from) {
+                        to = from % zipf.getN() + 1;
+                    }
+                    long fromUserId = from;
+                    long toUserId = to;
+                    workers.execute(() -> send(fromUserId, toUserId));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("压测发压线程异常退出", e);
+            } finally {
+                workers.shutdown();
+                try {
+                    workers.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                reporter.shutdown();
+                synchronized (this) {
+                    running = false;
+                    report();
+                }
+                log.info("压测结束 committed={} rolledBack={} failed={} skipped={}",
+                        committed.sum(), rolledBack.sum(), failed.sum(), skipped.sum());
+            }
+        }
+
+        private void send(long fromUserId, long toUserId) {
+            long start = System.nanoTime();
+            try {
+                LocalTransactionState state = transactionProducer.sendTransfer(fromUserId, toUserId, amount);
+                if (state == LocalTransactionState.COMMIT_MESSAGE) {
+                    committed.increment();
+                } else if (state == LocalTransactionState.ROLLBACK_MESSAGE) {
+                    rolledBack.increment();
+                } else {
+                    failed.increment();
+                }
+            } catch (Exception e) {
+                failed.increment();
+            } finally {
+                long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+                interval.record(micros);
+                total.record(micros);
+                permits.release();
+            }
+        }
+
+        private synchronized void report() {
+            long now = System.nanoTime();
+            LoadStats stats = collect(now, interval.snapshotAndReset());
+            lastReportNanos = now;
+            latest = stats;
+            for (Consumer<LoadStats> listener : listeners) {
+                try {
+                    listener.accept(stats);
+                } catch (Exception e) {
+                    listeners.remove(listener);
+                }
+            }
+            if (!running) {
+                listeners.clear();
+            }
+        }
+
+        private LoadStats collect(long now, LatencyHistogram.Snapshot intervalSnapshot) {
+            LatencyHistogram.Snapshot totalSnapshot = total.snapshot();
+            long intervalNanos = now - lastReportNanos;
+            LoadStats stats = new LoadStats();
+            stats.setRunning(running);
+            stats.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(now - startNanos));
+            stats.setTargetTps(tps);
+            stats.setIntervalTps(intervalNanos > 0 ? intervalSnapshot.getCount() * 1e9 / intervalNanos : 0);
+            stats.setIntervalP50Micros(intervalSnapshot.percentile(0.5));
+            stats.setIntervalP99Micros(intervalSnapshot.percentile(0.99));
+            stats.setIntervalMaxMicros(intervalSnapshot.getMax());
+            stats.setCommitted(committed.sum());
+            stats.setRolledBack(rolledBack.sum());
+            stats.setFailed(failed.sum());
+            stats.setSkipped(skipped.sum());
+            stats.setInFlight(threads - permits.availablePermits());
+            stats.setP50Micros(totalSnapshot.percentile(0.5));
+            stats.setP99Micros(totalSnapshot.percentile(0.99));
+            stats.setMaxMicros(totalSnapshot.getMax());
+            return stats;
+        }
+
+        /**
+         * 与 report 互斥，已结束的压测直接推送最终统计，避免错过最后一次推送
+         */
+        synchronized void subscribe(Consumer<LoadStats> listener) {
+            if (running) {
+                listeners.add(listener);
+            } else {
+                listener.accept(latest);
+            }
+        }
+    }
+
+    private static ThreadFactory named(String name) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
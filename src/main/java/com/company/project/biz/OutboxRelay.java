@@ -0,0 +1,326 @@
+package com.company.project.biz;
+
+import com.company.project.biz.entity.TransferOutbox;
+import com.company.project.biz.mapper.TransferOutboxMapper;
+import com.company.project.configurer.RocketMQConfigurer;
+import com.company.project.core.ProjectConstant;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.PoolRole;
+import com.company.project.datasource.ShardRouter;
+import com.company.project.isolation.AccountQueueSelector;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.exception.MQBrokerException;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.remoting.exception.RemotingException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地消息表中继，投递方式为 OUTBOX 时启用
+ * 定时扫描各分片 transfer_outbox 中待发送的消息，按批发送到转账 topic 后标记为已发送
+ * - 每个分片同一时刻只有一个中继：发送每批前在 transfer_outbox_lease 中抢占或续期租约，未持有租约的实例跳过该分片，
+ *   多实例部署时各分片的消息仍由单个实例按 id 顺序发送，持有者宕机后其他实例在租约到期后接管
+ * - 读取、发送、标记各自是短语句，发送期间不持有行锁与数据库连接；发送失败时消息保持待发送，下次重发
+ * - 发送成功但标记失败、或租约在发送中途被接管时消息会重复投递，消费端按流水号幂等
+ * 开启按账户顺序消费时，同一账户的消息按 id 顺序发往同一个队列
+ */
+@Slf4j
+@ConditionalOnProperty(prefix = "rocketmq", name = "enabled", matchIfMissing = true)
+@Component
+public class OutboxRelay implements InitializingBean, DisposableBean, PublicMetrics {
+
+    /**
+     * 每次清理删除的最大行数，避免大事务
+     */
+    private static final int PURGE_BATCH = 1000;
+
+    private DefaultMQProducer producer;
+
+    /**
+     * 本实例的租约持有者标识，pid@host 加随机后缀，同一主机重启后不会误认旧租约
+     */
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "-"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    /**
+     * 本实例持有租约的分片
+     */
+    private final Set<Integer> leaderShards = ConcurrentHashMap.newKeySet();
+
+    private final AccountQueueSelector accountQueueSelector = new AccountQueueSelector();
+
+    /**
+     * 每次轮询轮换起始分片，时间用尽时不会总是后面的分片被推迟
+     */
+    private int nextShard;
+
+    private final LongAdder shipped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @Resource
+    private TransferOutboxMapper transferOutboxMapper;
+
+    @Resource
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private RocketMQConfigurer rocketMQConfigurer;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (rocketMQConfigurer.getDeliveryMode() != RocketMQConfigurer.DeliveryMode.OUTBOX) {
+            return;
+        }
+        producer = new DefaultMQProducer(rocketMQConfigurer.getProducerGroup() + "_outbox");
+        producer.setNamesrvAddr(rocketMQConfigurer.getNamesrvAddr());
+        producer.setMaxMessageSize(Math.max(producer.getMaxMessageSize(), rocketMQConfigurer.getOutbox().getMaxBatchBytes()));
+        try {
+            producer.start();
+            log.info("本地消息表中继启动成功 producerGroup={} owner={} batchSize={} maxBatchBytes={}",
+                    producer.getProducerGroup(), owner, rocketMQConfigurer.getOutbox().getBatchSize(),
+                    rocketMQConfigurer.getOutbox().getMaxBatchBytes());
+        } catch (MQClientException e) {
+            throw new RuntimeException("启动本地消息表中继失败", e);
+        }
+    }
+
+    /**
+     * 逐个分片发送待发送消息，一个分片一轮读满一批时继续读取，直到取空、失去租约或用完本次轮询的时间
+     */
+    @Scheduled(fixedDelayString = "${rocketmq.outbox.poll-interval-millis:100}")
+    public void relay() {
+        if (producer == null) {
+            return;
+        }
+        int batchSize = rocketMQConfigurer.getOutbox().getBatchSize();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(rocketMQConfigurer.getOutbox().getMaxTickMillis());
+        int shardCount = shardRouter.getShardCount();
+        int first = nextShard;
+        nextShard = (first + 1) % shardCount;
+        PoolRole previousRole = DataSourceContext.switchRole(PoolRole.PRODUCER);
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                int shard = (first + i) % shardCount;
+                try {
+                    int relayed;
+                    do {
+                        relayed = DataSourceContext.callOnShard(shard, () -> relayOnce(shard, batchSize));
+                    } while (relayed >= batchSize && System.nanoTime() - deadline < 0);
+                } catch (Exception e) {
+                    failures.increment();
+                    log.error("本地消息表发送失败，消息保持待发送 shard={}", shardRouter.getShardNames().get(shard), e);
+                }
+            }
+        } finally {
+            DataSourceContext.restoreRole(previousRole);
+        }
+    }
+
+    /**
+     * 续期当前分片的租约后读取一批消息并发送，不开启事务，每条语句执行完即归还连接
+     *
+     * @return 本次发送的消息数，未持有租约时为 0
+     */
+    private int relayOnce(int shard, int batchSize) {
+        if (!renewLease(shard)) {
+            return 0;
+        }
+        List<TransferOutbox> pending = transferOutboxMapper.selectPending(batchSize);
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        try {
+            if (rocketMQConfigurer.isOrderedByAccount()) {
+                sendByAccountQueue(pending);
+            } else {
+                sendChunks(pending, null);
+            }
+        } catch (MQClientException | RemotingException | MQBrokerException e) {
+            throw new IllegalStateException("发送本地消息表消息失败", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("发送本地消息表消息被中断", e);
+        }
+        List<Long> ids = new ArrayList<>(pending.size());
+        for (TransferOutbox outbox : pending) {
+            ids.add(outbox.getId());
+        }
+        transferOutboxMapper.markShipped(ids, new Date());
+        shipped.add(pending.size());
+        return pending.size();
+    }
+
+    private boolean renewLease(int shard) {
+        boolean leader = transferOutboxMapper.acquireLease(owner, rocketMQConfigurer.getOutbox().getLeaseMillis()) > 0;
+        if (leader ? leaderShards.add(shard) : leaderShards.remove(shard)) {
+            log.info("本地消息表中继{}租约 shard={} owner={}", leader ? "获得" : "失去",
+                    shardRouter.getShardNames().get(shard), owner);
+        }
+        return leader;
+    }
+
+    /**
+     * 按收款账户选择队列后分组发送，组内保持 id 顺序
+     * 没有账户的消息（批量转账）按消息key选择队列
+     */
+    private void sendByAccountQueue(List<TransferOutbox> pending)
+            throws MQClientException, RemotingException, MQBrokerException, InterruptedException {
+        List<MessageQueue> queues = producer.fetchPublishMessageQueues(rocketMQConfigurer.getTransactionTopic());
+        Map<MessageQueue, List<TransferOutbox>> byQueue = new LinkedHashMap<>();
+        for (TransferOutbox outbox : pending) {
+            long account = outbox.getAccountKey() != null
+                    ? Long.parseLong(outbox.getAccountKey())
+                    : outbox.getMessageKey().hashCode();
+            MessageQueue queue = accountQueueSelector.select(queues, null, account);
+            byQueue.computeIfAbsent(queue, q -> new ArrayList<>()).add(outbox);
+        }
+        for (Map.Entry<MessageQueue, List<TransferOutbox>> entry : byQueue.entrySet()) {
+            sendChunks(entry.getValue(), entry.getKey());
+        }
+    }
+
+    /**
+     * 按 maxBatchBytes 切分后批量发送，queue 为空时由客户端选择队列
+     */
+    private void sendChunks(List<TransferOutbox> outboxes, MessageQueue queue)
+            throws MQClientException, RemotingException, MQBrokerException, InterruptedException {
+        int maxBatchBytes = rocketMQConfigurer.getOutbox().getMaxBatchBytes();
+        List<Message> chunk = new ArrayList<>();
+        int chunkBytes = 0;
+        for (TransferOutbox outbox : outboxes) {
+            Message message = toMessage(outbox);
+            int size = estimateSize(message);
+            if (!chunk.isEmpty() && chunkBytes + size > maxBatchBytes) {
+                sendBatch(chunk, queue);
+                chunk = new ArrayList<>();
+                chunkBytes = 0;
+            }
+            chunk.add(message);
+            chunkBytes += size;
+        }
+        if (!chunk.isEmpty()) {
+            sendBatch(chunk, queue);
+        }
+    }
+
+    private void sendBatch(List<Message> messages, MessageQueue queue)
+            throws MQClientException, RemotingException, MQBrokerException, InterruptedException {
+        SendResult result = queue == null ? producer.send(messages) : producer.send(messages, queue);
+        if (result.getSendStatus() != SendStatus.SEND_OK) {
+            // 刷盘或同步从节点超时，消息可能未持久化，回滚后重发
+            throw new IllegalStateException("批量发送状态异常 " + result.getSendStatus());
+        }
+        batches.increment();
+    }
+
+    private Message toMessage(TransferOutbox outbox) {
+        Message message = new Message(rocketMQConfigurer.getTransactionTopic(), rocketMQConfigurer.getMessageTag(),
+                outbox.getMessageKey(), outbox.getBody().getBytes(StandardCharsets.UTF_8));
+        if (outbox.getTransferType() != null) {
+            message.putUserProperty(ProjectConstant.TRANSFER_TYPE_PROPERTY, outbox.getTransferType());
+        }
+        if (outbox.getAccountKey() != null) {
+            message.putUserProperty(ProjectConstant.ACCOUNT_KEY_PROPERTY, outbox.getAccountKey());
+        }
+        return message;
+    }
+
+    /**
+     * 与客户端 MessageBatch 编码的长度一致：消息体、topic、属性加固定的日志头
+     */
+    private static int estimateSize(Message message) {
+        int size = message.getTopic().length() + message.getBody().length + 20;
+        for (Map.Entry<String, String> property : message.getProperties().entrySet()) {
+            size += property.getKey().length() + property.getValue().length();
+        }
+        return size;
+    }
+
+    /**
+     * 清理超过保留时长的已发送消息
+     */
+    @Scheduled(fixedDelay = 600000)
+    public void purgeShipped() {
+        if (producer == null) {
+            return;
+        }
+        Date before = new Date(System.currentTimeMillis()
+                - TimeUnit.HOURS.toMillis(rocketMQConfigurer.getOutbox().getRetentionHours()));
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            try {
+                long purged = 0;
+                int deleted;
+                do {
+                    deleted = DataSourceContext.callOnShard(shard,
+                            () -> transferOutboxMapper.deleteShippedBefore(before, PURGE_BATCH));
+                    purged += deleted;
+                } while (deleted >= PURGE_BATCH);
+                if (purged > 0) {
+                    log.info("本地消息表清理已发送消息 {} 条 shard={}", purged, shardRouter.getShardNames().get(shard));
+                }
+            } catch (Exception e) {
+                log.error("本地消息表清理失败 shard={}", shardRouter.getShardNames().get(shard), e);
+            }
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("rocketmq.outbox.shipped", shipped.sum()));
+        metrics.add(new Metric<>("rocketmq.outbox.batches", batches.sum()));
+        metrics.add(new Metric<>("rocketmq.outbox.failures", failures.sum()));
+        metrics.add(new Metric<>("rocketmq.outbox.leader-shards", leaderShards.size()));
+        return metrics;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (producer != null) {
+            releaseLeases();
+            producer.shutdown();
+            log.info("本地消息表中继已关闭");
+        }
+    }
+
+    /**
+     * 正常停机时释放租约，其他实例不必等租约到期即可接管
+     */
+    private void releaseLeases() {
+        for (Integer shard : leaderShards) {
+            try {
+                DataSourceContext.callOnShard(shard, () -> transferOutboxMapper.releaseLease(owner));
+            } catch (Exception e) {
+                log.warn("释放本地消息表中继租约失败，等待租约到期 shard={}", shardRouter.getShardNames().get(shard), e);
+            }
+        }
+        leaderShards.clear();
+    }
+}
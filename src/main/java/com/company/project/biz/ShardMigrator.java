@@ -0,0 +1,328 @@
+package com.company.project.biz;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.company.project.datasource.ShardRouter;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 分片扩缩容数据迁移工具
+ * 按新旧两个一致性哈希环比较每个用户的归属，把归属发生变化的用户及其转出的 transfer_record、
+ * 收款的 transfer_credit（入账流水，消费端幂等依据）搬到新分片
+ * <p>
+ * 迁移步骤：
+ * 1. 新分片执行 table.sql 建表，transfer_record 自增步长/偏移按分片规划设置
+ * 2. copy：在线执行，可重复执行（用户余额覆盖写，转账记录与入账流水按主键忽略重复）
+ * 3. 停止生产者与消费者后再执行一次 copy 补齐增量，verify 校验无差异（余额、转出记录、入账流水的条数与金额）
+ * 4. 修改 datasource-pool.shards 为新的分片列表并重启应用
+ * 5. cleanup：删除旧分片上已迁出的用户、转账记录与入账流水
+ * <p>
+ * 参数通过系统属性传入，分片列表格式为 name=jdbcUrl，多个用逗号分隔，名称须与 datasource-pool.shards 一致：
+ * -Dreshard.phase=copy|verify|cleanup
+ * -Dreshard.from=shard-0=jdbc:mysql://db0/fescar
+ * -Dreshard.to=shard-0=jdbc:mysql://db0/fescar,shard-1=jdbc:mysql://db1/fescar
+ * -Dreshard.user=root -Dreshard.password=123456 -Dreshard.virtualNodes=160
+ */
+public class ShardMigrator {
+
+    private static final int BATCH = 500;
+    private static final String RECORD_COLUMNS = "id, from_user_id, change_money, transaction_id, to_user_id, record_no, create_time";
+    private static final String CREDIT_COLUMNS = "id, record_no, to_user_id, change_money, create_time";
+
+    private final ShardRouter from;
+    private final ShardRouter to;
+    private final Map<String, DataSource> dataSources;
+
+    /**
+     * @param dataSources 新旧分片名称到数据源的映射
+     */
+    public ShardMigrator(ShardRouter from, ShardRouter to, Map<String, DataSource> dataSources) {
+        this.from = from;
+        this.to = to;
+        this.dataSources = dataSources;
+    }
+
+    /**
+     * 复制归属变化的用户与其转出记录、入账流水到新分片
+     *
+     * @return 迁移的用户数
+     */
+    public long copy() throws SQLException {
+        return forEachMovedBatch((source, target, userIds) -> {
+            upsertUsers(source, target, userIds);
+            copyRows(source, target, "transfer_record", RECORD_COLUMNS, "from_user_id", userIds);
+            copyRows(source, target, "transfer_credit", CREDIT_COLUMNS, "to_user_id", userIds);
+            return userIds.size();
+        });
+    }
+
+    /**
+     * 校验迁移的用户余额、转出记录与入账流水在新旧分片上一致
+     *
+     * @return 不一致的用户数
+     */
+    public long verify() throws SQLException {
+        return forEachMovedBatch((source, target, userIds) -> {
+            Map<Long, String> expected = userDigests(source, userIds);
+            Map<Long, String> actual = userDigests(target, userIds);
+            long mismatched = 0;
+            for (Map.Entry<Long, String> entry : expected.entrySet()) {
+                if (!entry.getValue().equals(actual.get(entry.getKey()))) {
+                    mismatched++;
+                    System.err.println("用户数据不一致 userId=" + entry.getKey()
+                            + " source=" + entry.getValue() + " target=" + actual.get(entry.getKey()));
+                }
+            }
+            return mismatched;
+        });
+    }
+
+    /**
+     * 删除旧分片上已迁出的用户与转出记录、入账流水，必须在应用切换到新分片配置之后执行
+     *
+     * @return 删除的用户数
+     */
+    public long cleanup() throws SQLException {
+        return forEachMovedBatch((source, target, userIds) -> {
+            try (Connection conn = dataSources.get(source).getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    execute(conn, "delete from transfer_record where from_user_id in " + placeholders(userIds.size()), userIds);
+                    execute(conn, "delete from transfer_credit where to_user_id in " + placeholders(userIds.size()), userIds);
+                    int deleted = execute(conn, "delete from user where id in " + placeholders(userIds.size()), userIds);
+                    conn.commit();
+                    return deleted;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * 逐个旧分片按 id 顺序扫描用户，归属变化的用户按新分片分组后回调
+     */
+    private long forEachMovedBatch(MovedBatchHandler handler) throws SQLException {
+        long total = 0;
+        for (String source : from.getShardNames()) {
+            long lastId = 0;
+            while (true) {
+                List<Long> userIds = new ArrayList<>(BATCH);
+                try (Connection conn = dataSources.get(source).getConnection();
+                     PreparedStatement ps = conn.prepareStatement("select id from user where id > ? order by id limit " + BATCH)) {
+                    ps.setLong(1, lastId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            userIds.add(rs.getLong(1));
+                        }
+                    }
+                }
+                if (userIds.isEmpty()) {
+                    break;
+                }
+                lastId = userIds.get(userIds.size() - 1);
+
+                Map<String, List<Long>> moved = new TreeMap<>();
+                for (Long userId : userIds) {
+                    String target = to.shardNameOf(userId);
+                    if (!target.equals(source)) {
+                        moved.computeIfAbsent(target, key -> new ArrayList<>()).add(userId);
+                    }
+                }
+                for (Map.Entry<String, List<Long>> entry : moved.entrySet()) {
+                    total += handler.handle(source, entry.getKey(), entry.getValue());
+                }
+            }
+            System.out.println("分片 " + source + " 处理完成，累计 " + total);
+        }
+        return total;
+    }
+
+    private void upsertUsers(String source, String target, List<Long> userIds) throws SQLException {
+        List<Object> values = new ArrayList<>();
+        try (Connection conn = dataSources.get(source).getConnection();
+             PreparedStatement ps = conn.prepareStatement("select id, money from user where id in " + placeholders(userIds.size()))) {
+            bind(ps, userIds);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    values.add(rs.getLong(1));
+                    values.add(rs.getLong(2));
+                }
+            }
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+        try (Connection conn = dataSources.get(target).getConnection()) {
+            execute(conn, "insert into user (id, money) values " + rows(values.size() / 2, 2)
+                    + " on duplicate key update money = values(money)", values);
+        }
+    }
+
+    /**
+     * 按 id 顺序分批复制用户在 table 中的行，userColumn 为行所属用户的列
+     */
+    private void copyRows(String source, String target, String table, String columns, String userColumn,
+                          List<Long> userIds) throws SQLException {
+        int columnCount = columns.split(",").length;
+        long lastId = 0;
+        while (true) {
+            List<Object> values = new ArrayList<>();
+            List<Object> params = new ArrayList<>(userIds);
+            params.add(lastId);
+            try (Connection conn = dataSources.get(source).getConnection();
+                 PreparedStatement ps = conn.prepareStatement("select " + columns + " from " + table + " where " + userColumn + " in "
+                         + placeholders(userIds.size()) + " and id > ? order by id limit " + BATCH)) {
+                bind(ps, params);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        for (int i = 1; i <= columnCount; i++) {
+                            values.add(rs.getObject(i));
+                        }
+                        lastId = rs.getLong(1);
+                    }
+                }
+            }
+            if (values.isEmpty()) {
+                return;
+            }
+            try (Connection conn = dataSources.get(target).getConnection()) {
+                execute(conn, "insert ignore into " + table + " (" + columns + ") values "
+                        + rows(values.size() / columnCount, columnCount), values);
+            }
+        }
+    }
+
+    /**
+     * 用户余额、转出记录数与金额合计、入账流水数与金额合计拼成的摘要
+     * 入账流水是消费端的去重依据，漏迁后 cleanup 删除源分片数据会导致重放消息重复入账，必须一起校验
+     */
+    private Map<Long, String> userDigests(String shard, List<Long> userIds) throws SQLException {
+        Map<Long, String> digests = new LinkedHashMap<>();
+        String in = placeholders(userIds.size());
+        List<Long> params = new ArrayList<>(userIds.size() * 3);
+        params.addAll(userIds);
+        params.addAll(userIds);
+        params.addAll(userIds);
+        // 两张表分别聚合后再关联，避免同时 join 两张明细表产生笛卡尔积
+        try (Connection conn = dataSources.get(shard).getConnection();
+             PreparedStatement ps = conn.prepareStatement("select u.id, u.money,"
+                     + " coalesce(r.cnt, 0), coalesce(r.total, 0), coalesce(c.cnt, 0), coalesce(c.total, 0)"
+                     + " from user u"
+                     + " left join (select from_user_id, count(*) cnt, sum(change_money) total from transfer_record"
+                     + " where from_user_id in " + in + " group by from_user_id) r on r.from_user_id = u.id"
+                     + " left join (select to_user_id, count(*) cnt, sum(change_money) total from transfer_credit"
+                     + " where to_user_id in " + in + " group by to_user_id) c on c.to_user_id = u.id"
+                     + " where u.id in " + in)) {
+            bind(ps, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    digests.put(rs.getLong(1), rs.getLong(2) + "/" + rs.getLong(3) + "/" + rs.getLong(4)
+                            + "/" + rs.getLong(5) + "/" + rs.getLong(6));
+                }
+            }
+        }
+        return digests;
+    }
+
+    private static int execute(Connection conn, String sql, List<?> params) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            bind(ps, params);
+            return ps.executeUpdate();
+        }
+    }
+
+    private static void bind(PreparedStatement ps, List<?> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            ps.setObject(i + 1, params.get(i));
+        }
+    }
+
+    private static String placeholders(int count) {
+        return "(" + String.join(",", Collections.nCopies(count, "?")) + ")";
+    }
+
+    private static String rows(int rowCount, int columnCount) {
+        return String.join(",", Collections.nCopies(rowCount, placeholders(columnCount)));
+    }
+
+    private interface MovedBatchHandler {
+        long handle(String source, String target, List<Long> userIds) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String phase = System.getProperty("reshard.phase", "verify");
+        int virtualNodes = Integer.getInteger("reshard.virtualNodes", 160);
+        Map<String, String> fromUrls = parseShards(System.getProperty("reshard.from"));
+        Map<String, String> toUrls = parseShards(System.getProperty("reshard.to"));
+
+        Map<String, String> urls = new LinkedHashMap<>(fromUrls);
+        for (Map.Entry<String, String> entry : toUrls.entrySet()) {
+            String existing = urls.putIfAbsent(entry.getKey(), entry.getValue());
+            if (existing != null && !existing.equals(entry.getValue())) {
+                throw new IllegalArgumentException("分片 " + entry.getKey() + " 在新旧配置中的地址不一致");
+            }
+        }
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : urls.entrySet()) {
+            DruidDataSource dataSource = new DruidDataSource();
+            dataSource.setName("reshard-" + entry.getKey());
+            dataSource.setUrl(entry.getValue());
+            dataSource.setUsername(System.getProperty("reshard.user", "root"));
+            dataSource.setPassword(System.getProperty("reshard.password", ""));
+            dataSources.put(entry.getKey(), dataSource);
+        }
+
+        ShardMigrator migrator = new ShardMigrator(new ShardRouter(new ArrayList<>(fromUrls.keySet()), virtualNodes),
+                new ShardRouter(new ArrayList<>(toUrls.keySet()), virtualNodes), dataSources);
+        try {
+            switch (phase) {
+                case "copy":
+                    System.out.println("复制用户数: " + migrator.copy());
+                    break;
+                case "verify":
+                    long mismatched = migrator.verify();
+                    System.out.println("不一致用户数: " + mismatched);
+                    if (mismatched > 0) {
+                        System.exit(1);
+                    }
+                    break;
+                case "cleanup":
+                    System.out.println("删除用户数: " + migrator.cleanup());
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知阶段: " + phase);
+            }
+        } finally {
+            for (DataSource dataSource : dataSources.values()) {
+                ((DruidDataSource) dataSource).close();
+            }
+        }
+    }
+
+    private static Map<String, String> parseShards(String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("缺少分片配置，格式 name=jdbcUrl,name=jdbcUrl");
+        }
+        Map<String, String> shards = new LinkedHashMap<>();
+        for (String item : value.split(",")) {
+            int index = item.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("分片配置格式错误: " + item);
+            }
+            shards.put(item.substring(0, index).trim(), item.substring(index + 1).trim());
+        }
+        return shards;
+    }
+}
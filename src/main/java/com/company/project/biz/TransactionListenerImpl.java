@@ -17,7 +17,11 @@
 package com.company.project.biz;
 
 import com.alibaba.fastjson.JSON;
+import com.company.project.bean.BatchTransfer;
 import com.company.project.biz.entity.TransferRecord;
+import com.company.project.core.ProjectConstant;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.PoolRole;
 import org.apache.rocketmq.client.producer.LocalTransactionState;
 import org.apache.rocketmq.client.producer.TransactionListener;
 import org.apache.rocketmq.common.message.Message;
@@ -36,11 +40,24 @@ public class TransactionListenerImpl implements TransactionListener {
 
     @Override
     public LocalTransactionState executeLocalTransaction(Message msg, Object arg) {
+        //本地事务使用生产者连接池
+        PoolRole previous = DataSourceContext.switchRole(PoolRole.PRODUCER);
+        try {
+            return doExecuteLocalTransaction(msg);
+        } finally {
+            DataSourceContext.restoreRole(previous);
+        }
+    }
+
+    private LocalTransactionState doExecuteLocalTransaction(Message msg) {
+        if (ProjectConstant.TRANSFER_TYPE_BATCH.equals(msg.getUserProperty(ProjectConstant.TRANSFER_TYPE_PROPERTY))) {
+            return executeBatchTransfer(msg);
+        }
         TransferRecord transferRecord = JSON.parseObject(msg.getBody(), TransferRecord.class);
         LocalTransactionState state = LocalTransactionState.UNKNOW;
         try {
             boolean isCommit = businessService.doTransfer(transferRecord.getFromUserId(),transferRecord.getToUserId()
-                    ,transferRecord.getChangeMoney(),transferRecord.getRecordNo(),msg.getTransactionId());
+                    ,transferRecord.getChangeMoney(),transferRecord.getRecordNo(),transferRecord.getCreateTime(),msg.getTransactionId());
             if (isCommit) {
                 state = LocalTransactionState.COMMIT_MESSAGE;
             } else {
@@ -56,11 +73,32 @@ public class TransactionListenerImpl implements TransactionListener {
         return state;
     }
 
+    private LocalTransactionState executeBatchTransfer(Message msg) {
+        BatchTransfer batchTransfer = JSON.parseObject(msg.getBody(), BatchTransfer.class);
+        try {
+            boolean isCommit = businessService.doBatchTransfer(batchTransfer.getFromUserId(), batchTransfer.getLegs(),
+                    batchTransfer.getCreateTime(), msg.getTransactionId());
+            return isCommit ? LocalTransactionState.COMMIT_MESSAGE : LocalTransactionState.ROLLBACK_MESSAGE;
+        } catch (Exception e) {
+            System.out.println("批量转账失败,fromUserId:"+batchTransfer.getFromUserId()+",batchNo:"+batchTransfer.getBatchNo());
+            e.printStackTrace();
+            return LocalTransactionState.ROLLBACK_MESSAGE;
+        }
+    }
+
     @Override
     public LocalTransactionState checkLocalTransaction(MessageExt msg) {
         LocalTransactionState state = LocalTransactionState.UNKNOW;
+        //回查使用独立的小连接池 回查风暴不会挤占消费者与本地事务的连接
+        PoolRole previous = DataSourceContext.switchRole(PoolRole.CHECK_BACK);
         try {
-            boolean isCommit = businessService.checkTransferStatus(msg.getTransactionId());
+            //转账记录在转账人所在分片 从消息体取转账人id
+            Long fromUserId = ProjectConstant.TRANSFER_TYPE_BATCH.equals(msg.getUserProperty(ProjectConstant.TRANSFER_TYPE_PROPERTY))
+                    ? JSON.parseObject(msg.getBody(), BatchTransfer.class).getFromUserId()
+                    : JSON.parseObject(msg.getBody(), TransferRecord.class).getFromUserId();
+            //先查从库 查到即可提交；查不到可能只是复制延迟 必须回主库确认后才能回滚
+            boolean isCommit = businessService.checkTransferStatusOnReplica(fromUserId, msg.getTransactionId())
+                    || businessService.checkTransferStatus(fromUserId, msg.getTransactionId());
             if (isCommit) {
                 state = LocalTransactionState.COMMIT_MESSAGE;
             } else {
@@ -68,6 +106,8 @@ public class TransactionListenerImpl implements TransactionListener {
             }
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            DataSourceContext.restoreRole(previous);
         }
         return state;
     }
@@ -17,35 +17,64 @@
 package com.company.project.biz;
 
 import com.alibaba.fastjson.JSON;
+import com.company.project.bean.BatchTransfer;
 import com.company.project.biz.entity.TransferRecord;
 import com.company.project.configurer.RocketMQConfigurer;
+import com.company.project.core.ProjectConstant;
+import com.company.project.core.SnowflakeIdGenerator;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.PoolRole;
+import com.company.project.exception.BizException;
+import com.company.project.isolation.AccountQueueSelector;
 import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.impl.producer.DefaultMQProducerImpl;
+import org.apache.rocketmq.client.producer.LocalTransactionState;
 import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
 import org.apache.rocketmq.client.producer.TransactionListener;
 import org.apache.rocketmq.client.producer.TransactionMQProducer;
+import org.apache.rocketmq.client.producer.TransactionSendResult;
 import org.apache.rocketmq.common.message.Message;
-import org.apache.rocketmq.remoting.common.RemotingHelper;
+import org.apache.rocketmq.common.message.MessageAccessor;
+import org.apache.rocketmq.common.message.MessageConst;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.*;
 
+@ConditionalOnProperty(prefix = "rocketmq", name = "enabled", matchIfMissing = true)
 @Component
 public class TransactionProducer implements InitializingBean {
+    /**
+     * 单个批量转账消息允许的最大明细数，控制消息体大小
+     */
+    private static final int MAX_BATCH_LEGS = 2000;
+
     private TransactionMQProducer producer;
 
+    private final AccountQueueSelector accountQueueSelector = new AccountQueueSelector();
+
     @Resource
     private TransactionListenerImpl transactionListener;
+
+    @Resource
+    private BusinessService businessService;
     
     @Autowired
     private RocketMQConfigurer rocketMQConfigurer;
 
+    @Resource
+    private SnowflakeIdGenerator idGenerator;
+
     @Override
     public void afterPropertiesSet() throws Exception {
         producer = new TransactionMQProducer(rocketMQConfigurer.getProducerGroup());
@@ -77,24 +106,198 @@ public class TransactionProducer implements InitializingBean {
     }
 
     public void test() {
-        //单次转账唯一编号
-        String businessNo = UUID.randomUUID().toString();
+        try {
+            sendTransfer(1L, 2L, 100L);
+        } catch (Exception e) {
+            System.err.println("发送事务消息失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 单笔转账 发送事务消息并同步执行本地事务
+     *
+     * @param fromUserId  转账人id
+     * @param toUserId    被转账人id
+     * @param changeMoney 转账金额
+     * @return 本地事务结果 COMMIT_MESSAGE 扣钱成功 ROLLBACK_MESSAGE 扣钱失败（如余额不足）
+     *         投递方式为OUTBOX时本地事务直接提交 同样返回这两种结果
+     * @throws Exception half消息发送失败
+     */
+    public LocalTransactionState sendTransfer(Long fromUserId, Long toUserId, Long changeMoney) throws Exception {
+        //单次转账唯一编号 使用时间有序的ID 顺序写入idx_record_no 避免随机UUID造成的页分裂
+        return sendTransfer(idGenerator.nextRecordNo(), fromUserId, toUserId, changeMoney);
+    }
 
+    /**
+     * 单笔转账 使用调用方预先生成的转账流水编号 调用方可在结果返回前告知客户端流水号
+     *
+     * @param businessNo 转账流水编号 由 SnowflakeIdGenerator#nextRecordNo 生成
+     */
+    public LocalTransactionState sendTransfer(String businessNo, Long fromUserId, Long toUserId, Long changeMoney) throws Exception {
         //要发送的事务消息 设置转账人 被转账人 转账金额
+        TransferRecord transferRecord = newTransferRecord(businessNo, fromUserId, toUserId, changeMoney);
+
+        if (rocketMQConfigurer.getDeliveryMode() == RocketMQConfigurer.DeliveryMode.OUTBOX) {
+            //本地消息表 扣钱与待发送消息同一事务提交 不经过half消息
+            PoolRole previous = DataSourceContext.switchRole(PoolRole.PRODUCER);
+            try {
+                businessService.doTransferWithOutbox(transferRecord.getFromUserId(), transferRecord);
+            } catch (Exception e) {
+                //与事务消息方式一致 本地事务异常即回滚
+                System.out.println("本地消息表转账失败,recordNo:"+businessNo+",原因:"+e.getMessage());
+                return LocalTransactionState.ROLLBACK_MESSAGE;
+            } finally {
+                DataSourceContext.restoreRole(previous);
+            }
+            System.out.println("本地消息表转账完成,recordNo:"+businessNo);
+            return LocalTransactionState.COMMIT_MESSAGE;
+        }
+        Message msg = buildTransferMessage(rocketMQConfigurer.getTransactionTopic(), rocketMQConfigurer.getMessageTag(), transferRecord);
+        TransactionSendResult sendResult = rocketMQConfigurer.isOrderedByAccount()
+                ? sendInTransactionByAccount(msg, transferRecord.getToUserId())
+                : producer.sendMessageInTransaction(msg, null);
+        System.out.println("prepare事务消息发送结果:"+sendResult.getSendStatus()+",本地事务:"+sendResult.getLocalTransactionState());
+        return sendResult.getLocalTransactionState();
+    }
+
+    /**
+     * 批量转账 一个转账人对多个收款人 只发送一条事务消息
+     * 本地事务一次扣除总金额并批量写入明细 消费端按明细逐条入账
+     *
+     * @param fromUserId 转账人id
+     * @param legs       转账明细 需包含被转账人id、转账金额
+     * @return prepare消息发送结果 投递方式为OUTBOX时本地事务直接提交 返回null 消息由OutboxRelay异步发送
+     */
+    public SendResult sendBatchTransfer(Long fromUserId, List<TransferRecord> legs) throws Exception {
+        if (legs == null || legs.isEmpty() || legs.size() > MAX_BATCH_LEGS) {
+            throw new BizException("转账明细数量必须在1~" + MAX_BATCH_LEGS + "之间");
+        }
+        BatchTransfer batchTransfer = newBatchTransfer(idGenerator, fromUserId, legs);
+
+        if (rocketMQConfigurer.getDeliveryMode() == RocketMQConfigurer.DeliveryMode.OUTBOX) {
+            PoolRole previous = DataSourceContext.switchRole(PoolRole.PRODUCER);
+            try {
+                businessService.doBatchTransferWithOutbox(fromUserId, batchTransfer);
+            } finally {
+                DataSourceContext.restoreRole(previous);
+            }
+            System.out.println("本地消息表批量转账完成,batchNo:"+batchTransfer.getBatchNo()+",legs:"+legs.size());
+            return null;
+        }
+        Message msg = buildBatchTransferMessage(rocketMQConfigurer.getTransactionTopic(), rocketMQConfigurer.getMessageTag(), batchTransfer);
+        SendResult sendResult = producer.sendMessageInTransaction(msg, null);
+        System.out.println("批量prepare事务消息发送结果:"+sendResult.getSendStatus()+",batchNo:"+batchTransfer.getBatchNo()+",legs:"+legs.size());
+        return sendResult;
+    }
+
+    /**
+     * 单笔转账记录，创建时间在此确定并随消息透传，本地事务重复执行时分区键不变
+     */
+    public static TransferRecord newTransferRecord(String recordNo, Long fromUserId, Long toUserId, Long changeMoney) {
         TransferRecord transferRecord = new TransferRecord();
-        transferRecord.setFromUserId(1L);
-        transferRecord.setToUserId(2L);
-        transferRecord.setChangeMoney(100L);
-        transferRecord.setRecordNo(businessNo);
+        transferRecord.setFromUserId(fromUserId);
+        transferRecord.setToUserId(toUserId);
+        transferRecord.setChangeMoney(changeMoney);
+        transferRecord.setRecordNo(recordNo);
+        transferRecord.setCreateTime(new Date());
+        return transferRecord;
+    }
+
+    /**
+     * 批量转账，每条明细独立的转账流水编号，批次号作为消息key
+     *
+     * @param legs 转账明细 需包含被转账人id、转账金额
+     */
+    public static BatchTransfer newBatchTransfer(SnowflakeIdGenerator idGenerator, Long fromUserId, List<TransferRecord> legs) {
+        for (TransferRecord leg : legs) {
+            leg.setFromUserId(fromUserId);
+            leg.setRecordNo(idGenerator.nextRecordNo());
+        }
+        BatchTransfer batchTransfer = new BatchTransfer();
+        batchTransfer.setBatchNo(idGenerator.nextRecordNo());
+        batchTransfer.setFromUserId(fromUserId);
+        batchTransfer.setCreateTime(new Date());
+        batchTransfer.setLegs(legs);
+        return batchTransfer;
+    }
+
+    /**
+     * 单笔转账的事务消息，消息key为转账流水编号，按收款人设置账户属性
+     */
+    public static Message buildTransferMessage(String topic, String tag, TransferRecord transferRecord) {
+        Message msg = new Message(topic, tag, transferRecord.getRecordNo(),
+                JSON.toJSONString(transferRecord).getBytes(StandardCharsets.UTF_8));
+        msg.putUserProperty(ProjectConstant.ACCOUNT_KEY_PROPERTY, String.valueOf(transferRecord.getToUserId()));
+        return msg;
+    }
+
+    /**
+     * 批量转账的事务消息，涉及多个收款人，不设置账户属性
+     */
+    public static Message buildBatchTransferMessage(String topic, String tag, BatchTransfer batchTransfer) {
+        Message msg = new Message(topic, tag, batchTransfer.getBatchNo(),
+                JSON.toJSONString(batchTransfer).getBytes(StandardCharsets.UTF_8));
+        msg.putUserProperty(ProjectConstant.TRANSFER_TYPE_PROPERTY, ProjectConstant.TRANSFER_TYPE_BATCH);
+        return msg;
+    }
 
+    /**
+     * 按账户选择队列发送事务消息
+     * 4.5 的 sendMessageInTransaction 不支持 MessageQueueSelector，这里按它的流程组装：
+     * 带 TRAN_MSG 属性经选择器发送 half 消息 -> 执行本地事务 -> endTransaction 提交或回滚；
+     * broker 提交时把消息还原到 half 消息选定的队列，同一收款人的消息因此都在同一个队列
+     *
+     * @param accountId 选择队列的账户id
+     * @return 与 sendMessageInTransaction 相同 带本地事务结果
+     */
+    private TransactionSendResult sendInTransactionByAccount(Message msg, Long accountId) throws MQClientException {
+        DefaultMQProducerImpl producerImpl = producer.getDefaultMQProducerImpl();
+        MessageAccessor.putProperty(msg, MessageConst.PROPERTY_TRANSACTION_PREPARED, "true");
+        MessageAccessor.putProperty(msg, MessageConst.PROPERTY_PRODUCER_GROUP, producer.getProducerGroup());
+        SendResult sendResult;
         try {
-            Message msg = new Message(rocketMQConfigurer.getTransactionTopic(), rocketMQConfigurer.getMessageTag(), businessNo,
-                    JSON.toJSONString(transferRecord).getBytes(RemotingHelper.DEFAULT_CHARSET));
-            SendResult sendResult = producer.sendMessageInTransaction(msg, null);
-            System.out.println("prepare事务消息发送结果:"+sendResult.getSendStatus());
+            sendResult = producerImpl.send(msg, accountQueueSelector, accountId);
         } catch (Exception e) {
-            System.err.println("发送事务消息失败: " + e.getMessage());
-            e.printStackTrace();
+            throw new MQClientException("发送half消息失败", e);
+        }
+
+        LocalTransactionState state;
+        Throwable localException = null;
+        if (sendResult.getSendStatus() == SendStatus.SEND_OK) {
+            //本地事务与回查都以事务id为准 与 sendMessageInTransaction 保持一致
+            if (sendResult.getTransactionId() != null) {
+                msg.putUserProperty("__transactionId__", sendResult.getTransactionId());
+            }
+            String transactionId = msg.getProperty(MessageConst.PROPERTY_UNIQ_CLIENT_MESSAGE_ID_KEYIDX);
+            if (transactionId != null && !transactionId.isEmpty()) {
+                msg.setTransactionId(transactionId);
+            }
+            try {
+                state = transactionListener.executeLocalTransaction(msg, null);
+            } catch (Throwable e) {
+                state = LocalTransactionState.UNKNOW;
+                localException = e;
+            }
+        } else {
+            state = LocalTransactionState.ROLLBACK_MESSAGE;
+        }
+
+        try {
+            producerImpl.endTransaction(sendResult, state, localException);
+        } catch (Exception e) {
+            //结束事务失败不影响本地事务结果 broker会回查
+            System.err.println("提交事务消息状态失败,等待回查: " + e.getMessage());
         }
+        TransactionSendResult transactionSendResult = new TransactionSendResult();
+        transactionSendResult.setSendStatus(sendResult.getSendStatus());
+        transactionSendResult.setMessageQueue(sendResult.getMessageQueue());
+        transactionSendResult.setMsgId(sendResult.getMsgId());
+        transactionSendResult.setQueueOffset(sendResult.getQueueOffset());
+        transactionSendResult.setTransactionId(sendResult.getTransactionId());
+        transactionSendResult.setOffsetMsgId(sendResult.getOffsetMsgId());
+        transactionSendResult.setRegionId(sendResult.getRegionId());
+        transactionSendResult.setLocalTransactionState(state);
+        return transactionSendResult;
     }
 }
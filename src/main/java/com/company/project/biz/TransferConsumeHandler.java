@@ -0,0 +1,142 @@
+package com.company.project.biz;
+
+import com.company.project.biz.service.ConsumerService;
+import com.company.project.configurer.RocketMQConfigurer;
+import com.company.project.core.ProjectConstant;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.PoolRole;
+import org.apache.rocketmq.common.message.MessageExt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 转账消息的消费与失败处理，{@link Consumer} 与压测中的进程内 broker 共用
+ * - 在消费者连接池上按消息类型入账（批量转账按明细展开）
+ * - 可重试且未超过最大重试次数的失败交给消费引擎退避重试，不可重试或重试耗尽的按配置隔离或投入死信队列
+ */
+public class TransferConsumeHandler {
+
+    private static final String PERMANENT_TARGET_DLQ = "DLQ";
+
+    private final ConsumerService consumerService;
+    private final ConsumeQuarantine consumeQuarantine;
+    private final RocketMQConfigurer.RetryProperties retry;
+    private final DeadLetterSender deadLetterSender;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder quarantined = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    /**
+     * @param deadLetterSender 失败目标为 DLQ 时投递死信队列，为 null 时总是隔离
+     */
+    public TransferConsumeHandler(ConsumerService consumerService, ConsumeQuarantine consumeQuarantine,
+                                  RocketMQConfigurer.RetryProperties retry, DeadLetterSender deadLetterSender) {
+        this.consumerService = consumerService;
+        this.consumeQuarantine = consumeQuarantine;
+        this.retry = retry;
+        this.deadLetterSender = deadLetterSender;
+    }
+
+    /**
+     * 处理单条消息
+     *
+     * @return false 表示需要退避重试；不可重试或重试耗尽的消息隔离后返回 true
+     */
+    public boolean consume(MessageExt msg) {
+        Exception failure = null;
+        try {
+            if (process(msg)) {
+                return true;
+            }
+        } catch (Exception e) {
+            System.err.println("消费消息时发生异常: " + e.getMessage());
+            e.printStackTrace();
+            failure = e;
+        }
+        return handleFailure(msg, failure);
+    }
+
+    /**
+     * 在消费者连接池上入账，不处理失败
+     *
+     * @return 业务处理结果
+     */
+    public boolean process(MessageExt msg) throws Exception {
+        // 消费固定使用消费者连接池
+        PoolRole previous = DataSourceContext.switchRole(PoolRole.CONSUMER);
+        try {
+            String messageBody = new String(msg.getBody(), StandardCharsets.UTF_8);
+            System.out.println("=== 收到事务消息 ===");
+            System.out.println("消息ID: " + msg.getMsgId());
+            System.out.println("消息内容: " + messageBody);
+            System.out.println("消息标签: " + msg.getTags());
+            System.out.println("消息主题: " + msg.getTopic());
+            System.out.println("重试次数: " + msg.getReconsumeTimes());
+            System.out.println("==================");
+
+            // 使用ConsumerService处理业务逻辑 批量转账消息按明细展开入账
+            return ProjectConstant.TRANSFER_TYPE_BATCH.equals(msg.getUserProperty(ProjectConstant.TRANSFER_TYPE_PROPERTY))
+                    ? consumerService.processBatchTransferMessage(messageBody)
+                    : consumerService.processTransferMessage(messageBody);
+        } finally {
+            DataSourceContext.restoreRole(previous);
+        }
+    }
+
+    /**
+     * 可重试且未超过最大重试次数时返回 false 交给引擎退避重试，否则隔离
+     *
+     * @param failure 处理时的异常，处理结果为失败时为 null
+     */
+    public boolean handleFailure(MessageExt msg, Exception failure) {
+        boolean retryable = failure == null || ConsumeFailureClassifier.isRetryable(failure);
+        if (retryable && msg.getReconsumeTimes() < retry.getMaxRetries()) {
+            retries.increment();
+            System.err.println("=== 业务处理失败，将第" + (msg.getReconsumeTimes() + 1) + "次重试 ===");
+            return false;
+        }
+        String reason = !retryable ? failure.getMessage()
+                : "重试" + msg.getReconsumeTimes() + "次仍失败: " + (failure != null ? failure.getMessage() : "处理结果为失败");
+        if (reason == null) {
+            reason = failure.getClass().getName();
+        }
+        if (deadLetterSender != null && PERMANENT_TARGET_DLQ.equals(retry.getPermanentFailureTarget())) {
+            try {
+                deadLetterSender.send(msg);
+                deadLettered.increment();
+                System.err.println("=== 消息已投入死信队列 msgId: " + msg.getMsgId() + " 原因: " + reason + " ===");
+                return true;
+            } catch (Exception e) {
+                System.err.println("投递死信队列失败，将重试: " + e.getMessage());
+                return false;
+            }
+        }
+        if (consumeQuarantine.quarantine(msg, reason)) {
+            quarantined.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getQuarantined() {
+        return quarantined.sum();
+    }
+
+    public long getDeadLettered() {
+        return deadLettered.sum();
+    }
+
+    /**
+     * 把消息投入死信队列
+     */
+    @FunctionalInterface
+    public interface DeadLetterSender {
+        void send(MessageExt msg) throws Exception;
+    }
+}
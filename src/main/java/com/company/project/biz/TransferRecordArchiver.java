@@ -0,0 +1,151 @@
+package com.company.project.biz;
+
+import com.alibaba.fastjson.JSON;
+import com.company.project.biz.entity.TransferRecord;
+import com.company.project.biz.mapper.TransferRecordMapper;
+import com.company.project.configurer.TransferRecordPartitionConfigurer;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * transfer_record 分区维护
+ * - 提前创建未来月份的分区，避免数据落入 pmax
+ * - 超过保留期的分区流式导出为 gzip 压缩的 NDJSON 文件，校验行数后删除分区
+ * 每个数据库分片各自维护，多分片时归档文件名带分片名
+ */
+@Slf4j
+@Component
+public class TransferRecordArchiver {
+
+    @Resource
+    private TransferRecordMapper transferRecordMapper;
+
+    @Autowired
+    private TransferRecordPartitionConfigurer partitionConfigurer;
+
+    @Resource
+    private ShardRouter shardRouter;
+
+    /**
+     * 每天凌晨维护一次分区
+     */
+    @Scheduled(cron = "${transfer-record.partition.maintain-cron:0 30 3 * * ?}")
+    public void maintainPartitions() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            Integer previous = DataSourceContext.switchShard(shard);
+            try {
+                createFuturePartitions();
+                archiveExpiredPartitions(shard);
+            } catch (Exception e) {
+                log.error("transfer_record 分区维护失败 shard={}", shardRouter.getShardNames().get(shard), e);
+            } finally {
+                DataSourceContext.restoreShard(previous);
+            }
+        }
+    }
+
+    /**
+     * 确保当前分片当前月到未来 futureMonths 个月的分区都已存在
+     */
+    public void createFuturePartitions() {
+        List<String> partitions = transferRecordMapper.selectPartitionNames();
+        YearMonth latest = null;
+        for (String partition : partitions) {
+            YearMonth month = TransferRecordPartitions.monthOf(partition);
+            if (month != null && (latest == null || month.isAfter(latest))) {
+                latest = month;
+            }
+        }
+        YearMonth target = YearMonth.now().plusMonths(partitionConfigurer.getFutureMonths());
+        YearMonth next = latest == null ? YearMonth.now() : latest.plusMonths(1);
+        while (!next.isAfter(target)) {
+            String partition = TransferRecordPartitions.partitionName(next);
+            transferRecordMapper.addPartition(partition, TransferRecordPartitions.lessThan(next));
+            log.info("transfer_record 新增分区 {}", partition);
+            next = next.plusMonths(1);
+        }
+    }
+
+    /**
+     * 归档并删除当前分片超过保留期的分区
+     *
+     * @param shard 当前分片序号，用于归档文件命名
+     */
+    public void archiveExpiredPartitions(int shard) throws IOException {
+        YearMonth oldestRetained = YearMonth.now().minusMonths(partitionConfigurer.getRetentionMonths());
+        for (String partition : transferRecordMapper.selectPartitionNames()) {
+            YearMonth month = TransferRecordPartitions.monthOf(partition);
+            if (month == null || !month.isBefore(oldestRetained)) {
+                continue;
+            }
+            long archived = archivePartition(shard, partition);
+            long expected = transferRecordMapper.countPartition(partition);
+            if (archived != expected) {
+                // 归档期间仍有写入（通常是时钟异常的数据），保留分区等待下次处理
+                log.warn("transfer_record 分区 {} 归档行数 {} 与当前行数 {} 不一致，跳过删除", partition, archived, expected);
+                continue;
+            }
+            if (partitionConfigurer.isDropAfterArchive()) {
+                transferRecordMapper.dropPartition(partition);
+                log.info("transfer_record 分区 {} 已归档 {} 行并删除", partition, archived);
+            }
+        }
+    }
+
+    /**
+     * 流式导出当前分片的单个分区，先写临时文件，完成后原子重命名
+     *
+     * @param shard 当前分片序号，用于归档文件命名
+     * @return 导出行数
+     */
+    public long archivePartition(int shard, String partition) throws IOException {
+        if (!TransferRecordPartitions.isMonthPartition(partition)) {
+            throw new IllegalArgumentException("非法分区名: " + partition);
+        }
+        Path dir = Paths.get(partitionConfigurer.getArchiveDir());
+        Files.createDirectories(dir);
+        String shardPrefix = shardRouter.getShardCount() > 1 ? shardRouter.getShardNames().get(shard) + "_" : "";
+        Path target = dir.resolve("transfer_record_" + shardPrefix + partition + ".ndjson.gz");
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+
+        long[] rows = new long[1];
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024), StandardCharsets.UTF_8))) {
+            transferRecordMapper.scanPartition(partition, context -> {
+                TransferRecord record = context.getResultObject();
+                try {
+                    writer.write(JSON.toJSONString(record));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (IOException | RuntimeException e) {
+            // 写文件失败会被 MyBatis 包装后抛出，统一清理临时文件
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows[0];
+    }
+}
@@ -0,0 +1,67 @@
+package com.company.project.biz;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.regex.Pattern;
+
+/**
+ * transfer_record 按月分区的命名与路由规则
+ * 分区 pYYYYMM 存放该月数据，即 VALUES LESS THAN 下个月第一天
+ */
+public final class TransferRecordPartitions {
+
+    /**
+     * 兜底分区名
+     */
+    public static final String MAX_PARTITION = "pmax";
+
+    private static final Pattern MONTH_PARTITION = Pattern.compile("p\\d{6}");
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private TransferRecordPartitions() {
+    }
+
+    /**
+     * 月份对应的分区名，如 2026-10 -> p202610
+     */
+    public static String partitionName(YearMonth month) {
+        return month.format(NAME_FORMAT);
+    }
+
+    /**
+     * 分区名对应的月份，非月分区（如 pmax）返回 null
+     */
+    public static YearMonth monthOf(String partitionName) {
+        if (!isMonthPartition(partitionName)) {
+            return null;
+        }
+        return YearMonth.parse(partitionName, NAME_FORMAT);
+    }
+
+    /**
+     * 分区名只能来自本类生成的规则，用于拼接 DDL 前的校验
+     */
+    public static boolean isMonthPartition(String partitionName) {
+        return partitionName != null && MONTH_PARTITION.matcher(partitionName).matches();
+    }
+
+    /**
+     * 分区上界（不包含），格式 yyyy-MM-dd
+     */
+    public static String lessThan(YearMonth month) {
+        return month.plusMonths(1).atDay(1).toString();
+    }
+
+    /**
+     * 热点查询的起始时间：当前月往前 hotMonths 个月的第一天
+     * 查询带上 create_time >= hotSince 后 MySQL 只会扫描最近的分区
+     */
+    public static Date hotSince(int hotMonths) {
+        LocalDate since = YearMonth.now().minusMonths(Math.max(hotMonths, 0)).atDay(1);
+        return Date.from(since.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,149 @@
+package com.company.project.biz;
+
+import com.company.project.configurer.RocketMQConfigurer;
+import com.company.project.exception.BizException;
+import com.company.project.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.LocalTransactionState;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 转账异步提交池，HTTP 请求线程把转账交给本池后立即返回，本地事务结果通过 CompletableFuture 回调
+ * 4.5 客户端的 sendMessageInTransaction 是同步调用（half 消息、本地事务、endTransaction 依次执行），
+ * 这里用固定大小的池承接阻塞部分，池大小按生产者连接池设置，HTTP 并发连接数不再受 Tomcat 线程数限制
+ * 队列满时直接拒绝，避免请求无限堆积；请求等待超时后，还在队列中未开始执行的转账被取消，不会在客户端收到处理中之后才扣款
+ */
+@Slf4j
+@ConditionalOnProperty(prefix = "rocketmq", name = "enabled", matchIfMissing = true)
+@Component
+public class TransferSubmitter implements InitializingBean, DisposableBean, PublicMetrics {
+
+    private ThreadPoolExecutor executor;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    @Resource
+    private TransactionProducer transactionProducer;
+
+    @Autowired
+    private RocketMQConfigurer rocketMQConfigurer;
+
+    @Override
+    public void afterPropertiesSet() {
+        RocketMQConfigurer.SubmitProperties submit = rocketMQConfigurer.getSubmit();
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(submit.getThreads(), submit.getThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(submit.resolveQueueCapacity()), r -> {
+            Thread thread = new Thread(r, "transfer-submit-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("转账提交池启动 threads={} queueCapacity={}", submit.getThreads(), submit.resolveQueueCapacity());
+    }
+
+    /**
+     * 提交一笔转账
+     *
+     * @return 本地事务结果；提交池已满时以 {@link BizException} 异常完成
+     */
+    public Submission submit(String recordNo, Long fromUserId, Long toUserId, Long changeMoney) {
+        Submission submission = new Submission(recordNo, fromUserId, toUserId, changeMoney);
+        try {
+            executor.execute(submission);
+            submitted.increment();
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            submission.completeExceptionally(new BizException(ErrorCode.RESULT_ERROR.getErrorCode(), "系统繁忙，请稍后重试"));
+        }
+        return submission;
+    }
+
+    /**
+     * 一笔已提交的转账，开始执行前可以取消
+     */
+    public final class Submission extends CompletableFuture<LocalTransactionState> implements Runnable {
+
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int CANCELLED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(NEW);
+        private final String recordNo;
+        private final Long fromUserId;
+        private final Long toUserId;
+        private final Long changeMoney;
+
+        private Submission(String recordNo, Long fromUserId, Long toUserId, Long changeMoney) {
+            this.recordNo = recordNo;
+            this.fromUserId = fromUserId;
+            this.toUserId = toUserId;
+            this.changeMoney = changeMoney;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(NEW, RUNNING)) {
+                return;
+            }
+            try {
+                complete(transactionProducer.sendTransfer(recordNo, fromUserId, toUserId, changeMoney));
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            }
+        }
+
+        /**
+         * 还未开始执行时取消并移出队列，此后不会再发起这笔转账
+         *
+         * @return true 取消成功；false 已开始执行或已结束，结果以转账记录为准
+         */
+        public boolean cancelIfNotStarted() {
+            if (!state.compareAndSet(NEW, CANCELLED)) {
+                return false;
+            }
+            executor.remove(this);
+            cancelled.increment();
+            cancel(false);
+            return true;
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("rocketmq.submit.submitted", submitted.sum()));
+        metrics.add(new Metric<>("rocketmq.submit.rejected", rejected.sum()));
+        metrics.add(new Metric<>("rocketmq.submit.cancelled", cancelled.sum()));
+        metrics.add(new Metric<>("rocketmq.submit.active", executor.getActiveCount()));
+        metrics.add(new Metric<>("rocketmq.submit.queued", executor.getQueue().size()));
+        return metrics;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("转账提交池关闭超时，剩余 {} 个请求未执行", executor.shutdownNow().size());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.company.project.biz.cache;
+
+import com.company.project.biz.entity.TransferRecord;
+import com.company.project.biz.mapper.TransferRecordMapper;
+import com.company.project.configurer.TransferRecordCacheConfigurer;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.ShardRouter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 转账记录查询近端缓存，替代 MyBatis 全局二级缓存，只用于不可变数据
+ * - 按 record_no 缓存转账记录，按 transaction_id 缓存“本地事务已落库”
+ * - 只缓存查到的结果，不缓存不存在，避免本地事务提交前的回查把否定结果缓存下来
+ * - 本地事务提交后主动写入，回查与重复查询无需再读库
+ * - 容量有上限并按写入时间过期，未启用时所有查询直接读库
+ */
+@Component
+public class TransferRecordLookupCache implements InitializingBean, PublicMetrics {
+
+    @Resource
+    private TransferRecordMapper transferRecordMapper;
+
+    @Autowired
+    private TransferRecordCacheConfigurer cacheConfigurer;
+
+    @Resource
+    private ShardRouter shardRouter;
+
+    private Cache<String, TransferRecord> byRecordNo;
+    private Cache<String, Boolean> byTransactionId;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!cacheConfigurer.isEnabled()) {
+            return;
+        }
+        byRecordNo = Caffeine.newBuilder()
+                .maximumSize(cacheConfigurer.getMaxSize())
+                .expireAfterWrite(cacheConfigurer.getExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        byTransactionId = Caffeine.newBuilder()
+                .maximumSize(cacheConfigurer.getMaxSize())
+                .expireAfterWrite(cacheConfigurer.getExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 按流水编号查询，不存在时返回 null；返回的是副本，调用方修改不会影响缓存
+     */
+    public TransferRecord getByRecordNo(String recordNo) {
+        if (byRecordNo == null) {
+            return selectByRecordNo(recordNo);
+        }
+        return copyOf(byRecordNo.get(recordNo, this::selectByRecordNo));
+    }
+
+    /**
+     * 流水编号不含用户id，逐个分片查找
+     */
+    private TransferRecord selectByRecordNo(String recordNo) {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            TransferRecord record = DataSourceContext.callOnShard(shard, () -> transferRecordMapper.selectByRecordNo(recordNo));
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 事务id对应的转账记录是否已落库
+     *
+     * @param loader 未命中时的查库逻辑，只有返回 true 才会缓存
+     */
+    public boolean containsTransaction(String transactionId, Predicate<String> loader) {
+        if (byTransactionId == null) {
+            return loader.test(transactionId);
+        }
+        return byTransactionId.get(transactionId, id -> loader.test(id) ? Boolean.TRUE : null) != null;
+    }
+
+    /**
+     * 当前事务提交后写入缓存，回滚则不写入；不在事务中时立即写入
+     */
+    public void putAfterCommit(TransferRecord record) {
+        putAfterCommit(record.getTransactionId(), Collections.singletonList(record));
+    }
+
+    /**
+     * 批量转账提交后写入缓存，同一批次共享一个事务id
+     */
+    public void putAfterCommit(String transactionId, List<TransferRecord> records) {
+        if (byTransactionId == null) {
+            return;
+        }
+        List<TransferRecord> copies = new ArrayList<>(records.size());
+        for (TransferRecord record : records) {
+            copies.add(copyOf(record));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    put(transactionId, copies);
+                }
+            });
+        } else {
+            put(transactionId, copies);
+        }
+    }
+
+    private void put(String transactionId, List<TransferRecord> records) {
+        if (transactionId != null) {
+            byTransactionId.put(transactionId, Boolean.TRUE);
+        }
+        for (TransferRecord record : records) {
+            // 没有回填 id 的记录与库中不一致，不缓存，查询时再从库中加载
+            if (record.getId() != null) {
+                byRecordNo.put(record.getRecordNo(), record);
+            }
+        }
+    }
+
+    private static TransferRecord copyOf(TransferRecord record) {
+        if (record == null) {
+            return null;
+        }
+        return new TransferRecord()
+                .setId(record.getId())
+                .setFromUserId(record.getFromUserId())
+                .setChangeMoney(record.getChangeMoney())
+                .setTransactionId(record.getTransactionId())
+                .setToUserId(record.getToUserId())
+                .setRecordNo(record.getRecordNo())
+                .setCreateTime(record.getCreateTime());
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        if (byRecordNo == null) {
+            return metrics;
+        }
+        metrics.add(new Metric<>("cache.transferRecord.recordNo.hitRatio", byRecordNo.stats().hitRate()));
+        metrics.add(new Metric<>("cache.transferRecord.recordNo.size", byRecordNo.estimatedSize()));
+        metrics.add(new Metric<>("cache.transferRecord.transactionId.hitRatio", byTransactionId.stats().hitRate()));
+        metrics.add(new Metric<>("cache.transferRecord.transactionId.size", byTransactionId.estimatedSize()));
+        return metrics;
+    }
+}
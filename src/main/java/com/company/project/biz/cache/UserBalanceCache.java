@@ -0,0 +1,341 @@
+package com.company.project.biz.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.company.project.biz.entity.User;
+import com.company.project.biz.mapper.UserMapper;
+import com.company.project.configurer.UserCacheConfigurer;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.ShardRouter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户余额读穿透缓存：本地 Caffeine(W-TinyLFU) 近端缓存 + 可选 Redis 二级缓存
+ * - 读：本地 -> Redis -> MySQL，同一 key 的并发未命中只会触发一次加载（单个与批量读取各自合并请求）
+ * - 批量读：未命中的 key 合并为一次 Redis mget，再按分片各一次 selectBatchIds
+ * - 写：addMoney/reduceMoney 所在事务提交后失效本地与 Redis 缓存，未提交或回滚的数据不会被读到
+ * - Redis 回填带版本条件：每个用户有一个版本 key，失效时先自增版本再删除缓存；
+ *   读库前记下版本，回填时版本未变才写入，避免读库后、回填前提交的变更被旧值覆盖
+ * - 本地与 Redis 均设置较短过期时间，兜底跨实例失效
+ */
+@Slf4j
+@Component
+public class UserBalanceCache implements InitializingBean, PublicMetrics {
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private UserCacheConfigurer userCacheConfigurer;
+
+    @Autowired(required = false)
+    private JedisPool jedisPool;
+
+    private Cache<Long, User> nearCache;
+
+    /**
+     * 批量读取中正在加载的 key，并发请求同一 key 时等待同一个加载结果
+     * 加载期间该 key 发生失效会打上标记，加载完成后只撤销被标记 key 的回填，避免旧值覆盖
+     */
+    private final ConcurrentHashMap<Long, Loading> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 逐个用户比较版本后回填：KEYS 为成对的缓存 key 与版本 key，ARGV[1] 为过期秒数，
+     * 之后成对为读库前的版本（不存在为空串）与缓存值
+     */
+    private static final String BACKFILL_SCRIPT = "for i = 1, #KEYS / 2 do\n"
+            + "  local version = redis.call('GET', KEYS[i * 2]) or ''\n"
+            + "  if version == ARGV[i * 2] then\n"
+            + "    redis.call('SETEX', KEYS[i * 2 - 1], ARGV[1], ARGV[i * 2 + 1])\n"
+            + "  end\n"
+            + "end\n"
+            + "return 0";
+
+    /**
+     * 版本 key 的过期时间相对缓存过期时间的倍数；版本 key 过期后读到的版本为空，与任何已读到的版本都不同，只会少回填不会回填旧值
+     */
+    private static final int VERSION_EXPIRE_FACTOR = 10;
+
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    @Override
+    public void afterPropertiesSet() {
+        nearCache = Caffeine.newBuilder()
+                .maximumSize(userCacheConfigurer.getLocalMaxSize())
+                .expireAfterWrite(userCacheConfigurer.getLocalExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        if (userCacheConfigurer.isRedisEnabled() && jedisPool == null) {
+            log.warn("user-cache.redis-enabled=true 但未找到 jedisPool，仅使用本地缓存");
+        }
+    }
+
+    /**
+     * 读取用户，用户不存在时返回 null（不缓存空值）
+     */
+    public User get(Long userId) {
+        return nearCache.get(userId, this::loadThroughRedis);
+    }
+
+    /**
+     * 批量读取用户，不存在的用户不会出现在结果中
+     * 未命中的 key 由当前请求统一加载，其他请求正在加载的 key 直接等待其结果
+     */
+    public Map<Long, User> getAll(Collection<Long> userIds) {
+        Map<Long, User> result = new HashMap<>(nearCache.getAllPresent(userIds));
+        Map<Long, Loading> owned = new HashMap<>();
+        Map<Long, CompletableFuture<User>> waiting = new HashMap<>();
+        for (Long userId : userIds) {
+            if (result.containsKey(userId) || owned.containsKey(userId) || waiting.containsKey(userId)) {
+                continue;
+            }
+            Loading future = new Loading();
+            Loading existing = inFlight.putIfAbsent(userId, future);
+            if (existing == null) {
+                owned.put(userId, future);
+            } else {
+                waiting.put(userId, existing);
+            }
+        }
+
+        // 先完成自己负责的 key 再等待别人的，避免两个批量请求互相等待
+        if (!owned.isEmpty()) {
+            try {
+                Map<Long, User> loaded = loadAllThroughRedis(owned.keySet());
+                for (Map.Entry<Long, Loading> entry : owned.entrySet()) {
+                    User user = loaded.get(entry.getKey());
+                    if (user != null) {
+                        result.put(entry.getKey(), user);
+                        nearCache.put(entry.getKey(), user);
+                        // 先回填再检查标记：标记在回填前设置则这里撤销，在检查之后设置则由 evict 自己失效
+                        if (entry.getValue().evicted) {
+                            nearCache.invalidate(entry.getKey());
+                        }
+                    }
+                    entry.getValue().complete(user);
+                }
+            } catch (Throwable e) {
+                // Error 也要完成 future，否则等待同一 key 的请求会永远阻塞在 join
+                owned.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                owned.forEach(inFlight::remove);
+            }
+        }
+        for (Map.Entry<Long, CompletableFuture<User>> entry : waiting.entrySet()) {
+            User user = entry.getValue().join();
+            if (user != null) {
+                result.put(entry.getKey(), user);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 当前事务提交后失效缓存；不在事务中时立即失效
+     */
+    public void evictAfterCommit(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evict(userId);
+                }
+            });
+        } else {
+            evict(userId);
+        }
+    }
+
+    public void evict(Long userId) {
+        Loading loading = inFlight.get(userId);
+        if (loading != null) {
+            loading.evicted = true;
+        }
+        nearCache.invalidate(userId);
+        if (redisEnabled()) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                // 先自增版本再删除：删除之后的回填必然看到新版本而放弃，删除之前的回填会被删除覆盖
+                Pipeline pipeline = jedis.pipelined();
+                pipeline.incr(versionKey(userId));
+                pipeline.expire(versionKey(userId), userCacheConfigurer.getRedisExpireSeconds() * VERSION_EXPIRE_FACTOR);
+                pipeline.del(redisKey(userId));
+                pipeline.sync();
+            } catch (Exception e) {
+                redisErrors.increment();
+                log.warn("删除Redis余额缓存失败 userId={}", userId, e);
+            }
+        }
+    }
+
+    private User loadThroughRedis(Long userId) {
+        if (!redisEnabled()) {
+            return selectUser(userId);
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            List<String> cached = jedis.mget(redisKey(userId), versionKey(userId));
+            if (cached.get(0) != null) {
+                redisHits.increment();
+                return JSON.parseObject(cached.get(0), User.class);
+            }
+            redisMisses.increment();
+            User user = selectUser(userId);
+            if (user != null) {
+                backfill(jedis, Collections.singletonMap(userId, user), Collections.singletonMap(userId, cached.get(1)));
+            }
+            return user;
+        } catch (Exception e) {
+            // Redis 不可用时降级直接读库
+            redisErrors.increment();
+            log.warn("读取Redis余额缓存失败 userId={}", userId, e);
+            return selectUser(userId);
+        }
+    }
+
+    private Map<Long, User> loadAllThroughRedis(Collection<Long> userIds) {
+        if (!redisEnabled()) {
+            return selectUsers(userIds);
+        }
+        List<Long> ids = new ArrayList<>(userIds);
+        try (Jedis jedis = jedisPool.getResource()) {
+            // 缓存值与版本一次 mget 读出，前半为缓存值，后半为版本
+            String[] keys = new String[ids.size() * 2];
+            for (int i = 0; i < ids.size(); i++) {
+                keys[i] = redisKey(ids.get(i));
+                keys[ids.size() + i] = versionKey(ids.get(i));
+            }
+            List<String> cached = jedis.mget(keys);
+            Map<Long, User> result = new HashMap<>(ids.size() * 2);
+            List<Long> missing = new ArrayList<>();
+            Map<Long, String> versions = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                if (cached.get(i) != null) {
+                    result.put(ids.get(i), JSON.parseObject(cached.get(i), User.class));
+                } else {
+                    missing.add(ids.get(i));
+                    versions.put(ids.get(i), cached.get(ids.size() + i));
+                }
+            }
+            redisHits.add(ids.size() - missing.size());
+            redisMisses.add(missing.size());
+            if (!missing.isEmpty()) {
+                Map<Long, User> loaded = selectUsers(missing);
+                if (!loaded.isEmpty()) {
+                    backfill(jedis, loaded, versions);
+                }
+                result.putAll(loaded);
+            }
+            return result;
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("批量读取Redis余额缓存失败 size={}", userIds.size(), e);
+            return selectUsers(userIds);
+        }
+    }
+
+    /**
+     * 版本与读库前一致的用户才写入 Redis
+     *
+     * @param versions 读库前读到的版本，不存在为 null
+     */
+    private void backfill(Jedis jedis, Map<Long, User> users, Map<Long, String> versions) {
+        List<String> keys = new ArrayList<>(users.size() * 2);
+        List<String> args = new ArrayList<>(users.size() * 2 + 1);
+        args.add(String.valueOf(userCacheConfigurer.getRedisExpireSeconds()));
+        for (Map.Entry<Long, User> entry : users.entrySet()) {
+            String version = versions.get(entry.getKey());
+            keys.add(redisKey(entry.getKey()));
+            keys.add(versionKey(entry.getKey()));
+            args.add(version == null ? "" : version);
+            args.add(JSON.toJSONString(entry.getValue()));
+        }
+        jedis.eval(BACKFILL_SCRIPT, keys, args);
+    }
+
+    private User selectUser(Long userId) {
+        return DataSourceContext.callOnShard(shardRouter.shardOf(userId), () -> userMapper.selectById(userId));
+    }
+
+    /**
+     * 按分片分组批量查询
+     */
+    private Map<Long, User> selectUsers(Collection<Long> userIds) {
+        Map<Integer, List<Long>> idsByShard = new HashMap<>();
+        for (Long userId : userIds) {
+            idsByShard.computeIfAbsent(shardRouter.shardOf(userId), key -> new ArrayList<>()).add(userId);
+        }
+        Map<Long, User> map = new HashMap<>(userIds.size() * 2);
+        for (Map.Entry<Integer, List<Long>> entry : idsByShard.entrySet()) {
+            for (User user : DataSourceContext.callOnShard(entry.getKey(), () -> userMapper.selectBatchIds(entry.getValue()))) {
+                map.put(user.getId(), user);
+            }
+        }
+        return map;
+    }
+
+    private boolean redisEnabled() {
+        return userCacheConfigurer.isRedisEnabled() && jedisPool != null;
+    }
+
+    private String redisKey(Long userId) {
+        return userCacheConfigurer.getRedisKeyPrefix() + userId;
+    }
+
+    private String versionKey(Long userId) {
+        return userCacheConfigurer.getRedisKeyPrefix() + "version:" + userId;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = nearCache.stats();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("cache.user.local.hitRatio", stats.hitRate()));
+        metrics.add(new Metric<>("cache.user.local.hits", stats.hitCount()));
+        metrics.add(new Metric<>("cache.user.local.misses", stats.missCount()));
+        metrics.add(new Metric<>("cache.user.local.evictions", stats.evictionCount()));
+        metrics.add(new Metric<>("cache.user.local.size", nearCache.estimatedSize()));
+        long hits = redisHits.sum();
+        long misses = redisMisses.sum();
+        metrics.add(new Metric<>("cache.user.redis.hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses)));
+        metrics.add(new Metric<>("cache.user.redis.hits", hits));
+        metrics.add(new Metric<>("cache.user.redis.misses", misses));
+        metrics.add(new Metric<>("cache.user.redis.errors", redisErrors.sum()));
+        return metrics;
+    }
+
+    /**
+     * 批量读取中的一次加载，evicted 表示加载期间该用户发生过失效
+     */
+    private static final class Loading extends CompletableFuture<User> {
+        private volatile boolean evicted;
+    }
+}
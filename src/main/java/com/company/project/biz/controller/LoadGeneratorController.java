@@ -0,0 +1,91 @@
+package com.company.project.biz.controller;
+
+import com.company.project.bean.BaseResult;
+import com.company.project.bean.LoadStats;
+import com.company.project.biz.LoadGenerator;
+import com.company.project.exception.BizException;
+import com.company.project.exception.ErrorCode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * 压测发压接口，取代逐次调用 /test/mqTest
+ * 启动：POST /load/start?tps=500&durationSeconds=60&accounts=10000&skew=0.99
+ * 实时统计：GET /load/stream（text/event-stream，每秒一条 stats 事件，结束后关闭）
+ */
+@ConditionalOnProperty(prefix = "load-generator", name = "enabled")
+@RestController
+@RequestMapping("/load")
+public class LoadGeneratorController {
+
+    private static final int MAX_DURATION_SECONDS = 3600;
+    private static final int MAX_THREADS = 512;
+
+    @Resource
+    private LoadGenerator loadGenerator;
+
+    @PostMapping("/start")
+    public BaseResult<LoadStats> start(@RequestParam("tps") double tps,
+                                       @RequestParam(value = "durationSeconds", defaultValue = "60") int durationSeconds,
+                                       @RequestParam(value = "accounts", defaultValue = "1000") int accounts,
+                                       @RequestParam(value = "skew", defaultValue = "0") double skew,
+                                       @RequestParam(value = "amount", defaultValue = "1") long amount,
+                                       @RequestParam(value = "threads", defaultValue = "64") int threads) {
+        if (tps <= 0 || durationSeconds <= 0 || durationSeconds > MAX_DURATION_SECONDS || accounts < 2 || skew < 0
+                || amount <= 0 || threads <= 0 || threads > MAX_THREADS) {
+            throw new BizException(ErrorCode.PARAMS_REQUIRED.getErrorCode(), "压测参数错误：tps>0，durationSeconds 1~"
+                    + MAX_DURATION_SECONDS + "，accounts>=2，skew>=0，amount>0，threads 1~" + MAX_THREADS);
+        }
+        return new BaseResult<>(loadGenerator.start(tps, durationSeconds, accounts, skew, amount, threads));
+    }
+
+    @PostMapping("/stop")
+    public BaseResult<LoadStats> stop() {
+        loadGenerator.stop();
+        return new BaseResult<>(loadGenerator.getLatest());
+    }
+
+    @GetMapping("/stats")
+    public BaseResult<LoadStats> stats() {
+        LoadStats stats = loadGenerator.getLatest();
+        if (stats == null) {
+            throw new BizException(ErrorCode.RESULT_EMPTY);
+        }
+        return new BaseResult<>(stats);
+    }
+
+    /**
+     * 推送当前压测的实时统计，最后一条 running=false 后结束
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        SseEmitter emitter = new SseEmitter(0L);
+        Consumer<LoadStats> listener = stats -> {
+            try {
+                emitter.send(SseEmitter.event().name("stats").data(stats, MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                // 客户端断开，抛出后由发压器移除订阅
+                emitter.completeWithError(e);
+                throw new UncheckedIOException(e);
+            }
+            if (!stats.isRunning()) {
+                emitter.complete();
+            }
+        };
+        emitter.onTimeout(() -> loadGenerator.unsubscribe(listener));
+        emitter.onCompletion(() -> loadGenerator.unsubscribe(listener));
+        loadGenerator.subscribe(listener);
+        return emitter;
+    }
+}
@@ -2,6 +2,7 @@ package com.company.project.biz.controller;
 
 import com.company.project.biz.Consumer;
 import com.company.project.biz.TransactionProducer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -15,6 +16,7 @@ import javax.annotation.Resource;
  * @author chenyin
  * @since 2019-05-10
  */
+@ConditionalOnProperty(prefix = "rocketmq", name = "enabled", matchIfMissing = true)
 @RestController
 @RequestMapping("/test")
 public class TestController {
@@ -0,0 +1,109 @@
+package com.company.project.biz.controller;
+
+import com.company.project.bean.BaseResult;
+import com.company.project.bean.TransferReceipt;
+import com.company.project.bean.TransferRequest;
+import com.company.project.biz.TransactionProducer;
+import com.company.project.biz.TransferSubmitter;
+import com.company.project.configurer.RocketMQConfigurer;
+import com.company.project.core.SnowflakeIdGenerator;
+import com.company.project.exception.BizException;
+import com.company.project.exception.ErrorCode;
+import org.apache.rocketmq.client.producer.LocalTransactionState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.Resource;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 转账提交
+ * POST /transfer 异步提交：请求线程只做校验与生成流水号，本地事务在 {@link TransferSubmitter} 中执行，
+ * 结果通过 DeferredResult 返回，等待期间不占用 Tomcat 线程
+ * POST /transfer/sync 同步提交，语义相同，请求线程等待整个事务消息发送过程
+ */
+@ConditionalOnProperty(prefix = "rocketmq", name = "enabled", matchIfMissing = true)
+@RestController
+@RequestMapping("/transfer")
+public class TransferController {
+
+    @Resource
+    private TransferSubmitter transferSubmitter;
+
+    @Resource
+    private TransactionProducer transactionProducer;
+
+    @Resource
+    private SnowflakeIdGenerator idGenerator;
+
+    @Autowired
+    private RocketMQConfigurer rocketMQConfigurer;
+
+    @PostMapping
+    public DeferredResult<BaseResult<TransferReceipt>> submit(@RequestBody TransferRequest request) {
+        checkRequest(request);
+        String recordNo = idGenerator.nextRecordNo();
+        DeferredResult<BaseResult<TransferReceipt>> result = new DeferredResult<>(
+                rocketMQConfigurer.getSubmit().getTimeoutMillis(),
+                new BaseResult<>(ErrorCode.RESULT_ERROR.getErrorCode(), "处理超时，请按流水号查询转账结果",
+                        new TransferReceipt().setRecordNo(recordNo).setStatus(TransferReceipt.PENDING)));
+        TransferSubmitter.Submission submission = transferSubmitter.submit(recordNo, request.getFromUserId(),
+                request.getToUserId(), request.getChangeMoney());
+        // 超时时仍在队列中的转账直接取消，明确告知未执行；已开始执行的按超时结果返回处理中
+        result.onTimeout(() -> {
+            if (submission.cancelIfNotStarted()) {
+                result.setResult(new BaseResult<>(ErrorCode.RESULT_ERROR.getErrorCode(), "系统繁忙，转账未执行",
+                        new TransferReceipt().setRecordNo(recordNo).setStatus(TransferReceipt.ROLLED_BACK)));
+            }
+        });
+        submission.whenComplete((state, e) -> {
+            if (e instanceof CancellationException) {
+                return;
+            }
+            if (e != null) {
+                result.setErrorResult(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else {
+                result.setResult(toResult(recordNo, state));
+            }
+        });
+        return result;
+    }
+
+    @PostMapping("/sync")
+    public BaseResult<TransferReceipt> submitSync(@RequestBody TransferRequest request) throws Exception {
+        checkRequest(request);
+        String recordNo = idGenerator.nextRecordNo();
+        return toResult(recordNo, transactionProducer.sendTransfer(recordNo, request.getFromUserId(),
+                request.getToUserId(), request.getChangeMoney()));
+    }
+
+    private static void checkRequest(TransferRequest request) {
+        if (request == null || request.getFromUserId() == null || request.getToUserId() == null
+                || request.getChangeMoney() == null) {
+            throw new BizException(ErrorCode.PARAMS_REQUIRED);
+        }
+        if (request.getChangeMoney() <= 0 || request.getFromUserId().equals(request.getToUserId())) {
+            throw new BizException(ErrorCode.PARAMS_REQUIRED.getErrorCode(), "转账金额必须大于0，且不能转给自己");
+        }
+    }
+
+    private static BaseResult<TransferReceipt> toResult(String recordNo, LocalTransactionState state) {
+        TransferReceipt receipt = new TransferReceipt().setRecordNo(recordNo);
+        if (state == LocalTransactionState.COMMIT_MESSAGE) {
+            return new BaseResult<>(receipt.setStatus(TransferReceipt.COMMITTED));
+        }
+        if (state == LocalTransactionState.ROLLBACK_MESSAGE) {
+            return new BaseResult<>(ErrorCode.RESULT_ERROR.getErrorCode(), "转账失败，余额不足或账户不存在",
+                    receipt.setStatus(TransferReceipt.ROLLED_BACK));
+        }
+        // 本地事务结果未知，由 broker 回查决定
+        return new BaseResult<>(ErrorCode.RESULT_ERROR.getErrorCode(), "转账处理中，请按流水号查询转账结果",
+                receipt.setStatus(TransferReceipt.PENDING));
+    }
+}
@@ -1,10 +1,22 @@
 package com.company.project.biz.controller;
 
 
+import com.company.project.bean.BaseResult;
+import com.company.project.bean.KeysetPage;
+import com.company.project.biz.entity.TransferRecord;
+import com.company.project.biz.service.TransferRecordService;
+import com.company.project.exception.BizException;
+import com.company.project.exception.ErrorCode;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
 /**
  * <p>
  *  前端控制器
@@ -16,5 +28,73 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @RequestMapping("/transferRecord")
 public class TransferRecordController {
+    /**
+     * 每页最大条数
+     */
+    private static final int MAX_PAGE_SIZE = 100;
+
+    @Resource
+    private TransferRecordService transferRecordService;
+
+    /**
+     * 用户转出记录，keyset 分页
+     *
+     * @param lastId 上一页返回的 nextLastId，首页不传
+     */
+    @GetMapping("/outgoing")
+    public BaseResult<KeysetPage<TransferRecord>> outgoing(@RequestParam("userId") Long userId,
+                                                           @RequestParam(value = "lastId", required = false) Long lastId,
+                                                           @RequestParam(value = "size", defaultValue = "20") int size) {
+        return new BaseResult<>(transferRecordService.listByUser(userId, true, lastId, checkSize(size)));
+    }
+
+    /**
+     * 用户转入记录，keyset 分页
+     *
+     * @param lastId 上一页返回的 nextLastId，首页不传
+     */
+    @GetMapping("/incoming")
+    public BaseResult<KeysetPage<TransferRecord>> incoming(@RequestParam("userId") Long userId,
+                                                           @RequestParam(value = "lastId", required = false) Long lastId,
+                                                           @RequestParam(value = "size", defaultValue = "20") int size) {
+        return new BaseResult<>(transferRecordService.listByUser(userId, false, lastId, checkSize(size)));
+    }
+
+    /**
+     * 按流水编号查询转账记录，不存在时返回 RESULT_EMPTY
+     */
+    @GetMapping("/detail")
+    public BaseResult<TransferRecord> detail(@RequestParam("recordNo") String recordNo) {
+        TransferRecord record = transferRecordService.getByRecordNo(recordNo);
+        if (record == null) {
+            throw new BizException(ErrorCode.RESULT_EMPTY);
+        }
+        return new BaseResult<>(record);
+    }
+
+    /**
+     * 流式导出用户全部转出或转入记录，每行一个 JSON 对象（NDJSON）
+     *
+     * @param direction outgoing:转出 incoming:转入
+     */
+    @GetMapping("/export")
+    public void export(@RequestParam("userId") Long userId,
+                       @RequestParam(value = "direction", defaultValue = "outgoing") String direction,
+                       HttpServletResponse response) throws IOException {
+        boolean outgoing = "outgoing".equals(direction);
+        if (!outgoing && !"incoming".equals(direction)) {
+            throw new BizException(ErrorCode.PARAMS_REQUIRED.getErrorCode(), "direction 只能是 outgoing 或 incoming");
+        }
+        response.setContentType("application/x-ndjson;charset=UTF-8");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=transfer_record_" + userId + "_" + direction + ".ndjson");
+        transferRecordService.exportByUser(userId, outgoing, response.getOutputStream());
+    }
 
+    private static int checkSize(int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new BizException(ErrorCode.PARAMS_REQUIRED.getErrorCode(), "size 取值范围 1~" + MAX_PAGE_SIZE);
+        }
+        return size;
+    }
 }
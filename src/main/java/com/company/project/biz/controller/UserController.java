@@ -1,9 +1,34 @@
 package com.company.project.biz.controller;
 
 
+import com.company.project.bean.BaseResult;
+import com.company.project.biz.cache.UserBalanceCache;
+import com.company.project.biz.entity.User;
+import com.company.project.exception.BizException;
+import com.company.project.exception.ErrorCode;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * <p>
@@ -16,5 +41,75 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @RequestMapping("/user")
 public class UserController {
+    /**
+     * 批量查询单次最多的用户数
+     */
+    private static final int MAX_BATCH_SIZE = 500;
+
+    @Resource
+    private UserBalanceCache userBalanceCache;
+
+    /**
+     * 查询单个用户余额，支持 If-None-Match 条件请求，余额未变化时返回 304
+     */
+    @GetMapping("/{id}/balance")
+    public BaseResult<User> balance(@PathVariable("id") Long id, WebRequest webRequest) {
+        User user = userBalanceCache.get(id);
+        if (user == null) {
+            throw new BizException(ErrorCode.RESULT_EMPTY);
+        }
+        if (webRequest.checkNotModified(etag(user.getId(), user.getMoney()))) {
+            return null;
+        }
+        return new BaseResult<>(user);
+    }
+
+    /**
+     * 批量查询用户余额，未命中缓存的用户合并为一次 selectBatchIds
+     * 请求头带上次返回的 ETag 且所有余额均未变化时返回 304，ETag 为按请求顺序的 id:余额 的 SHA-256 摘要
+     *
+     * @param ids 用户id列表，返回结果按请求顺序排列，不存在的用户不返回
+     */
+    @PostMapping("/balances")
+    public BaseResult<List<User>> balances(@RequestBody List<Long> ids, HttpServletRequest request, HttpServletResponse response) {
+        if (ids == null || ids.isEmpty()) {
+            throw new BizException(ErrorCode.PARAMS_REQUIRED);
+        }
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        if (distinctIds.size() > MAX_BATCH_SIZE) {
+            throw new BizException(ErrorCode.PARAMS_REQUIRED.getErrorCode(), "单次最多查询" + MAX_BATCH_SIZE + "个用户");
+        }
+        Map<Long, User> users = userBalanceCache.getAll(distinctIds);
+
+        List<User> result = new ArrayList<>(users.size());
+        MessageDigest digest = sha256();
+        for (Long id : distinctIds) {
+            User user = users.get(id);
+            if (user != null) {
+                result.add(user);
+                digest.update((id + ":" + user.getMoney() + ";").getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        // POST 不走 Spring 的条件请求处理，这里按 If-None-Match 手工比较
+        String etag = "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()) + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return null;
+        }
+        return new BaseResult<>(result);
+    }
+
+    private static String etag(long part1, long part2) {
+        return "\"" + Long.toHexString(part1) + "-" + Long.toHexString(part2) + "\"";
+    }
 
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // 每个 JRE 都必须支持 SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
 }
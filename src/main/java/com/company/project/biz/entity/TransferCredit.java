@@ -0,0 +1,47 @@
+package com.company.project.biz.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * <p>
+ * 收款入账流水，与入账在同一事务中写入收款人所在分片，record_no 唯一键保证同一笔转账只入账一次
+ * </p>
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+public class TransferCredit implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 转账流水编号
+     */
+    private String recordNo;
+
+    /**
+     * 被转账人id
+     */
+    private Long toUserId;
+
+    /**
+     * 入账金额
+     */
+    private Long changeMoney;
+
+    /**
+     * 入账时间
+     */
+    private Date createTime;
+
+
+}
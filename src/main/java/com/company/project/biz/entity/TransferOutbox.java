@@ -0,0 +1,59 @@
+package com.company.project.biz.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * <p>
+ * 待发送的转账消息，与扣钱在同一个本地事务中写入，由 OutboxRelay 批量发送
+ * </p>
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+public class TransferOutbox implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int STATUS_PENDING = 0;
+    public static final int STATUS_SHIPPED = 1;
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 消息key（转账流水号或批次号）
+     */
+    private String messageKey;
+
+    /**
+     * 转账类型，批量转账为 BATCH，单笔为空
+     */
+    private String transferType;
+
+    /**
+     * 收款账户，按账户选择队列时使用，批量转账为空
+     */
+    private String accountKey;
+
+    /**
+     * 消息体
+     */
+    private String body;
+
+    /**
+     * 0 待发送 1 已发送
+     */
+    private Integer status;
+
+    private Date createTime;
+
+    private Date shippedTime;
+
+
+}
@@ -0,0 +1,67 @@
+package com.company.project.biz.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * <p>
+ * 消费失败隔离的消息，修复数据后人工重放
+ * </p>
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+public class TransferQuarantine implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 消息id
+     */
+    private String msgId;
+
+    /**
+     * 消息主题
+     */
+    private String topic;
+
+    /**
+     * 消息key（转账流水号或批次号）
+     */
+    private String msgKeys;
+
+    /**
+     * 转账类型，批量转账为 BATCH，单笔为空
+     */
+    private String transferType;
+
+    /**
+     * 隔离前已重试次数
+     */
+    private Integer reconsumeTimes;
+
+    /**
+     * 隔离原因
+     */
+    private String reason;
+
+    /**
+     * 消息体
+     */
+    private String body;
+
+    /**
+     * 隔离时间
+     */
+    private Date createTime;
+
+
+}
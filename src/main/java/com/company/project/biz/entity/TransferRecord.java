@@ -3,6 +3,7 @@ package com.company.project.biz.entity;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
 import java.io.Serializable;
+import java.util.Date;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.experimental.Accessors;
@@ -50,5 +51,10 @@ public class TransferRecord implements Serializable {
      */
     private String recordNo;
 
+    /**
+     * 创建时间，transfer_record 的分区键
+     */
+    private Date createTime;
+
 
 }
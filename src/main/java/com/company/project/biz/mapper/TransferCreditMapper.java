@@ -0,0 +1,36 @@
+package com.company.project.biz.mapper;
+
+import com.company.project.biz.entity.TransferCredit;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>
+ *  Mapper 接口
+ * </p>
+ */
+public interface TransferCreditMapper extends BaseMapper<TransferCredit> {
+
+    /**
+     * 写入入账流水，record_no 已存在时忽略
+     * 同一 record_no 的并发写入在唯一键上等待先到的事务结束，先到的事务提交后返回 0
+     *
+     * @return 1 新写入 0 已入账
+     */
+    int insertIgnore(TransferCredit credit);
+
+    /**
+     * 批量写入入账流水，record_no 已存在的行忽略
+     *
+     * @return 新写入的行数
+     */
+    int insertIgnoreBatch(@Param("list") List<TransferCredit> credits);
+
+    /**
+     * 查询已入账的流水编号
+     */
+    List<String> selectCreditedRecordNos(@Param("recordNos") Collection<String> recordNos);
+}
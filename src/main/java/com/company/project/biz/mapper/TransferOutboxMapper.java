@@ -0,0 +1,40 @@
+package com.company.project.biz.mapper;
+
+import com.company.project.biz.entity.TransferOutbox;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <p>
+ *  Mapper 接口
+ * </p>
+ */
+public interface TransferOutboxMapper extends BaseMapper<TransferOutbox> {
+
+    /**
+     * 抢占或续期当前分片的中继租约，租约到期时间按数据库时间计算，不受各实例时钟偏差影响
+     *
+     * @return 1 表示本实例持有租约，0 表示租约由其他实例持有且未到期
+     */
+    int acquireLease(@Param("owner") String owner, @Param("leaseMillis") long leaseMillis);
+
+    /**
+     * 释放本实例持有的租约，其他实例下一轮即可接管
+     */
+    int releaseLease(@Param("owner") String owner);
+
+    /**
+     * 按 id 顺序读取一批待发送消息，不加锁，只有持有租约的实例会读取
+     */
+    List<TransferOutbox> selectPending(@Param("limit") int limit);
+
+    int markShipped(@Param("ids") List<Long> ids, @Param("shippedTime") Date shippedTime);
+
+    /**
+     * 删除一批发送时间早于 before 的消息
+     */
+    int deleteShippedBefore(@Param("before") Date before, @Param("limit") int limit);
+}
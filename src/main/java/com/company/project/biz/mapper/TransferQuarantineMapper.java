@@ -0,0 +1,12 @@
+package com.company.project.biz.mapper;
+
+import com.company.project.biz.entity.TransferQuarantine;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+ * <p>
+ *  Mapper 接口
+ * </p>
+ */
+public interface TransferQuarantineMapper extends BaseMapper<TransferQuarantine> {
+}
@@ -2,6 +2,11 @@ package com.company.project.biz.mapper;
 
 import com.company.project.biz.entity.TransferRecord;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.Date;
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +18,57 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface TransferRecordMapper extends BaseMapper<TransferRecord> {
 
+    /**
+     * 多行 insert，一次写入多条转账记录，自增 id 回填到各记录
+     */
+    int insertBatch(@Param("list") List<TransferRecord> records);
+
+    /**
+     * 按 id 倒序 keyset 分页查询用户转出记录，走 idx_from_user_id(from_user_id, id)
+     *
+     * @param lastId 上一页最后一条记录的 id，首页传 null
+     */
+    List<TransferRecord> selectOutgoingPage(@Param("userId") Long userId, @Param("lastId") Long lastId, @Param("size") int size);
+
+    /**
+     * 按 id 倒序 keyset 分页查询用户转入记录，走 idx_to_user_id(to_user_id, id)
+     *
+     * @param lastId 上一页最后一条记录的 id，首页传 null
+     */
+    List<TransferRecord> selectIncomingPage(@Param("userId") Long userId, @Param("lastId") Long lastId, @Param("size") int size);
+
+    /**
+     * 按流水编号查询转账记录，不存在时返回 null
+     */
+    TransferRecord selectByRecordNo(@Param("recordNo") String recordNo);
+
+    /**
+     * 按事务id统计转账记录，只扫描 create_time >= since 的分区
+     */
+    int countByTransactionId(@Param("transactionId") String transactionId, @Param("since") Date since);
+
+    /**
+     * 当前库中 transfer_record 的全部分区名，按分区顺序排列
+     */
+    List<String> selectPartitionNames();
+
+    /**
+     * 统计单个分区的行数
+     */
+    long countPartition(@Param("partition") String partition);
+
+    /**
+     * 流式扫描单个分区，逐行回调，不在内存中聚合结果集
+     */
+    void scanPartition(@Param("partition") String partition, ResultHandler<TransferRecord> handler);
+
+    /**
+     * 从 pmax 中拆分出新的月分区
+     */
+    void addPartition(@Param("partition") String partition, @Param("lessThan") String lessThan);
+
+    /**
+     * 删除分区（数据一并删除）
+     */
+    void dropPartition(@Param("partition") String partition);
 }
@@ -4,6 +4,8 @@ import com.company.project.biz.entity.User;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Map;
+
 /**
  * <p>
  *  Mapper 接口
@@ -15,4 +17,12 @@ import org.apache.ibatis.annotations.Param;
 public interface UserMapper extends BaseMapper<User> {
     int reduceMoney(@Param("userId") Long userId, @Param("money") Long money);
     int addMoney(@Param("userId") Long userId, @Param("money") Long money);
+
+    /**
+     * 一条 update 为多个用户加钱
+     *
+     * @param credits 用户id -> 加钱金额，同一用户需预先合并；建议使用有序 Map 使加锁顺序一致
+     * @return 匹配到的用户数，小于 credits.size() 说明有用户不存在
+     */
+    int addMoneyBatch(@Param("credits") Map<Long, Long> credits);
 }
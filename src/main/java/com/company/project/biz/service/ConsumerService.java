@@ -1,139 +1,318 @@
 package com.company.project.biz.service;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.company.project.bean.BatchTransfer;
+import com.company.project.biz.cache.UserBalanceCache;
+import com.company.project.biz.entity.TransferCredit;
 import com.company.project.biz.entity.TransferRecord;
 import com.company.project.biz.entity.User;
+import com.company.project.biz.mapper.TransferCreditMapper;
 import com.company.project.biz.mapper.UserMapper;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.ShardRouter;
+import com.company.project.exception.PermanentConsumeException;
+import org.apache.ibatis.executor.BatchResult;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Resource;
-import java.util.concurrent.ConcurrentHashMap;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * 消费者端业务服务
  * 处理事务消息消费的业务逻辑
+ * 入账落在收款人所在分片，需要先解析消息才能确定分片，因此用 TransactionTemplate 在切换分片后开启事务
+ * 入账与 transfer_credit 入账流水在同一事务中写入，record_no 唯一键去重，重复投递、并发投递与消费者重启后的重投都只入账一次
+ * 批量转账的分片事务整体使用 BATCH 执行器，入账流水与加钱语句在 flushStatements 时一次发送
  */
 @Service
-public class ConsumerService {
+public class ConsumerService implements InitializingBean {
     
     @Resource
     private UserMapper userMapper;
-    
-    // 使用内存缓存来记录已处理的转账记录，实现幂等性
-    // 注意：在生产环境中，应该使用Redis等分布式缓存，或者创建专门的消费者处理记录表
-    private static final ConcurrentHashMap<String, Boolean> processedRecordNos = new ConcurrentHashMap<>();
+
+    @Resource
+    private TransferCreditMapper transferCreditMapper;
+
+    @Resource
+    private ShardRouter shardRouter;
+
+    @Resource
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Resource(name = "batchSqlSessionTemplate")
+    private SqlSessionTemplate batchSqlSessionTemplate;
+
+    /**
+     * 绑定到 BATCH 执行器的 Mapper，只在批量入账事务中使用，同一事务内不能再调用默认的 Mapper
+     */
+    private TransferCreditMapper batchTransferCreditMapper;
+    private UserMapper batchUserMapper;
+
+    @Resource
+    private UserBalanceCache userBalanceCache;
+
+    @Override
+    public void afterPropertiesSet() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        batchTransferCreditMapper = batchSqlSessionTemplate.getMapper(TransferCreditMapper.class);
+        batchUserMapper = batchSqlSessionTemplate.getMapper(UserMapper.class);
+    }
     
     /**
      * 处理转账消息，为收款用户增加金额
+     * 消息无法解析、参数非法、收款用户不存在时抛出 {@link PermanentConsumeException}，不再重试；
+     * 数据库异常原样抛出，由消费者按失败类型决定是否重试
      * 
      * @param messageBody 消息内容
      * @return 处理结果
      */
-    @Transactional(rollbackFor = Exception.class)
     public boolean processTransferMessage(String messageBody) {
+        // 解析转账记录
+        TransferRecord transferRecord;
         try {
-            // 解析转账记录
-            TransferRecord transferRecord = JSON.parseObject(messageBody, TransferRecord.class);
-            
-            if (transferRecord == null) {
-                System.err.println("=== 消息解析失败 ===");
-                System.err.println("消息内容: " + messageBody);
-                System.err.println("==================");
-                return false;
-            }
-            
-            Long toUserId = transferRecord.getToUserId();
-            Long changeMoney = transferRecord.getChangeMoney();
-            Long fromUserId = transferRecord.getFromUserId();
-            String recordNo = transferRecord.getRecordNo();
-            String transactionId = transferRecord.getTransactionId();
-            
-            System.out.println("=== 开始处理转账业务 ===");
-            System.out.println("转账人ID: " + fromUserId);
-            System.out.println("收款人ID: " + toUserId);
-            System.out.println("转账金额: " + changeMoney);
+            transferRecord = JSON.parseObject(messageBody, TransferRecord.class);
+        } catch (JSONException e) {
+            throw new PermanentConsumeException("消息解析失败", e);
+        }
+        
+        if (transferRecord == null) {
+            System.err.println("=== 消息解析失败 ===");
+            System.err.println("消息内容: " + messageBody);
+            System.err.println("==================");
+            throw new PermanentConsumeException("消息解析失败");
+        }
+        
+        Long toUserId = transferRecord.getToUserId();
+        Long changeMoney = transferRecord.getChangeMoney();
+        Long fromUserId = transferRecord.getFromUserId();
+        String recordNo = transferRecord.getRecordNo();
+        String transactionId = transferRecord.getTransactionId();
+        
+        System.out.println("=== 开始处理转账业务 ===");
+        System.out.println("转账人ID: " + fromUserId);
+        System.out.println("收款人ID: " + toUserId);
+        System.out.println("转账金额: " + changeMoney);
+        System.out.println("转账流水号: " + recordNo);
+        System.out.println("事务ID: " + transactionId);
+        
+        // 参数校验
+        if (toUserId == null || changeMoney == null || changeMoney <= 0) {
+            System.err.println("=== 转账参数错误 ===");
+            System.err.println("收款人ID: " + toUserId);
+            System.err.println("转账金额: " + changeMoney);
+            System.err.println("==================");
+            throw new PermanentConsumeException("转账参数错误 收款人ID: " + toUserId + " 转账金额: " + changeMoney);
+        }
+
+        // 切换到收款人所在分片后开启事务，异常时回滚
+        return DataSourceContext.callOnShard(shardRouter.shardOf(toUserId),
+                () -> transactionTemplate.execute(status -> creditTransfer(transferRecord)));
+    }
+
+    /**
+     * 收款人入账，在收款人所在分片的事务中执行
+     */
+    private boolean creditTransfer(TransferRecord transferRecord) {
+        Long toUserId = transferRecord.getToUserId();
+        Long changeMoney = transferRecord.getChangeMoney();
+        String recordNo = transferRecord.getRecordNo();
+        String transactionId = transferRecord.getTransactionId();
+
+        // 幂等性检查：先写入入账流水，record_no 已入账时插入 0 行，直接跳过
+        // 入账流水与加钱同一事务，加钱失败回滚时流水一并回滚，不会误判为已处理
+        // 并发的重复投递在唯一键上等待先到的事务结束，先到的提交后插入 0 行，回滚后正常入账
+        if (recordNo != null && transferCreditMapper.insertIgnore(new TransferCredit()
+                .setRecordNo(recordNo)
+                .setToUserId(toUserId)
+                .setChangeMoney(changeMoney)
+                .setCreateTime(new Date())) == 0) {
+            System.out.println("=== 转账记录已处理过，跳过处理 ===");
             System.out.println("转账流水号: " + recordNo);
             System.out.println("事务ID: " + transactionId);
-            
-            // 参数校验
-            if (toUserId == null || changeMoney == null || changeMoney <= 0) {
-                System.err.println("=== 转账参数错误 ===");
-                System.err.println("收款人ID: " + toUserId);
-                System.err.println("转账金额: " + changeMoney);
-                System.err.println("==================");
-                return false;
-            }
-            
-            // 幂等性检查：检查是否已经处理过这个转账记录
-            // 使用recordNo作为键，因为它是唯一的，而transactionId可能为null
-            if (recordNo != null && processedRecordNos.containsKey(recordNo)) {
-                System.out.println("=== 转账记录已处理过，跳过处理 ===");
-                System.out.println("转账流水号: " + recordNo);
-                System.out.println("事务ID: " + transactionId);
-                System.out.println("==================");
-                return true; // 已经处理过，返回成功
-            }
-            
-            // 检查收款用户是否存在
-            User toUser = userMapper.selectById(toUserId);
-            if (toUser == null) {
-                System.err.println("=== 收款用户不存在 ===");
-                System.err.println("收款人ID: " + toUserId);
-                System.err.println("==================");
-                return false;
-            }
-            
-            System.out.println("=== 收款用户信息 ===");
-            System.out.println("用户ID: " + toUser.getId());
-            System.out.println("当前余额: " + toUser.getMoney());
             System.out.println("==================");
-            
-            // 执行收款用户增加金额操作
-            int result = userMapper.addMoney(toUserId, changeMoney);
-            if (result > 0) {
-                // 查询更新后的用户信息
-                User updatedUser = userMapper.selectById(toUserId);
-                System.out.println("=== 转账成功 ===");
-                System.out.println("收款人ID: " + toUserId + " 增加金额: " + changeMoney);
-                System.out.println("转账前余额: " + toUser.getMoney());
-                System.out.println("转账后余额: " + (updatedUser != null ? updatedUser.getMoney() : "未知"));
-                System.out.println("转账流水号: " + recordNo);
-                System.out.println("==================");
-                
-                // 记录已处理的转账记录（在事务提交后记录）
-                if (recordNo != null) {
-                    processedRecordNos.put(recordNo, true);
-                }
-                
-                return true;
-            } else {
-                System.err.println("=== 转账失败 ===");
-                System.err.println("收款人ID: " + toUserId + " 增加金额失败");
-                System.err.println("转账流水号: " + recordNo);
-                System.err.println("==================");
-                return false;
-            }
-            
-        } catch (Exception e) {
-            System.err.println("处理转账消息时发生异常: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            return true; // 已经处理过，返回成功
+        }
+        
+        // 检查收款用户是否存在 走读穿透缓存 余额仅用于日志展示
+        User toUser = userBalanceCache.get(toUserId);
+        if (toUser == null) {
+            System.err.println("=== 收款用户不存在 ===");
+            System.err.println("收款人ID: " + toUserId);
+            System.err.println("==================");
+            throw new PermanentConsumeException("收款用户不存在 收款人ID: " + toUserId);
+        }
+        
+        System.out.println("=== 收款用户信息 ===");
+        System.out.println("用户ID: " + toUser.getId());
+        System.out.println("当前余额: " + toUser.getMoney());
+        System.out.println("==================");
+        
+        // 执行收款用户增加金额操作
+        int result = userMapper.addMoney(toUserId, changeMoney);
+        if (result > 0) {
+            // 余额已变更 事务提交后失效缓存
+            userBalanceCache.evictAfterCommit(toUserId);
+            System.out.println("=== 转账成功 ===");
+            System.out.println("收款人ID: " + toUserId + " 增加金额: " + changeMoney);
+            System.out.println("转账流水号: " + recordNo);
+            System.out.println("==================");
+            return true;
+        } else {
+            System.err.println("=== 转账失败 ===");
+            System.err.println("收款人ID: " + toUserId + " 增加金额失败");
+            System.err.println("转账流水号: " + recordNo);
+            System.err.println("==================");
+            throw new PermanentConsumeException("收款用户不存在 收款人ID: " + toUserId);
         }
     }
     
     /**
-     * 清理已处理的转账记录缓存（可选，用于内存管理）
+     * 处理批量转账消息，按明细为每个收款用户增加金额
+     * 明细按收款人所在分片分组，每个分片在一个事务中跳过已入账的明细，写入入账流水，按收款人合并后通过一条 addMoneyBatch 入账；
+     * 某个分片存在不存在的收款人时该分片回滚，其余分片照常入账，最后抛出 {@link PermanentConsumeException}
+     * 隔离整条消息；修复数据后重放时已入账的明细会被跳过
+     *
+     * @param messageBody 消息内容
+     * @return 处理结果
      */
-    public void clearProcessedRecordNos() {
-        processedRecordNos.clear();
-        System.out.println("=== 已清理处理过的转账记录缓存 ===");
+    public boolean processBatchTransferMessage(String messageBody) {
+        BatchTransfer batchTransfer;
+        try {
+            batchTransfer = JSON.parseObject(messageBody, BatchTransfer.class);
+        } catch (JSONException e) {
+            throw new PermanentConsumeException("批量转账消息解析失败", e);
+        }
+        if (batchTransfer == null || batchTransfer.getLegs() == null || batchTransfer.getLegs().isEmpty()) {
+            System.err.println("=== 批量转账消息解析失败 ===");
+            System.err.println("消息内容: " + messageBody);
+            System.err.println("==================");
+            throw new PermanentConsumeException("批量转账消息解析失败");
+        }
+
+        Map<Integer, List<TransferRecord>> legsByShard = new TreeMap<>();
+        for (TransferRecord leg : batchTransfer.getLegs()) {
+            if (leg.getToUserId() == null || leg.getChangeMoney() == null || leg.getChangeMoney() <= 0) {
+                System.err.println("=== 批量转账明细参数错误 ===");
+                System.err.println("批次号: " + batchTransfer.getBatchNo());
+                System.err.println("收款人ID: " + leg.getToUserId() + " 转账流水号: " + leg.getRecordNo());
+                System.err.println("==================");
+                throw new PermanentConsumeException("批量转账明细参数错误 批次号: " + batchTransfer.getBatchNo()
+                        + " 转账流水号: " + leg.getRecordNo());
+            }
+            legsByShard.computeIfAbsent(shardRouter.shardOf(leg.getToUserId()), key -> new ArrayList<>()).add(leg);
+        }
+
+        List<Long> rejectedUserIds = new ArrayList<>();
+        int creditedCount = 0;
+        for (Map.Entry<Integer, List<TransferRecord>> entry : legsByShard.entrySet()) {
+            int credited = DataSourceContext.callOnShard(entry.getKey(), () -> transactionTemplate.execute(
+                    status -> creditBatch(batchTransfer, entry.getValue(), status)));
+            if (credited >= 0) {
+                creditedCount += credited;
+            } else {
+                for (TransferRecord leg : entry.getValue()) {
+                    rejectedUserIds.add(leg.getToUserId());
+                }
+            }
+        }
+        if (!rejectedUserIds.isEmpty()) {
+            throw new PermanentConsumeException("批量转账存在不存在的收款用户 批次号: " + batchTransfer.getBatchNo()
+                    + " 回滚分片的收款人ID: " + rejectedUserIds);
+        }
+        System.out.println("=== 批量转账入账成功 批次号: " + batchTransfer.getBatchNo()
+                + " 明细数: " + batchTransfer.getLegs().size() + " 本次入账: " + creditedCount + " ===");
+        return true;
     }
-    
+
     /**
-     * 获取已处理的转账记录数量（用于监控）
+     * 单个分片内的批量入账，跳过已入账的明细，一条 update 完成该分片全部收款人入账
+     * 事务内只通过 BATCH 执行器访问数据库：查询立即执行，逐行 insert 的入账流水与加钱语句排队，
+     * flushStatements 时以 JDBC batch 发送（rewriteBatchedStatements 下合并为多行 insert），再按影响行数校验
+     *
+     * @return 本次入账的明细数，存在不存在的收款人时回滚并返回 -1
      */
-    public int getProcessedRecordCount() {
-        return processedRecordNos.size();
+    private int creditBatch(BatchTransfer batchTransfer, List<TransferRecord> legs, TransactionStatus status) {
+        Set<String> recordNos = new HashSet<>();
+        for (TransferRecord leg : legs) {
+            if (leg.getRecordNo() != null) {
+                recordNos.add(leg.getRecordNo());
+            }
+        }
+        Set<String> credited = recordNos.isEmpty()
+                ? new HashSet<>() : new HashSet<>(batchTransferCreditMapper.selectCreditedRecordNos(recordNos));
+
+        // 按收款人合并金额，TreeMap 保证按用户id顺序加锁，避免并发批次之间死锁
+        Map<Long, Long> credits = new TreeMap<>();
+        List<TransferCredit> creditRows = new ArrayList<>();
+        Date now = new Date();
+        int creditedLegs = 0;
+        for (TransferRecord leg : legs) {
+            if (leg.getRecordNo() != null) {
+                if (!credited.add(leg.getRecordNo())) {
+                    continue;
+                }
+                creditRows.add(new TransferCredit()
+                        .setRecordNo(leg.getRecordNo())
+                        .setToUserId(leg.getToUserId())
+                        .setChangeMoney(leg.getChangeMoney())
+                        .setCreateTime(now));
+            }
+            credits.merge(leg.getToUserId(), leg.getChangeMoney(), Math::addExact);
+            creditedLegs++;
+        }
+        if (credits.isEmpty()) {
+            return 0;
+        }
+
+        for (TransferCredit creditRow : creditRows) {
+            batchTransferCreditMapper.insert(creditRow);
+        }
+        batchUserMapper.addMoneyBatch(credits);
+        List<BatchResult> results;
+        try {
+            results = batchSqlSessionTemplate.flushStatements();
+        } catch (DuplicateKeyException e) {
+            // 查询之后有重复投递的同一批次先一步入账，回滚后重试时会跳过这些明细
+            throw new ConcurrencyFailureException("批量转账明细正在被并发入账 批次号: " + batchTransfer.getBatchNo(), e);
+        }
+        // 结果按语句排队顺序返回：入账流水的 insert（有新明细时）在前，加钱的 update 在最后
+        if (!creditRows.isEmpty()) {
+            for (int count : results.get(0).getUpdateCounts()) {
+                // 驱动改写为多行 insert 时返回 SUCCESS_NO_INFO，写入失败会直接抛出异常
+                if (count != 1 && count != Statement.SUCCESS_NO_INFO) {
+                    throw new IllegalStateException("批量转账入账流水写入行数异常 批次号: " + batchTransfer.getBatchNo()
+                            + " 影响行数: " + count);
+                }
+            }
+        }
+        if (results.get(results.size() - 1).getUpdateCounts()[0] != credits.size()) {
+            System.err.println("=== 批量转账存在不存在的收款用户，该分片整体回滚 ===");
+            System.err.println("批次号: " + batchTransfer.getBatchNo());
+            System.err.println("收款人ID: " + credits.keySet());
+            System.err.println("==================");
+            status.setRollbackOnly();
+            return -1;
+        }
+        for (Long toUserId : credits.keySet()) {
+            userBalanceCache.evictAfterCommit(toUserId);
+        }
+        return creditedLegs;
     }
 }
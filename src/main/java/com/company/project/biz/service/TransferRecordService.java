@@ -1,8 +1,12 @@
 package com.company.project.biz.service;
 
+import com.company.project.bean.KeysetPage;
 import com.company.project.biz.entity.TransferRecord;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 /**
  * <p>
  *  服务类
@@ -13,4 +17,27 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface TransferRecordService extends IService<TransferRecord> {
 
+    /**
+     * keyset 分页查询用户转账记录，按 id 倒序
+     *
+     * @param userId   用户id
+     * @param outgoing true:转出记录 false:转入记录
+     * @param lastId   上一页返回的 nextLastId，首页传 null
+     * @param size     每页条数
+     */
+    KeysetPage<TransferRecord> listByUser(Long userId, boolean outgoing, Long lastId, int size);
+
+    /**
+     * 按流水编号查询转账记录，启用查询缓存时优先读缓存
+     *
+     * @return 不存在时返回 null
+     */
+    TransferRecord getByRecordNo(String recordNo);
+
+    /**
+     * 以 NDJSON 格式流式导出用户全部转账记录，不在内存中加载整个结果集
+     *
+     * @return 导出条数
+     */
+    long exportByUser(Long userId, boolean outgoing, OutputStream out) throws IOException;
 }
@@ -1,14 +1,33 @@
 package com.company.project.biz.service.impl;
 
+import com.alibaba.fastjson.JSON;
+import com.company.project.bean.KeysetPage;
+import com.company.project.biz.cache.TransferRecordLookupCache;
 import com.company.project.biz.entity.TransferRecord;
 import com.company.project.biz.mapper.TransferRecordMapper;
 import com.company.project.biz.service.TransferRecordService;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.ReadReplica;
+import com.company.project.datasource.ShardRouter;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 /**
  * <p>
  *  服务实现类
+ *  转账记录存放在转账人所在分片：转出记录只查一个分片，转入记录需要查询全部分片后合并
  * </p>
  *
  * @author chenyin
@@ -17,4 +36,86 @@ import org.springframework.stereotype.Service;
 @Service
 public class TransferRecordServiceImpl extends ServiceImpl<TransferRecordMapper, TransferRecord> implements TransferRecordService {
 
+    /**
+     * 导出时每次查询的行数，每块查询完归还连接后再写出并刷新输出流
+     */
+    private static final int EXPORT_CHUNK_ROWS = 1000;
+
+    @Resource
+    private TransferRecordLookupCache transferRecordLookupCache;
+
+    @Resource
+    private ShardRouter shardRouter;
+
+    @Override
+    @ReadReplica
+    public KeysetPage<TransferRecord> listByUser(Long userId, boolean outgoing, Long lastId, int size) {
+        List<TransferRecord> records = outgoing
+                ? DataSourceContext.callOnShard(shardRouter.shardOf(userId), () -> baseMapper.selectOutgoingPage(userId, lastId, size))
+                : selectIncomingPage(userId, lastId, size);
+        KeysetPage<TransferRecord> page = new KeysetPage<>();
+        page.setRecords(records);
+        page.setNextLastId(records.size() < size ? null : records.get(records.size() - 1).getId());
+        return page;
+    }
+
+    @Override
+    @ReadReplica
+    public TransferRecord getByRecordNo(String recordNo) {
+        return transferRecordLookupCache.getByRecordNo(recordNo);
+    }
+
+    /**
+     * 每个分片各取一页，按 id 倒序合并后截取；各分片 transfer_record 的自增 id 互不重叠（见 table.sql）
+     */
+    private List<TransferRecord> selectIncomingPage(Long userId, Long lastId, int size) {
+        if (shardRouter.getShardCount() == 1) {
+            return baseMapper.selectIncomingPage(userId, lastId, size);
+        }
+        List<TransferRecord> merged = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            merged.addAll(DataSourceContext.callOnShard(shard, () -> baseMapper.selectIncomingPage(userId, lastId, size)));
+        }
+        merged.sort(Comparator.comparing(TransferRecord::getId, Collections.reverseOrder()));
+        return merged.size() > size ? new ArrayList<>(merged.subList(0, size)) : merged;
+    }
+
+    /**
+     * 按 id 倒序 keyset 分块查询，每块是一条独立的短查询，连接归还后再写给客户端，
+     * 客户端读得慢时不会占住连接或长时间保持读视图
+     * 转出记录只在转账人所在分片；转入记录逐个分片导出，分片之间不保证 id 顺序
+     */
+    @Override
+    @ReadReplica
+    public long exportByUser(Long userId, boolean outgoing, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        List<Integer> shards = new ArrayList<>();
+        if (outgoing) {
+            shards.add(shardRouter.shardOf(userId));
+        } else {
+            for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+                shards.add(shard);
+            }
+        }
+        long rows = 0;
+        for (Integer shard : shards) {
+            Long lastId = null;
+            List<TransferRecord> chunk;
+            do {
+                Long after = lastId;
+                chunk = DataSourceContext.callOnShard(shard, () -> outgoing
+                        ? baseMapper.selectOutgoingPage(userId, after, EXPORT_CHUNK_ROWS)
+                        : baseMapper.selectIncomingPage(userId, after, EXPORT_CHUNK_ROWS));
+                for (TransferRecord record : chunk) {
+                    writer.write(JSON.toJSONString(record));
+                    writer.write('\n');
+                }
+                writer.flush();
+                rows += chunk.size();
+                lastId = chunk.isEmpty() ? null : chunk.get(chunk.size() - 1).getId();
+            } while (chunk.size() >= EXPORT_CHUNK_ROWS);
+        }
+        writer.flush();
+        return rows;
+    }
 }
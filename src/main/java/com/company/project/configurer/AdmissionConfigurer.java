@@ -0,0 +1,159 @@
+package com.company.project.configurer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 转账提交准入控制配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "admission")
+public class AdmissionConfigurer {
+
+    /**
+     * 是否启用准入控制拦截器
+     */
+    private boolean enabled = false;
+
+    /**
+     * 拦截的路径
+     */
+    private List<String> pathPatterns = new ArrayList<>(Arrays.asList("/transfer/**", "/test/mqTest"));
+
+    /**
+     * 单个客户端每秒允许的请求数，按客户端 IP 计（项目没有登录拦截器，不区分用户）
+     */
+    private double userPermitsPerSecond = 20;
+
+    /**
+     * 单个客户端允许的突发请求数
+     */
+    private int userBurst = 40;
+
+    /**
+     * 全局每秒允许的请求数，按提交池与数据库容量设置；0 不限制
+     */
+    private double globalPermitsPerSecond = 5000;
+
+    /**
+     * 全局允许的突发请求数
+     */
+    private int globalBurst = 10000;
+
+    /**
+     * 本地模式下最多保留的客户端令牌桶数，超过后清理已恢复满桶的客户端
+     */
+    private int maxTrackedUsers = 100000;
+
+    /**
+     * 客户端 IP 取 X-Forwarded-For 的第一段，只有前面有可信代理时才能开启
+     */
+    private boolean trustForwardedFor = false;
+
+    /**
+     * 是否使用 Redis 令牌桶（spring-redis.xml 中的 jedisPool），多实例共享同一份限额；Redis 不可用时退回本地令牌桶
+     */
+    private boolean redisEnabled = false;
+
+    /**
+     * Redis 令牌桶 key 前缀
+     */
+    private String redisKeyPrefix = "admission:";
+
+    /**
+     * Redis 出错后改用本地令牌桶的时长，期间不再访问 Redis
+     */
+    private long redisBackoffMillis = 5000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getPathPatterns() {
+        return pathPatterns;
+    }
+
+    public void setPathPatterns(List<String> pathPatterns) {
+        this.pathPatterns = pathPatterns;
+    }
+
+    public double getUserPermitsPerSecond() {
+        return userPermitsPerSecond;
+    }
+
+    public void setUserPermitsPerSecond(double userPermitsPerSecond) {
+        this.userPermitsPerSecond = userPermitsPerSecond;
+    }
+
+    public int getUserBurst() {
+        return userBurst;
+    }
+
+    public void setUserBurst(int userBurst) {
+        this.userBurst = userBurst;
+    }
+
+    public double getGlobalPermitsPerSecond() {
+        return globalPermitsPerSecond;
+    }
+
+    public void setGlobalPermitsPerSecond(double globalPermitsPerSecond) {
+        this.globalPermitsPerSecond = globalPermitsPerSecond;
+    }
+
+    public int getGlobalBurst() {
+        return globalBurst;
+    }
+
+    public void setGlobalBurst(int globalBurst) {
+        this.globalBurst = globalBurst;
+    }
+
+    public int getMaxTrackedUsers() {
+        return maxTrackedUsers;
+    }
+
+    public void setMaxTrackedUsers(int maxTrackedUsers) {
+        this.maxTrackedUsers = maxTrackedUsers;
+    }
+
+    public boolean isTrustForwardedFor() {
+        return trustForwardedFor;
+    }
+
+    public void setTrustForwardedFor(boolean trustForwardedFor) {
+        this.trustForwardedFor = trustForwardedFor;
+    }
+
+    public boolean isRedisEnabled() {
+        return redisEnabled;
+    }
+
+    public void setRedisEnabled(boolean redisEnabled) {
+        this.redisEnabled = redisEnabled;
+    }
+
+    public String getRedisKeyPrefix() {
+        return redisKeyPrefix;
+    }
+
+    public void setRedisKeyPrefix(String redisKeyPrefix) {
+        this.redisKeyPrefix = redisKeyPrefix;
+    }
+
+    public long getRedisBackoffMillis() {
+        return redisBackoffMillis;
+    }
+
+    public void setRedisBackoffMillis(long redisBackoffMillis) {
+        this.redisBackoffMillis = redisBackoffMillis;
+    }
+}
@@ -0,0 +1,459 @@
+package com.company.project.configurer;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.company.project.datasource.PoolRole;
+import com.company.project.datasource.ReadReplicaAdvisor;
+import com.company.project.datasource.ReadWriteRoutingDataSource;
+import com.company.project.datasource.ReplicaLagMonitor;
+import com.company.project.datasource.RoutingDataSource;
+import com.company.project.datasource.ShardKeyAdvisor;
+import com.company.project.datasource.ShardRouter;
+import com.company.project.datasource.ShardRoutingDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分片、读写分离与连接池分区配置
+ * - 按用户id一致性哈希分片，标注 {@link com.company.project.datasource.ShardKey} 的方法路由到对应分片
+ * - 配置了从库时，标注 {@link com.company.project.datasource.ReadReplica} 的读方法路由到延迟达标的从库
+ * - 每个分片的主库上，生产者本地事务、事务回查、消费者入账、其他调用各自使用独立大小的 Druid 连接池
+ */
+@Configuration
+@ConfigurationProperties(prefix = "datasource-pool")
+public class DataSourcePoolConfigurer {
+
+    /**
+     * 生产者本地事务连接池
+     */
+    private PoolProperties producer = new PoolProperties(5, 20, 3000);
+
+    /**
+     * 事务回查连接池，回查线程数有限，保持较小即可
+     */
+    private PoolProperties checkBack = new PoolProperties(1, 5, 3000);
+
+    /**
+     * 消费者入账连接池，建议不小于消费线程数
+     */
+    private PoolProperties consumer = new PoolProperties(5, 20, 3000);
+
+    /**
+     * 其他调用（查询接口、定时任务）连接池
+     */
+    private PoolProperties defaults = new PoolProperties(2, 10, 3000);
+
+    /**
+     * 是否开启 Druid PSCache，连接归还后保留 PreparedStatement 供下次复用
+     */
+    private boolean poolPreparedStatements = true;
+
+    /**
+     * 每个连接缓存的 PreparedStatement 数，需覆盖全部热点语句
+     */
+    private int maxPoolPreparedStatementPerConnectionSize = 50;
+
+    /**
+     * 传给 JDBC 驱动的连接属性，分号分隔，如 useServerPrepStmts=true;cachePrepStmts=true
+     * 按 profile 选择客户端或服务端预编译
+     */
+    private String connectionProperties;
+
+    /**
+     * 从库配置，未配置 endpoints 时全部走主库
+     */
+    private ReplicaProperties replica = new ReplicaProperties();
+
+    /**
+     * 分片列表，未配置时只有一个分片 shard-0，使用 spring.datasource 与 replica.endpoints
+     * 分片名称参与一致性哈希，上线后不能修改；增删分片前先用 ShardMigrator 迁移数据
+     */
+    private List<ShardProperties> shards = new ArrayList<>();
+
+    /**
+     * 一致性哈希每个分片的虚拟节点数
+     */
+    private int virtualNodes = 160;
+
+    @Bean
+    public ShardRouter shardRouter(DataSourceProperties dataSourceProperties) {
+        List<String> names = new ArrayList<>();
+        for (ShardProperties shard : resolveShards(dataSourceProperties)) {
+            names.add(shard.getName());
+        }
+        return new ShardRouter(names, virtualNodes);
+    }
+
+    /**
+     * MybatisConfigurer 中的 SqlSessionFactory 与事务管理器均使用该数据源
+     * 路由顺序：分片 -> 读写分离 -> 调用方分池
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    public ShardRoutingDataSource dataSource(DataSourceProperties dataSourceProperties) {
+        List<String> names = new ArrayList<>();
+        List<RoutingDataSource> primaries = new ArrayList<>();
+        List<ReadWriteRoutingDataSource> readWrites = new ArrayList<>();
+        for (ShardProperties shard : resolveShards(dataSourceProperties)) {
+            String username = shard.getUsername() != null ? shard.getUsername() : dataSourceProperties.getUsername();
+            String password = shard.getPassword() != null ? shard.getPassword() : dataSourceProperties.getPassword();
+            String driverClassName = dataSourceProperties.getDriverClassName();
+
+            Map<PoolRole, DruidDataSource> pools = new EnumMap<>(PoolRole.class);
+            pools.put(PoolRole.PRODUCER, createPool(shard.getName() + "-producer", producer, shard.getUrl(), username, password, driverClassName));
+            pools.put(PoolRole.CHECK_BACK, createPool(shard.getName() + "-check-back", checkBack, shard.getUrl(), username, password, driverClassName));
+            pools.put(PoolRole.CONSUMER, createPool(shard.getName() + "-consumer", consumer, shard.getUrl(), username, password, driverClassName));
+            pools.put(PoolRole.DEFAULT, createPool(shard.getName() + "-default", defaults, shard.getUrl(), username, password, driverClassName));
+            RoutingDataSource primary = new RoutingDataSource(pools);
+
+            List<DruidDataSource> replicas = new ArrayList<>();
+            for (int i = 0; i < shard.getReplicas().size(); i++) {
+                ReplicaEndpoint endpoint = shard.getReplicas().get(i);
+                replicas.add(createPool(shard.getName() + "-replica-" + i, replica.getPool(), endpoint.getUrl(),
+                        endpoint.getUsername() != null ? endpoint.getUsername() : username,
+                        endpoint.getPassword() != null ? endpoint.getPassword() : password,
+                        driverClassName));
+            }
+            names.add(shard.getName());
+            primaries.add(primary);
+            readWrites.add(new ReadWriteRoutingDataSource(primary, replicas, new ReplicaLagMonitor(primary, replicas)));
+        }
+        return new ShardRoutingDataSource(names, primaries, readWrites);
+    }
+
+    @Bean
+    public ReadReplicaAdvisor readReplicaAdvisor() {
+        return new ReadReplicaAdvisor(replica.getMaxLagMillis());
+    }
+
+    @Bean
+    public ShardKeyAdvisor shardKeyAdvisor(ShardRouter shardRouter) {
+        return new ShardKeyAdvisor(shardRouter);
+    }
+
+    private List<ShardProperties> resolveShards(DataSourceProperties dataSourceProperties) {
+        if (!shards.isEmpty()) {
+            return shards;
+        }
+        ShardProperties single = new ShardProperties();
+        single.setName("shard-0");
+        single.setUrl(dataSourceProperties.getUrl());
+        single.setUsername(dataSourceProperties.getUsername());
+        single.setPassword(dataSourceProperties.getPassword());
+        single.setReplicas(replica.getEndpoints());
+        return Collections.singletonList(single);
+    }
+
+    private DruidDataSource createPool(String name, PoolProperties pool, String url, String username, String password,
+                                       String driverClassName) {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setName("pool-" + name);
+        dataSource.setUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setDriverClassName(driverClassName);
+        dataSource.setInitialSize(pool.getMinIdle());
+        dataSource.setMinIdle(pool.getMinIdle());
+        dataSource.setMaxActive(pool.getMaxActive());
+        dataSource.setMaxWait(pool.getMaxWait());
+        dataSource.setValidationQuery("select 1");
+        dataSource.setTestWhileIdle(true);
+        dataSource.setTestOnBorrow(false);
+        dataSource.setPoolPreparedStatements(poolPreparedStatements);
+        dataSource.setMaxPoolPreparedStatementPerConnectionSize(maxPoolPreparedStatementPerConnectionSize);
+        if (connectionProperties != null) {
+            dataSource.setConnectionProperties(connectionProperties);
+        }
+        return dataSource;
+    }
+
+    public PoolProperties getProducer() {
+        return producer;
+    }
+
+    public void setProducer(PoolProperties producer) {
+        this.producer = producer;
+    }
+
+    public PoolProperties getCheckBack() {
+        return checkBack;
+    }
+
+    public void setCheckBack(PoolProperties checkBack) {
+        this.checkBack = checkBack;
+    }
+
+    public PoolProperties getConsumer() {
+        return consumer;
+    }
+
+    public void setConsumer(PoolProperties consumer) {
+        this.consumer = consumer;
+    }
+
+    public PoolProperties getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(PoolProperties defaults) {
+        this.defaults = defaults;
+    }
+
+    public boolean isPoolPreparedStatements() {
+        return poolPreparedStatements;
+    }
+
+    public void setPoolPreparedStatements(boolean poolPreparedStatements) {
+        this.poolPreparedStatements = poolPreparedStatements;
+    }
+
+    public int getMaxPoolPreparedStatementPerConnectionSize() {
+        return maxPoolPreparedStatementPerConnectionSize;
+    }
+
+    public void setMaxPoolPreparedStatementPerConnectionSize(int maxPoolPreparedStatementPerConnectionSize) {
+        this.maxPoolPreparedStatementPerConnectionSize = maxPoolPreparedStatementPerConnectionSize;
+    }
+
+    public String getConnectionProperties() {
+        return connectionProperties;
+    }
+
+    public void setConnectionProperties(String connectionProperties) {
+        this.connectionProperties = connectionProperties;
+    }
+
+    public List<ShardProperties> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<ShardProperties> shards) {
+        this.shards = shards;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public ReplicaProperties getReplica() {
+        return replica;
+    }
+
+    public void setReplica(ReplicaProperties replica) {
+        this.replica = replica;
+    }
+
+    /**
+     * 单个分片的连接信息，用户名密码不填时沿用 spring.datasource
+     */
+    public static class ShardProperties {
+        /**
+         * 分片名称，参与一致性哈希
+         */
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+
+        /**
+         * 该分片的从库
+         */
+        private List<ReplicaEndpoint> replicas = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public List<ReplicaEndpoint> getReplicas() {
+            return replicas;
+        }
+
+        public void setReplicas(List<ReplicaEndpoint> replicas) {
+            this.replicas = replicas;
+        }
+    }
+
+    /**
+     * 从库配置
+     */
+    public static class ReplicaProperties {
+        /**
+         * 单分片时的从库地址列表，本地可用两个 MySQL 库（或两个 H2 实例）分别作为主从验证路由；
+         * 多分片时在各分片的 replicas 中配置
+         */
+        private List<ReplicaEndpoint> endpoints = new ArrayList<>();
+
+        /**
+         * 每个从库的连接池大小，所有分片共用
+         */
+        private PoolProperties pool = new PoolProperties(2, 10, 500);
+
+        /**
+         * 默认可接受的最大复制延迟毫秒数，超过的从库不参与路由
+         */
+        private long maxLagMillis = 1000;
+
+        /**
+         * 复制心跳间隔毫秒数，也是延迟估算的误差上限
+         */
+        private long heartbeatIntervalMillis = 200;
+
+        public List<ReplicaEndpoint> getEndpoints() {
+            return endpoints;
+        }
+
+        public void setEndpoints(List<ReplicaEndpoint> endpoints) {
+            this.endpoints = endpoints;
+        }
+
+        public PoolProperties getPool() {
+            return pool;
+        }
+
+        public void setPool(PoolProperties pool) {
+            this.pool = pool;
+        }
+
+        public long getMaxLagMillis() {
+            return maxLagMillis;
+        }
+
+        public void setMaxLagMillis(long maxLagMillis) {
+            this.maxLagMillis = maxLagMillis;
+        }
+
+        public long getHeartbeatIntervalMillis() {
+            return heartbeatIntervalMillis;
+        }
+
+        public void setHeartbeatIntervalMillis(long heartbeatIntervalMillis) {
+            this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        }
+    }
+
+    /**
+     * 单个从库的连接信息，用户名密码不填时沿用主库
+     */
+    public static class ReplicaEndpoint {
+        private String url;
+        private String username;
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+
+    /**
+     * 单个连接池的大小配置
+     */
+    public static class PoolProperties {
+        /**
+         * 最小空闲连接数，同时作为初始连接数
+         */
+        private int minIdle;
+
+        /**
+         * 最大连接数
+         */
+        private int maxActive;
+
+        /**
+         * 获取连接的最大等待毫秒数，超时快速失败
+         */
+        private long maxWait;
+
+        public PoolProperties() {
+        }
+
+        public PoolProperties(int minIdle, int maxActive, long maxWait) {
+            this.minIdle = minIdle;
+            this.maxActive = maxActive;
+            this.maxWait = maxWait;
+        }
+
+        public int getMinIdle() {
+            return minIdle;
+        }
+
+        public void setMinIdle(int minIdle) {
+            this.minIdle = minIdle;
+        }
+
+        public int getMaxActive() {
+            return maxActive;
+        }
+
+        public void setMaxActive(int maxActive) {
+            this.maxActive = maxActive;
+        }
+
+        public long getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(long maxWait) {
+            this.maxWait = maxWait;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.company.project.configurer;
+
+import com.company.project.core.SnowflakeIdGenerator;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 有序ID生成器配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "id-generator")
+public class IdGeneratorConfigurer {
+
+    /**
+     * 机器id，0~1023，同一集群内每个实例必须唯一
+     */
+    private long workerId = 0;
+
+    /**
+     * 时间戳起点，默认 2019-05-01 00:00:00 GMT+8，41 位时间戳可使用约 69 年
+     */
+    private long epoch = 1556640000000L;
+
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator() {
+        return new SnowflakeIdGenerator(workerId, epoch);
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    public void setWorkerId(long workerId) {
+        this.workerId = workerId;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+}
@@ -3,12 +3,15 @@ package com.company.project.configurer;
 import com.baomidou.mybatisplus.core.config.GlobalConfig;
 import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
 import com.company.project.core.ProjectConstant;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
@@ -21,7 +24,7 @@ import javax.sql.DataSource;
  * Mybatis配置
  */
 @Configuration
-@MapperScan(basePackages = ProjectConstant.BIZ_PACKAGE+".mapper")
+@MapperScan(basePackages = ProjectConstant.BIZ_PACKAGE+".mapper", sqlSessionTemplateRef = "sqlSessionTemplate")
 public class MybatisConfigurer implements TransactionManagementConfigurer {
     @Autowired
     private DataSource dataSource;
@@ -38,6 +41,24 @@ public class MybatisConfigurer implements TransactionManagementConfigurer {
         return factory.getObject();
     }
 
+    /**
+     * 默认的 SIMPLE 执行器，Mapper 接口均绑定到该模板
+     */
+    @Bean(name = "sqlSessionTemplate")
+    @Primary
+    public SqlSessionTemplate sqlSessionTemplate(SqlSessionFactory sqlSessionFactory) {
+        return new SqlSessionTemplate(sqlSessionFactory);
+    }
+
+    /**
+     * BATCH 执行器，写语句在 flushStatements/提交时以 JDBC batch 发送，MySQL 开启 rewriteBatchedStatements 后由驱动合并为多行语句
+     * MyBatis 不允许同一个事务切换执行器，只能用在整个事务都通过该模板访问数据库的场景，写入后 flushStatements 检查影响行数
+     */
+    @Bean(name = "batchSqlSessionTemplate")
+    public SqlSessionTemplate batchSqlSessionTemplate(SqlSessionFactory sqlSessionFactory) {
+        return new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+    }
+
     @Override
     public PlatformTransactionManager annotationDrivenTransactionManager() {
         return new DataSourceTransactionManager(dataSource);
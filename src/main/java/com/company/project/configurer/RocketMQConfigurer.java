@@ -1,14 +1,24 @@
 package com.company.project.configurer;
 
+import com.company.project.isolation.ConsumeStrategy;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * RocketMQ配置类
  */
 @Configuration
 @ConfigurationProperties(prefix = "rocketmq")
 public class RocketMQConfigurer {
+
+    /**
+     * 是否连接 RocketMQ，关闭后不创建生产者、消费者与本地消息表中继，用于压测替身等不需要 broker 的场景
+     */
+    private boolean enabled = true;
     
     /**
      * NameServer地址
@@ -35,6 +45,89 @@ public class RocketMQConfigurer {
      */
     private String messageTag = "*";
 
+    /**
+     * 按收款账户有序处理：生产者按收款人id选择队列，同一账户的消息都在同一个队列
+     */
+    private boolean orderedByAccount = false;
+
+    /**
+     * 消费策略，未配置时开启按账户有序处理则为 PER_KEY_SERIAL，否则为 CONCURRENT
+     */
+    private ConsumeStrategy consumeStrategy;
+
+    /**
+     * 按账户串行入账的工作线程数（PER_KEY_SERIAL）
+     */
+    private int accountSerialThreads = 16;
+
+    /**
+     * 消费线程数下限，RocketMQ 消费线程池使用无界队列，实际线程数即为该值
+     */
+    private int consumeThreadMin = 20;
+
+    /**
+     * 消费线程数上限
+     */
+    private int consumeThreadMax = 20;
+
+    /**
+     * 单次回调监听器的最大消息数
+     */
+    private int consumeMessageBatchMaxSize = 1;
+
+    /**
+     * 单次从broker拉取的最大消息数
+     */
+    private int pullBatchSize = 32;
+
+    /**
+     * 两次拉取之间的间隔毫秒数，0表示拉到消息后立即再拉
+     */
+    private long pullInterval = 0;
+
+    /**
+     * 单个队列本地缓存消息数上限，超过后暂停拉取（流控）
+     */
+    private int pullThresholdForQueue = 1000;
+
+    /**
+     * 单个队列本地缓存消息大小上限（MiB），防止大消息撑爆堆
+     */
+    private int pullThresholdSizeForQueue = 100;
+
+    /**
+     * 按消费延迟与积压自适应调整预取
+     */
+    private AdaptivePullProperties adaptivePull = new AdaptivePullProperties();
+
+    /**
+     * 消费失败重试与隔离
+     */
+    private RetryProperties retry = new RetryProperties();
+
+    /**
+     * 转账消息投递方式
+     */
+    private DeliveryMode deliveryMode = DeliveryMode.TRANSACTIONAL;
+
+    /**
+     * OUTBOX 投递方式的中继配置
+     */
+    private OutboxProperties outbox = new OutboxProperties();
+
+    /**
+     * HTTP 异步转账提交的执行池配置
+     */
+    private SubmitProperties submit = new SubmitProperties();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
     public String getNamesrvAddr() {
         return namesrvAddr;
     }
@@ -74,5 +167,507 @@ public class RocketMQConfigurer {
     public void setMessageTag(String messageTag) {
         this.messageTag = messageTag;
     }
-}
 
+    public boolean isOrderedByAccount() {
+        return orderedByAccount;
+    }
+
+    public void setOrderedByAccount(boolean orderedByAccount) {
+        this.orderedByAccount = orderedByAccount;
+    }
+
+    public ConsumeStrategy getConsumeStrategy() {
+        if (consumeStrategy != null) {
+            return consumeStrategy;
+        }
+        return orderedByAccount ? ConsumeStrategy.PER_KEY_SERIAL : ConsumeStrategy.CONCURRENT;
+    }
+
+    public void setConsumeStrategy(ConsumeStrategy consumeStrategy) {
+        this.consumeStrategy = consumeStrategy;
+    }
+
+    public int getConsumeThreadMin() {
+        return consumeThreadMin;
+    }
+
+    public void setConsumeThreadMin(int consumeThreadMin) {
+        this.consumeThreadMin = consumeThreadMin;
+    }
+
+    public int getConsumeThreadMax() {
+        return consumeThreadMax;
+    }
+
+    public void setConsumeThreadMax(int consumeThreadMax) {
+        this.consumeThreadMax = consumeThreadMax;
+    }
+
+    public int getConsumeMessageBatchMaxSize() {
+        return consumeMessageBatchMaxSize;
+    }
+
+    public void setConsumeMessageBatchMaxSize(int consumeMessageBatchMaxSize) {
+        this.consumeMessageBatchMaxSize = consumeMessageBatchMaxSize;
+    }
+
+    public int getPullBatchSize() {
+        return pullBatchSize;
+    }
+
+    public void setPullBatchSize(int pullBatchSize) {
+        this.pullBatchSize = pullBatchSize;
+    }
+
+    public long getPullInterval() {
+        return pullInterval;
+    }
+
+    public void setPullInterval(long pullInterval) {
+        this.pullInterval = pullInterval;
+    }
+
+    public int getPullThresholdForQueue() {
+        return pullThresholdForQueue;
+    }
+
+    public void setPullThresholdForQueue(int pullThresholdForQueue) {
+        this.pullThresholdForQueue = pullThresholdForQueue;
+    }
+
+    public int getPullThresholdSizeForQueue() {
+        return pullThresholdSizeForQueue;
+    }
+
+    public void setPullThresholdSizeForQueue(int pullThresholdSizeForQueue) {
+        this.pullThresholdSizeForQueue = pullThresholdSizeForQueue;
+    }
+
+    public AdaptivePullProperties getAdaptivePull() {
+        return adaptivePull;
+    }
+
+    public void setAdaptivePull(AdaptivePullProperties adaptivePull) {
+        this.adaptivePull = adaptivePull;
+    }
+
+    public RetryProperties getRetry() {
+        return retry;
+    }
+
+    public void setRetry(RetryProperties retry) {
+        this.retry = retry;
+    }
+
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public void setDeliveryMode(DeliveryMode deliveryMode) {
+        this.deliveryMode = deliveryMode;
+    }
+
+    public OutboxProperties getOutbox() {
+        return outbox;
+    }
+
+    public void setOutbox(OutboxProperties outbox) {
+        this.outbox = outbox;
+    }
+
+    public SubmitProperties getSubmit() {
+        return submit;
+    }
+
+    public void setSubmit(SubmitProperties submit) {
+        this.submit = submit;
+    }
+
+    public int getAccountSerialThreads() {
+        return accountSerialThreads;
+    }
+
+    public void setAccountSerialThreads(int accountSerialThreads) {
+        this.accountSerialThreads = accountSerialThreads;
+    }
+
+    /**
+     * 转账消息投递方式
+     */
+    public enum DeliveryMode {
+        /**
+         * 事务消息：half 消息 + 本地事务 + 提交，异常时 broker 回查
+         */
+        TRANSACTIONAL,
+        /**
+         * 本地消息表：扣钱事务中写入 transfer_outbox，OutboxRelay 轮询后批量普通发送
+         */
+        OUTBOX
+    }
+
+    /**
+     * outbox 中继配置
+     */
+    public static class OutboxProperties {
+        /**
+         * 轮询间隔毫秒数，决定空闲时的投递延迟
+         */
+        private long pollIntervalMillis = 100;
+
+        /**
+         * 单次读取并发送的最大行数
+         */
+        private int batchSize = 200;
+
+        /**
+         * 单次批量发送的最大字节数，broker 默认单条消息上限为 4MiB
+         */
+        private int maxBatchBytes = 1024 * 1024;
+
+        /**
+         * 已发送消息保留小时数，过期后定时删除
+         */
+        private int retentionHours = 24;
+
+        /**
+         * 中继租约毫秒数，每发送一批前续期；持有者宕机后其他实例最迟在租约到期后接管
+         * 需大于单批发送的最长耗时，否则发送中途租约被接管，同一账户的消息可能乱序
+         */
+        private long leaseMillis = 30000;
+
+        /**
+         * 单次轮询最多持续的毫秒数，积压时每个分片至少发送一批，超时后留到下次轮询，不长时间占用定时任务线程
+         */
+        private long maxTickMillis = 1000;
+
+        public long getPollIntervalMillis() {
+            return pollIntervalMillis;
+        }
+
+        public void setPollIntervalMillis(long pollIntervalMillis) {
+            this.pollIntervalMillis = pollIntervalMillis;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getMaxBatchBytes() {
+            return maxBatchBytes;
+        }
+
+        public void setMaxBatchBytes(int maxBatchBytes) {
+            this.maxBatchBytes = maxBatchBytes;
+        }
+
+        public int getRetentionHours() {
+            return retentionHours;
+        }
+
+        public void setRetentionHours(int retentionHours) {
+            this.retentionHours = retentionHours;
+        }
+
+        public long getLeaseMillis() {
+            return leaseMillis;
+        }
+
+        public void setLeaseMillis(long leaseMillis) {
+            this.leaseMillis = leaseMillis;
+        }
+
+        public long getMaxTickMillis() {
+            return maxTickMillis;
+        }
+
+        public void setMaxTickMillis(long maxTickMillis) {
+            this.maxTickMillis = maxTickMillis;
+        }
+    }
+
+    /**
+     * 异步转账提交配置
+     * HTTP 线程只负责收发，half 消息与本地事务在提交池中执行，池的线程数按本地事务可用的生产者连接数设置
+     */
+    public static class SubmitProperties {
+        /**
+         * 执行 sendTransfer 的线程数
+         */
+        private int threads = 64;
+
+        /**
+         * 等待执行的最大请求数，超出时直接返回系统繁忙
+         * 不大于 0 时按 threads × timeoutMillis / expectedLatencyMillis 计算，即超时前能执行完的请求数，
+         * 排在更后面的请求注定超时，不如直接拒绝
+         */
+        private int queueCapacity = 0;
+
+        /**
+         * 单笔 sendTransfer 的预期耗时毫秒数（half 消息 + 本地事务 + endTransaction），用于计算默认队列长度
+         */
+        private long expectedLatencyMillis = 50;
+
+        /**
+         * 请求等待本地事务结果的超时毫秒数，超时后返回处理中，结果以转账记录为准
+         */
+        private long timeoutMillis = 10000;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public void setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        public long getExpectedLatencyMillis() {
+            return expectedLatencyMillis;
+        }
+
+        public void setExpectedLatencyMillis(long expectedLatencyMillis) {
+            this.expectedLatencyMillis = expectedLatencyMillis;
+        }
+
+        /**
+         * 实际使用的队列长度
+         */
+        public int resolveQueueCapacity() {
+            if (queueCapacity > 0) {
+                return queueCapacity;
+            }
+            return (int) Math.max(threads, threads * timeoutMillis / Math.max(1, expectedLatencyMillis));
+        }
+    }
+
+    /**
+     * 消费失败重试配置
+     * 可重试的失败按已重试次数退避，超过 maxRetries 后与不可重试的失败一样隔离
+     */
+    public static class RetryProperties {
+        /**
+         * 最大重试次数
+         */
+        private int maxRetries = 16;
+
+        /**
+         * 并发消费第 n 次重试使用的 broker 延迟级别：1s 5s 10s 30s 1m 2m 4m 8m 20m 1h 2h
+         */
+        private List<Integer> delayLevels = new ArrayList<>(Arrays.asList(1, 2, 3, 4, 5, 6, 8, 12, 15, 17, 18));
+
+        /**
+         * 顺序消费暂停队列的初始毫秒数，每次重试翻倍
+         */
+        private long baseSuspendMillis = 1000;
+
+        /**
+         * 顺序消费暂停队列的最大毫秒数
+         */
+        private long maxSuspendMillis = 60000;
+
+        /**
+         * 不可重试消息的去向：QUARANTINE 写入隔离表，DLQ 直接发往 broker 死信队列
+         */
+        private String permanentFailureTarget = "QUARANTINE";
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public List<Integer> getDelayLevels() {
+            return delayLevels;
+        }
+
+        public void setDelayLevels(List<Integer> delayLevels) {
+            this.delayLevels = delayLevels;
+        }
+
+        public long getBaseSuspendMillis() {
+            return baseSuspendMillis;
+        }
+
+        public void setBaseSuspendMillis(long baseSuspendMillis) {
+            this.baseSuspendMillis = baseSuspendMillis;
+        }
+
+        public long getMaxSuspendMillis() {
+            return maxSuspendMillis;
+        }
+
+        public void setMaxSuspendMillis(long maxSuspendMillis) {
+            this.maxSuspendMillis = maxSuspendMillis;
+        }
+
+        public String getPermanentFailureTarget() {
+            return permanentFailureTarget;
+        }
+
+        public void setPermanentFailureTarget(String permanentFailureTarget) {
+            this.permanentFailureTarget = permanentFailureTarget;
+        }
+    }
+
+    /**
+     * 自适应预取配置
+     * 每个周期取消费耗时 p99 与堆使用率：超过目标时预取阈值、拉取批量、消费批量按比例下降（乘性减），
+     * 未超过且 broker 上仍有积压时按步长上升（加性增），均限制在上下限内
+     */
+    public static class AdaptivePullProperties {
+        /**
+         * 是否开启，关闭时只采集消费耗时
+         */
+        private boolean enabled = false;
+
+        /**
+         * 调整周期毫秒数
+         */
+        private long intervalMillis = 1000;
+
+        /**
+         * 单条消息消费耗时 p99 目标
+         */
+        private long targetLatencyMillis = 50;
+
+        /**
+         * 堆使用率上限，超过时视同过载
+         */
+        private double maxHeapUsage = 0.75;
+
+        /**
+         * 乘性减的比例
+         */
+        private double decreaseFactor = 0.5;
+
+        private int minPullThreshold = 64;
+        private int maxPullThreshold = 2000;
+        private int pullThresholdStep = 64;
+
+        private int minPullBatchSize = 4;
+        private int maxPullBatchSize = 32;
+        private int pullBatchStep = 4;
+
+        /**
+         * 消费批量上限，下限为 1
+         */
+        private int maxConsumeBatchSize = 16;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        public void setIntervalMillis(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+
+        public long getTargetLatencyMillis() {
+            return targetLatencyMillis;
+        }
+
+        public void setTargetLatencyMillis(long targetLatencyMillis) {
+            this.targetLatencyMillis = targetLatencyMillis;
+        }
+
+        public double getMaxHeapUsage() {
+            return maxHeapUsage;
+        }
+
+        public void setMaxHeapUsage(double maxHeapUsage) {
+            this.maxHeapUsage = maxHeapUsage;
+        }
+
+        public double getDecreaseFactor() {
+            return decreaseFactor;
+        }
+
+        public void setDecreaseFactor(double decreaseFactor) {
+            this.decreaseFactor = decreaseFactor;
+        }
+
+        public int getMinPullThreshold() {
+            return minPullThreshold;
+        }
+
+        public void setMinPullThreshold(int minPullThreshold) {
+            this.minPullThreshold = minPullThreshold;
+        }
+
+        public int getMaxPullThreshold() {
+            return maxPullThreshold;
+        }
+
+        public void setMaxPullThreshold(int maxPullThreshold) {
+            this.maxPullThreshold = maxPullThreshold;
+        }
+
+        public int getPullThresholdStep() {
+            return pullThresholdStep;
+        }
+
+        public void setPullThresholdStep(int pullThresholdStep) {
+            this.pullThresholdStep = pullThresholdStep;
+        }
+
+        public int getMinPullBatchSize() {
+            return minPullBatchSize;
+        }
+
+        public void setMinPullBatchSize(int minPullBatchSize) {
+            this.minPullBatchSize = minPullBatchSize;
+        }
+
+        public int getMaxPullBatchSize() {
+            return maxPullBatchSize;
+        }
+
+        public void setMaxPullBatchSize(int maxPullBatchSize) {
+            this.maxPullBatchSize = maxPullBatchSize;
+        }
+
+        public int getPullBatchStep() {
+            return pullBatchStep;
+        }
+
+        public void setPullBatchStep(int pullBatchStep) {
+            this.pullBatchStep = pullBatchStep;
+        }
+
+        public int getMaxConsumeBatchSize() {
+            return maxConsumeBatchSize;
+        }
+
+        public void setMaxConsumeBatchSize(int maxConsumeBatchSize) {
+            this.maxConsumeBatchSize = maxConsumeBatchSize;
+        }
+    }
+}
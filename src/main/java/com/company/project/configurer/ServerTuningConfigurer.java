@@ -0,0 +1,97 @@
+package com.company.project.configurer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.embedded.ConfigurableEmbeddedServletContainer;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tomcat 连接器调优中 Boot 1.5 没有绑定的部分，tuning profile（application-tuning.yml）中开启
+ * 线程数、最大连接数、连接超时与压缩直接使用 server.tomcat.* / server.connection-timeout / server.compression.*，
+ * 这里只补上长连接空闲超时、单连接最大请求数与 accept 队列长度，不覆盖任何 server.* 设置
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "server-tuning", name = "enabled")
+@ConfigurationProperties(prefix = "server-tuning")
+public class ServerTuningConfigurer implements EmbeddedServletContainerCustomizer {
+
+    private boolean enabled = false;
+
+    /**
+     * 长连接空闲超时，批量接口的调用方通常成批连续请求，保持连接避免重复握手
+     */
+    private int keepAliveTimeoutMillis = 30000;
+
+    /**
+     * 单个长连接最多处理的请求数，-1 不限制；限制后连接会定期重建，便于负载均衡重新分布
+     */
+    private int maxKeepAliveRequests = 1000;
+
+    /**
+     * 连接数达到 server.tomcat.max-connections 后操作系统 accept 队列长度，不配置时保持 Tomcat 默认值
+     */
+    private Integer acceptCount;
+
+    @Override
+    public void customize(ConfigurableEmbeddedServletContainer container) {
+        if (!(container instanceof TomcatEmbeddedServletContainerFactory)) {
+            log.warn("当前容器不是 Tomcat，server-tuning 未生效");
+            return;
+        }
+        ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(this::customizeConnector);
+    }
+
+    private void customizeConnector(Connector connector) {
+        ProtocolHandler handler = connector.getProtocolHandler();
+        if (!(handler instanceof AbstractHttp11Protocol)) {
+            return;
+        }
+        AbstractHttp11Protocol<?> protocol = (AbstractHttp11Protocol<?>) handler;
+        protocol.setKeepAliveTimeout(keepAliveTimeoutMillis);
+        protocol.setMaxKeepAliveRequests(maxKeepAliveRequests);
+        if (acceptCount != null) {
+            protocol.setAcceptCount(acceptCount);
+        }
+        log.info("Tomcat 连接器调优 keepAliveTimeout={}ms maxKeepAliveRequests={} acceptCount={}",
+                keepAliveTimeoutMillis, maxKeepAliveRequests, protocol.getAcceptCount());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getKeepAliveTimeoutMillis() {
+        return keepAliveTimeoutMillis;
+    }
+
+    public void setKeepAliveTimeoutMillis(int keepAliveTimeoutMillis) {
+        this.keepAliveTimeoutMillis = keepAliveTimeoutMillis;
+    }
+
+    public int getMaxKeepAliveRequests() {
+        return maxKeepAliveRequests;
+    }
+
+    public void setMaxKeepAliveRequests(int maxKeepAliveRequests) {
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+    }
+
+    public Integer getAcceptCount() {
+        return acceptCount;
+    }
+
+    public void setAcceptCount(Integer acceptCount) {
+        this.acceptCount = acceptCount;
+    }
+}
@@ -0,0 +1,66 @@
+package com.company.project.configurer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * 定时任务线程池配置
+ * 默认所有 @Scheduled 任务共用一个线程，中继积压消息或夜间归档时会阻塞从库延迟心跳与其他任务；
+ * 线程数不少于定时任务数时，每个任务都不会因其他任务耗时而延后
+ */
+@Slf4j
+@Configuration
+@ConfigurationProperties(prefix = "task-scheduler")
+public class TaskSchedulerConfigurer implements SchedulingConfigurer {
+
+    /**
+     * 线程数，目前有 7 个定时任务：本地消息表中继与清理、从库延迟心跳、分区维护与归档、连接池指标、消费拉取调节与空闲账户清理
+     */
+    private int poolSize = 8;
+
+    /**
+     * 停机时等待正在执行的任务结束的秒数
+     */
+    private int awaitTerminationSeconds = 30;
+
+    /**
+     * 注册为 Bean，随应用上下文关闭
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduled-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(awaitTerminationSeconds);
+        scheduler.setErrorHandler(t -> log.error("定时任务执行失败", t));
+        log.info("定时任务线程池 poolSize={}", poolSize);
+        return scheduler;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        taskRegistrar.setTaskScheduler(taskScheduler());
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getAwaitTerminationSeconds() {
+        return awaitTerminationSeconds;
+    }
+
+    public void setAwaitTerminationSeconds(int awaitTerminationSeconds) {
+        this.awaitTerminationSeconds = awaitTerminationSeconds;
+    }
+}
@@ -0,0 +1,52 @@
+package com.company.project.configurer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 转账记录查询缓存配置
+ * 转账记录写入后不再修改，按 record_no / transaction_id 的查询结果可以安全缓存，默认关闭
+ */
+@Configuration
+@ConfigurationProperties(prefix = "transfer-record.lookup-cache")
+public class TransferRecordCacheConfigurer {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = false;
+
+    /**
+     * 最大条数，record_no 与 transaction_id 两个缓存分别计算
+     */
+    private long maxSize = 50000;
+
+    /**
+     * 写入后过期秒数，保证分区归档删除后缓存也随之消失
+     */
+    private long expireSeconds = 600;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getExpireSeconds() {
+        return expireSeconds;
+    }
+
+    public void setExpireSeconds(long expireSeconds) {
+        this.expireSeconds = expireSeconds;
+    }
+}
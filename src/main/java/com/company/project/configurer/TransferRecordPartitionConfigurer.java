@@ -0,0 +1,77 @@
+package com.company.project.configurer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * transfer_record 分区与归档配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "transfer-record.partition")
+public class TransferRecordPartitionConfigurer {
+
+    /**
+     * 热数据月份数，回查等热点查询只扫描当前月及之前 hotMonths 个月的分区
+     */
+    private int hotMonths = 1;
+
+    /**
+     * 保留月份数，早于该范围的分区会被归档并删除
+     */
+    private int retentionMonths = 6;
+
+    /**
+     * 提前创建的未来分区月份数
+     */
+    private int futureMonths = 2;
+
+    /**
+     * 归档文件目录
+     */
+    private String archiveDir = "archive/transfer_record";
+
+    /**
+     * 是否在归档完成后删除分区
+     */
+    private boolean dropAfterArchive = true;
+
+    public int getHotMonths() {
+        return hotMonths;
+    }
+
+    public void setHotMonths(int hotMonths) {
+        this.hotMonths = hotMonths;
+    }
+
+    public int getRetentionMonths() {
+        return retentionMonths;
+    }
+
+    public void setRetentionMonths(int retentionMonths) {
+        this.retentionMonths = retentionMonths;
+    }
+
+    public int getFutureMonths() {
+        return futureMonths;
+    }
+
+    public void setFutureMonths(int futureMonths) {
+        this.futureMonths = futureMonths;
+    }
+
+    public String getArchiveDir() {
+        return archiveDir;
+    }
+
+    public void setArchiveDir(String archiveDir) {
+        this.archiveDir = archiveDir;
+    }
+
+    public boolean isDropAfterArchive() {
+        return dropAfterArchive;
+    }
+
+    public void setDropAfterArchive(boolean dropAfterArchive) {
+        this.dropAfterArchive = dropAfterArchive;
+    }
+}
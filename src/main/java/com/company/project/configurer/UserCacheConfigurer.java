@@ -0,0 +1,77 @@
+package com.company.project.configurer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 用户余额缓存配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "user-cache")
+public class UserCacheConfigurer {
+
+    /**
+     * 本地缓存最大条数，超出后按 W-TinyLFU 淘汰
+     */
+    private long localMaxSize = 100000;
+
+    /**
+     * 本地缓存写入后过期秒数，作为提交后失效之外的兜底
+     */
+    private long localExpireSeconds = 5;
+
+    /**
+     * 是否启用 Redis 二级缓存（使用 spring-redis.xml 中的 jedisPool）
+     */
+    private boolean redisEnabled = false;
+
+    /**
+     * Redis 缓存过期秒数
+     */
+    private int redisExpireSeconds = 30;
+
+    /**
+     * Redis 缓存 key 前缀
+     */
+    private String redisKeyPrefix = "user:balance:";
+
+    public long getLocalMaxSize() {
+        return localMaxSize;
+    }
+
+    public void setLocalMaxSize(long localMaxSize) {
+        this.localMaxSize = localMaxSize;
+    }
+
+    public long getLocalExpireSeconds() {
+        return localExpireSeconds;
+    }
+
+    public void setLocalExpireSeconds(long localExpireSeconds) {
+        this.localExpireSeconds = localExpireSeconds;
+    }
+
+    public boolean isRedisEnabled() {
+        return redisEnabled;
+    }
+
+    public void setRedisEnabled(boolean redisEnabled) {
+        this.redisEnabled = redisEnabled;
+    }
+
+    public int getRedisExpireSeconds() {
+        return redisExpireSeconds;
+    }
+
+    public void setRedisExpireSeconds(int redisExpireSeconds) {
+        this.redisExpireSeconds = redisExpireSeconds;
+    }
+
+    public String getRedisKeyPrefix() {
+        return redisKeyPrefix;
+    }
+
+    public void setRedisKeyPrefix(String redisKeyPrefix) {
+        this.redisKeyPrefix = redisKeyPrefix;
+    }
+}
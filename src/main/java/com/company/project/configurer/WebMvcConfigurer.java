@@ -1,13 +1,19 @@
 package com.company.project.configurer;
 
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.List;
 
 
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.alibaba.fastjson.support.config.FastJsonConfig;
-import com.alibaba.fastjson.support.spring.FastJsonHttpMessageConverter;
+import com.company.project.biz.AdmissionControlInterceptor;
+import com.company.project.core.StreamingFastJsonHttpMessageConverter;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -17,15 +23,33 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter
  * Spring MVC 配置
  */
 @Configuration
+@ConfigurationProperties(prefix = "web-mvc")
 public class WebMvcConfigurer extends WebMvcConfigurerAdapter {
 
+    /**
+     * JSON 响应直接流式写入响应流，关闭后与原 FastJsonHttpMessageConverter 一样整体缓冲后写出
+     */
+    private boolean streamingJson = true;
+
+    /**
+     * 统计每次 JSON 写出在请求线程上分配的字节数，用于对比流式与缓冲写出
+     */
+    private boolean jsonAllocationMetrics = false;
+
+    private StreamingFastJsonHttpMessageConverter jsonConverter;
+
+    @Autowired(required = false)
+    private AdmissionControlInterceptor admissionControlInterceptor;
+
     /**
      * 使用阿里 FastJson 作为JSON MessageConverter
+     * 请求头 X-Json-Compact: true 时省略 null 字段，见 {@link StreamingFastJsonHttpMessageConverter}
      * @param converters
      */
     @Override
     public void configureMessageConverters(List<HttpMessageConverter<?>> converters) {
-        FastJsonHttpMessageConverter converter = new FastJsonHttpMessageConverter();
+        StreamingFastJsonHttpMessageConverter converter =
+                new StreamingFastJsonHttpMessageConverter(streamingJson, jsonAllocationMetrics);
         FastJsonConfig config = new FastJsonConfig();
         //保留空的字段
         config.setSerializerFeatures(SerializerFeature.WriteMapNullValue,
@@ -36,13 +60,42 @@ public class WebMvcConfigurer extends WebMvcConfigurerAdapter {
         converter.setFastJsonConfig(config);
         converter.setDefaultCharset(Charset.forName("UTF-8"));
         converters.add(converter);
+        jsonConverter = converter;
+    }
+
+    /**
+     * JSON 写出次数、响应大小与分配量
+     */
+    @Bean
+    public PublicMetrics jsonWriterMetrics() {
+        return () -> jsonConverter == null ? Collections.emptyList() : jsonConverter.metrics();
     }
 
 
     //添加拦截器
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        //转账提交准入控制 admission.enabled=true 时启用
+        if (admissionControlInterceptor != null) {
+            registry.addInterceptor(admissionControlInterceptor)
+                    .addPathPatterns(admissionControlInterceptor.getPathPatterns().toArray(new String[0]));
+        }
+    }
+
+    public boolean isStreamingJson() {
+        return streamingJson;
+    }
+
+    public void setStreamingJson(boolean streamingJson) {
+        this.streamingJson = streamingJson;
+    }
+
+    public boolean isJsonAllocationMetrics() {
+        return jsonAllocationMetrics;
+    }
 
+    public void setJsonAllocationMetrics(boolean jsonAllocationMetrics) {
+        this.jsonAllocationMetrics = jsonAllocationMetrics;
     }
 
 }
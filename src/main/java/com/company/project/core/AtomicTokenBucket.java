@@ -0,0 +1,81 @@
+package com.company.project.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶，按 GCRA（通用信元速率算法）实现：只保存下一个令牌的理论到达时间，一次 CAS 完成补充与扣减
+ * 与 {@link TokenBucket} 的准入语义相同（速率 + 突发容量，初始满桶），只支持 tryAcquire 与归还，适合按用户大量创建的限流桶
+ */
+public class AtomicTokenBucket {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+
+    /**
+     * 理论到达时间，不晚于当前时间说明桶已满
+     */
+    private final AtomicLong tat;
+
+    /**
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param capacity         桶容量（最大突发量），初始为满桶
+     */
+    public AtomicTokenBucket(double permitsPerSecond, double capacity) {
+        if (permitsPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("permitsPerSecond 必须大于0，capacity 不能小于1");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = (long) (intervalNanos * (capacity - 1));
+        this.tat = new AtomicLong(System.nanoTime());
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime()) == 0;
+    }
+
+    /**
+     * 尝试获取一个令牌
+     *
+     * @param now System.nanoTime()
+     * @return 0 表示获取成功，否则为令牌可用前还需等待的纳秒数
+     */
+    public long tryAcquire(long now) {
+        while (true) {
+            long current = tat.get();
+            long base = current - now < 0 ? now : current;
+            long waitNanos = base - toleranceNanos - now;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (tat.compareAndSet(current, base + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 归还一个 tryAcquire 成功获取的令牌，与其他令牌桶组合使用、后面的桶拒绝了请求时调用，桶已满时不再增加
+     *
+     * @param now System.nanoTime()
+     */
+    public void release(long now) {
+        while (true) {
+            long current = tat.get();
+            if (current - now <= 0) {
+                return;
+            }
+            long released = current - intervalNanos;
+            if (tat.compareAndSet(current, released - now < 0 ? now : released)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 桶已满即没有任何未恢复的消耗，此时丢弃后重新创建与保留的效果相同
+     */
+    public boolean isIdle(long now) {
+        return tat.get() - now <= 0;
+    }
+}
@@ -0,0 +1,128 @@
+package com.company.project.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁对数分桶直方图，用于记录耗时、连接数等非负整数样本
+ * 每个 2 的幂区间再细分 8 个子桶，相对误差不超过 12.5%，记录只有一次 CAS 级别的开销
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * 读取当前统计值，不清空
+     */
+    public Snapshot snapshot() {
+        return collect(false);
+    }
+
+    /**
+     * 读取并清空，适合按固定周期输出区间统计
+     */
+    public Snapshot snapshotAndReset() {
+        return collect(true);
+    }
+
+    private Snapshot collect(boolean reset) {
+        long[] buckets = new long[counts.length()];
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+            total += buckets[i];
+            sum += buckets[i] * (double) lowerBound(i);
+        }
+        long maxValue = reset ? max.getAndSet(0) : max.get();
+        return new Snapshot(buckets, total, total == 0 ? 0 : sum / total, maxValue);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return ((long) (SUB_BUCKETS + index % SUB_BUCKETS + 1) << shift) - 1;
+    }
+
+    /**
+     * 直方图快照
+     */
+    public static class Snapshot {
+        private final long[] buckets;
+        private final long count;
+        private final double mean;
+        private final long max;
+
+        Snapshot(long[] buckets, long count, double mean, long max) {
+            this.buckets = buckets;
+            this.count = count;
+            this.mean = mean;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * 分位值（取所在桶的上界，不超过最大值）
+         *
+         * @param quantile 0~1，如 0.99
+         */
+        public long percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -23,4 +23,19 @@ public final class ProjectConstant {
      */
     public static int TOKEN_TIMEOUT = 8 * 60 * 60;
 
+    /**
+     * 事务消息中标识转账类型的用户属性
+     */
+    public static final String TRANSFER_TYPE_PROPERTY = "transferType";
+
+    /**
+     * 批量转账类型，消息体为 BatchTransfer
+     */
+    public static final String TRANSFER_TYPE_BATCH = "BATCH";
+
+    /**
+     * 事务消息中标识收款账户的用户属性，按账户选择队列与串行消费时使用
+     */
+    public static final String ACCOUNT_KEY_PROPERTY = "accountKey";
+
 }
@@ -0,0 +1,93 @@
+package com.company.project.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 时间有序的 64 位 ID 生成器（Snowflake 布局）
+ * <pre>
+ * 0 | 41 位毫秒时间戳（相对 epoch） | 10 位 workerId | 12 位序列号
+ * </pre>
+ * - 无锁：上次的时间戳与序列号打包在一个 AtomicLong 中，CAS 推进
+ * - 时钟回拨安全：逻辑时钟只进不退，回拨或同一毫秒内序列号耗尽时顺延到下一毫秒，
+ *   待系统时钟追上后自动恢复，进程内生成的 ID 始终单调递增
+ */
+public class SnowflakeIdGenerator {
+
+    public static final int WORKER_ID_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    /**
+     * 转成流水号时补齐的位数，定长保证字符串序与数值序一致
+     */
+    private static final int RECORD_NO_LENGTH = 19;
+
+    private final long epoch;
+    private final long workerId;
+
+    /**
+     * 高位为相对 epoch 的逻辑时间戳，低 SEQUENCE_BITS 位为序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long workerId, long epoch) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId 取值范围 0~" + MAX_WORKER_ID + ": " + workerId);
+        }
+        if (epoch > System.currentTimeMillis()) {
+            throw new IllegalArgumentException("epoch 不能晚于当前时间: " + epoch);
+        }
+        this.workerId = workerId;
+        this.epoch = epoch;
+    }
+
+    public long nextId() {
+        for (;;) {
+            long last = state.get();
+            long now = System.currentTimeMillis() - epoch;
+            // 系统时钟前进则序列号从0开始，否则沿用逻辑时钟，序列号溢出时进位到时间戳
+            long next = now > (last >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : last + 1;
+            if (state.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                return (timestamp << (WORKER_ID_BITS + SEQUENCE_BITS))
+                        | (workerId << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 生成定长字符串形式的流水号，用于 record_no 及消息 key
+     */
+    public String nextRecordNo() {
+        return toRecordNo(nextId());
+    }
+
+    /**
+     * 逻辑时钟领先系统时钟的毫秒数，持续为正说明发生了时钟回拨或请求量超过单机上限
+     */
+    public long getDriftMillis() {
+        return Math.max(0, (state.get() >>> SEQUENCE_BITS) - (System.currentTimeMillis() - epoch));
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * 从 ID 中解析生成时间（毫秒时间戳）
+     */
+    public long timestampOf(long id) {
+        return (id >>> (WORKER_ID_BITS + SEQUENCE_BITS)) + epoch;
+    }
+
+    static String toRecordNo(long id) {
+        char[] buf = new char[RECORD_NO_LENGTH];
+        for (int i = RECORD_NO_LENGTH - 1; i >= 0; i--) {
+            buf[i] = (char) ('0' + id % 10);
+            id /= 10;
+        }
+        return new String(buf);
+    }
+}
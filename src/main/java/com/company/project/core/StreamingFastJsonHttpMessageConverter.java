@@ -0,0 +1,283 @@
+package com.company.project.core;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeFilter;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.fastjson.support.config.FastJsonConfig;
+import com.alibaba.fastjson.support.spring.FastJsonHttpMessageConverter;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 流式写出的 FastJson 消息转换器
+ * 父类先把整个响应序列化到新建的 ByteArrayOutputStream 再拷贝到响应流，大列表响应每次都分配并扩容一块与响应等大的缓冲；
+ * 这里 SerializeWriter 直接挂在 UTF-8 编码器上，字符缓冲写满即编码写入响应流，
+ * 字符缓冲（SerializeWriter 自带的线程本地缓冲）与字节缓冲都按线程复用，分配量与响应大小无关
+ * <p>
+ * 请求头 {@value #COMPACT_HEADER}: true 时使用紧凑模式：去掉 null 填充类特性，值为 null 的字段直接省略，适合机器调用方
+ * 流式写出不设置 Content-Length，响应按 chunked 编码发送；读取仍由父类处理
+ */
+public class StreamingFastJsonHttpMessageConverter extends FastJsonHttpMessageConverter {
+
+    public static final String COMPACT_HEADER = "X-Json-Compact";
+
+    /**
+     * 紧凑模式去掉的特性
+     */
+    private static final Set<SerializerFeature> NULL_FILLING_FEATURES = EnumSet.of(SerializerFeature.WriteMapNullValue,
+            SerializerFeature.WriteNullStringAsEmpty, SerializerFeature.WriteNullNumberAsZero,
+            SerializerFeature.WriteNullListAsEmpty, SerializerFeature.WriteNullBooleanAsFalse);
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private SerializerFeature[] compactFeatures = new SerializerFeature[0];
+
+    private final boolean streaming;
+    private final boolean allocationMetrics;
+    private final LatencyHistogram allocatedBytes = new LatencyHistogram();
+    private final LatencyHistogram writtenBytes = new LatencyHistogram();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder compactWrites = new LongAdder();
+
+    /**
+     * @param streaming         false 时按父类方式整体缓冲后写出（不支持紧凑模式），用于同口径对比分配量
+     * @param allocationMetrics 是否统计每次写出在当前线程上分配的字节数（HotSpot ThreadMXBean），开销为两次 JMX 调用
+     */
+    public StreamingFastJsonHttpMessageConverter(boolean streaming, boolean allocationMetrics) {
+        this.streaming = streaming;
+        this.allocationMetrics = allocationMetrics && THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).isThreadAllocatedMemorySupported();
+        if (this.allocationMetrics) {
+            ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    @Override
+    public void setFastJsonConfig(FastJsonConfig fastJsonConfig) {
+        super.setFastJsonConfig(fastJsonConfig);
+        List<SerializerFeature> features = new ArrayList<>();
+        for (SerializerFeature feature : fastJsonConfig.getSerializerFeatures()) {
+            if (!NULL_FILLING_FEATURES.contains(feature)) {
+                features.add(feature);
+            }
+        }
+        compactFeatures = features.toArray(new SerializerFeature[0]);
+    }
+
+    @Override
+    protected void writeInternal(Object object, HttpOutputMessage outputMessage) throws IOException {
+        long allocatedBefore = allocationMetrics ? currentThreadAllocatedBytes() : 0;
+        FastJsonConfig config = getFastJsonConfig();
+        if (streaming && StandardCharsets.UTF_8.equals(config.getCharset())) {
+            writeStreaming(object, outputMessage, config);
+        } else {
+            super.writeInternal(object, outputMessage);
+        }
+        writes.increment();
+        if (allocationMetrics) {
+            allocatedBytes.record(currentThreadAllocatedBytes() - allocatedBefore);
+        }
+    }
+
+    private void writeStreaming(Object object, HttpOutputMessage outputMessage, FastJsonConfig config) throws IOException {
+        boolean compact = isCompactRequested();
+        Utf8Writer out = new Utf8Writer(outputMessage.getBody());
+        SerializeWriter writer = new SerializeWriter(out, JSON.DEFAULT_GENERATE_FEATURE,
+                compact ? compactFeatures : config.getSerializerFeatures());
+        try {
+            JSONSerializer serializer = new JSONSerializer(writer, config.getSerializeConfig());
+            if (config.getDateFormat() != null && !config.getDateFormat().isEmpty()) {
+                serializer.setDateFormat(config.getDateFormat());
+                serializer.config(SerializerFeature.WriteDateUseDateFormat, true);
+            }
+            if (config.getSerializeFilters() != null) {
+                for (SerializeFilter filter : config.getSerializeFilters()) {
+                    serializer.addFilter(filter);
+                }
+            }
+            serializer.write(object);
+            // 先把剩余字符交给编码器，再把字节写入响应流并归还线程缓冲
+            writer.close();
+            out.close();
+        } catch (RuntimeException | IOException e) {
+            // 序列化失败时丢弃未写出的部分，尚未提交的响应仍可由异常处理器改写；已超过容器响应缓冲的部分无法撤回
+            out.release();
+            throw e;
+        }
+
+        if (compact) {
+            compactWrites.increment();
+        }
+        writtenBytes.record(out.written);
+    }
+
+    private static boolean isCompactRequested() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes
+                && "true".equalsIgnoreCase(((ServletRequestAttributes) attributes).getRequest().getHeader(COMPACT_HEADER));
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 写出次数、流式写出的响应字节数分位，开启分配统计时另有每次写出分配字节数的均值与分位
+     */
+    public List<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("http.json.writes", writes.sum()));
+        metrics.add(new Metric<>("http.json.writes.compact", compactWrites.sum()));
+        LatencyHistogram.Snapshot written = writtenBytes.snapshot();
+        metrics.add(new Metric<>("http.json.bytes.p50", written.percentile(0.5)));
+        metrics.add(new Metric<>("http.json.bytes.p99", written.percentile(0.99)));
+        metrics.add(new Metric<>("http.json.bytes.max", written.getMax()));
+        if (allocationMetrics) {
+            LatencyHistogram.Snapshot allocated = allocatedBytes.snapshot();
+            metrics.add(new Metric<>("http.json.allocated.mean", allocated.getMean()));
+            metrics.add(new Metric<>("http.json.allocated.p50", allocated.percentile(0.5)));
+            metrics.add(new Metric<>("http.json.allocated.p99", allocated.percentile(0.99)));
+            metrics.add(new Metric<>("http.json.allocated.max", allocated.getMax()));
+        }
+        return metrics;
+    }
+
+    /**
+     * 把字符按 UTF-8 编码后写入输出流，字节缓冲按线程复用，不关闭底层输出流
+     */
+    static final class Utf8Writer extends Writer {
+
+        private static final int BUFFER_SIZE = 8192;
+        private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+
+        private final OutputStream out;
+        private byte[] buf;
+        private int pos;
+        private char highSurrogate;
+        private long written;
+
+        Utf8Writer(OutputStream out) {
+            this.out = out;
+            byte[] cached = BUFFERS.get();
+            if (cached != null) {
+                BUFFERS.set(null);
+                buf = cached;
+            } else {
+                buf = new byte[BUFFER_SIZE];
+            }
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            encode((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) throws IOException {
+            for (int i = off, end = off + len; i < end; i++) {
+                encode(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            for (int i = off, end = off + len; i < end; i++) {
+                encode(str.charAt(i));
+            }
+        }
+
+        private void encode(char c) throws IOException {
+            if (pos + 4 > buf.length) {
+                flushBuffer();
+            }
+            if (highSurrogate != 0) {
+                char high = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    int codePoint = Character.toCodePoint(high, c);
+                    buf[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                    buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+                    return;
+                }
+                // 不成对的代理字符与 String#getBytes 一样替换为 '?'
+                buf[pos++] = '?';
+            }
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                buf[pos++] = '?';
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            if (pos > 0) {
+                out.write(buf, 0, pos);
+                written += pos;
+                pos = 0;
+            }
+        }
+
+        /**
+         * 只把已编码的字节交给输出流，是否刷到网络由容器的响应缓冲决定
+         */
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (buf == null) {
+                return;
+            }
+            try {
+                if (highSurrogate != 0) {
+                    highSurrogate = 0;
+                    buf[pos++] = '?';
+                }
+                flushBuffer();
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * 归还线程缓冲，未写出的字节直接丢弃
+         */
+        void release() {
+            if (buf != null) {
+                BUFFERS.set(buf);
+                buf = null;
+                pos = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.company.project.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipf 分布采样，返回 1~n 的排名，排名 k 的概率与 1/k^exponent 成正比
+ * exponent 为 0 时退化为均匀分布；预先计算累积分布，采样为一次二分查找
+ */
+public class ZipfDistribution {
+
+    private final int n;
+    private final double exponent;
+    private final double[] cdf;
+
+    public ZipfDistribution(int n, double exponent) {
+        if (n < 1 || exponent < 0) {
+            throw new IllegalArgumentException("n 必须大于0，exponent 不能为负");
+        }
+        this.n = n;
+        this.exponent = exponent;
+        if (exponent == 0) {
+            cdf = null;
+            return;
+        }
+        cdf = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1 / Math.pow(k, exponent);
+            cdf[k - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+    }
+
+    /**
+     * @return 1~n 的排名
+     */
+    public int sample(Random random) {
+        if (cdf == null) {
+            return random.nextInt(n) + 1;
+        }
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, n - 1) + 1;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public double getExponent() {
+        return exponent;
+    }
+}
@@ -0,0 +1,111 @@
+package com.company.project.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * 数据源路由线程上下文
+ * 必须在事务开始（获取连接）之前设置，事务内切换不会生效
+ */
+public class DataSourceContext {
+    private static final ThreadLocal<PoolRole> ROLE_THREAD_LOCAL = new ThreadLocal<PoolRole>();
+    /**
+     * 从库读可接受的最大复制延迟，null 表示走主库
+     */
+    private static final ThreadLocal<Long> REPLICA_LAG_THREAD_LOCAL = new ThreadLocal<Long>();
+    /**
+     * 当前分片序号，未设置时为 0
+     */
+    private static final ThreadLocal<Integer> SHARD_THREAD_LOCAL = new ThreadLocal<Integer>();
+
+    public static PoolRole getRole() {
+        PoolRole role = ROLE_THREAD_LOCAL.get();
+        return role != null ? role : PoolRole.DEFAULT;
+    }
+
+    /**
+     * 切换连接池分区
+     *
+     * @return 切换前的分区，调用方在 finally 中通过 {@link #restoreRole(PoolRole)} 还原
+     */
+    public static PoolRole switchRole(PoolRole role) {
+        PoolRole previous = ROLE_THREAD_LOCAL.get();
+        ROLE_THREAD_LOCAL.set(role);
+        return previous;
+    }
+
+    public static void restoreRole(PoolRole previous) {
+        if (previous == null) {
+            ROLE_THREAD_LOCAL.remove();
+        } else {
+            ROLE_THREAD_LOCAL.set(previous);
+        }
+    }
+
+    /**
+     * 当前线程允许读从库时返回可接受的最大复制延迟毫秒数，否则返回 null
+     */
+    public static Long getReplicaMaxLag() {
+        return REPLICA_LAG_THREAD_LOCAL.get();
+    }
+
+    /**
+     * 切换为从库读
+     *
+     * @return 切换前的设置，调用方在 finally 中通过 {@link #restoreReplica(Long)} 还原
+     */
+    public static Long switchToReplica(long maxLagMillis) {
+        Long previous = REPLICA_LAG_THREAD_LOCAL.get();
+        REPLICA_LAG_THREAD_LOCAL.set(maxLagMillis);
+        return previous;
+    }
+
+    public static void restoreReplica(Long previous) {
+        if (previous == null) {
+            REPLICA_LAG_THREAD_LOCAL.remove();
+        } else {
+            REPLICA_LAG_THREAD_LOCAL.set(previous);
+        }
+    }
+
+    public static int getShard() {
+        Integer shard = SHARD_THREAD_LOCAL.get();
+        return shard != null ? shard : 0;
+    }
+
+    /**
+     * 切换分片
+     *
+     * @return 切换前的分片，调用方在 finally 中通过 {@link #restoreShard(Integer)} 还原
+     * @throws IllegalStateException 当前事务已绑定其他分片的连接
+     */
+    public static Integer switchShard(int shard) {
+        if (shard != getShard() && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("事务内不能切换分片，当前分片 " + getShard() + "，目标分片 " + shard);
+        }
+        Integer previous = SHARD_THREAD_LOCAL.get();
+        SHARD_THREAD_LOCAL.set(shard);
+        return previous;
+    }
+
+    public static void restoreShard(Integer previous) {
+        if (previous == null) {
+            SHARD_THREAD_LOCAL.remove();
+        } else {
+            SHARD_THREAD_LOCAL.set(previous);
+        }
+    }
+
+    /**
+     * 在指定分片上执行，执行完还原
+     */
+    public static <T> T callOnShard(int shard, Supplier<T> action) {
+        Integer previous = switchShard(shard);
+        try {
+            return action.get();
+        } finally {
+            restoreShard(previous);
+        }
+    }
+}
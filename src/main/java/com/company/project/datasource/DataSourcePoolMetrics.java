@@ -0,0 +1,103 @@
+package com.company.project.datasource;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.company.project.core.LatencyHistogram;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 连接池饱和度监控
+ * - 获取连接等待时间直方图（由 RoutingDataSource 记录）
+ * - 每秒采样一次活跃/空闲连接数，形成直方图，便于观察池是否长期打满
+ * - 读写分离路由次数与各从库复制延迟
+ * 只有一个分片时指标名不带分片名，多分片时在 datasource.pool / datasource.route / datasource.replica 之后加分片名
+ */
+@Component
+public class DataSourcePoolMetrics implements PublicMetrics, InitializingBean {
+
+    @Autowired
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    private final List<Map<PoolRole, LatencyHistogram>> activeSamples = new ArrayList<>();
+    private final List<Map<PoolRole, LatencyHistogram>> idleSamples = new ArrayList<>();
+
+    @Override
+    public void afterPropertiesSet() {
+        for (int shard = 0; shard < shardRoutingDataSource.getShardCount(); shard++) {
+            Map<PoolRole, LatencyHistogram> active = new EnumMap<>(PoolRole.class);
+            Map<PoolRole, LatencyHistogram> idle = new EnumMap<>(PoolRole.class);
+            for (PoolRole role : PoolRole.values()) {
+                active.put(role, new LatencyHistogram());
+                idle.put(role, new LatencyHistogram());
+            }
+            activeSamples.add(active);
+            idleSamples.add(idle);
+        }
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void sample() {
+        for (int shard = 0; shard < shardRoutingDataSource.getShardCount(); shard++) {
+            for (Map.Entry<PoolRole, DruidDataSource> entry : shardRoutingDataSource.getPrimaries().get(shard).getPools().entrySet()) {
+                activeSamples.get(shard).get(entry.getKey()).record(entry.getValue().getActiveCount());
+                idleSamples.get(shard).get(entry.getKey()).record(entry.getValue().getPoolingCount());
+            }
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (int shard = 0; shard < shardRoutingDataSource.getShardCount(); shard++) {
+            String shardSuffix = shardRoutingDataSource.getShardCount() > 1
+                    ? shardRoutingDataSource.getShardNames().get(shard) + "." : "";
+            RoutingDataSource routingDataSource = shardRoutingDataSource.getPrimaries().get(shard);
+            for (Map.Entry<PoolRole, DruidDataSource> entry : routingDataSource.getPools().entrySet()) {
+                PoolRole role = entry.getKey();
+                DruidDataSource pool = entry.getValue();
+                String prefix = "datasource.pool." + shardSuffix + role.name().toLowerCase() + ".";
+                metrics.add(new Metric<>(prefix + "active", pool.getActiveCount()));
+                metrics.add(new Metric<>(prefix + "idle", pool.getPoolingCount()));
+                metrics.add(new Metric<>(prefix + "maxActive", pool.getMaxActive()));
+                metrics.add(new Metric<>(prefix + "waitThreads", pool.getWaitThreadCount()));
+                metrics.add(new Metric<>(prefix + "notEmptyWaitCount", pool.getNotEmptyWaitCount()));
+
+                LatencyHistogram.Snapshot wait = routingDataSource.getWaitHistogram(role).snapshot();
+                metrics.add(new Metric<>(prefix + "wait.count", wait.getCount()));
+                metrics.add(new Metric<>(prefix + "wait.p50Micros", wait.percentile(0.5)));
+                metrics.add(new Metric<>(prefix + "wait.p99Micros", wait.percentile(0.99)));
+                metrics.add(new Metric<>(prefix + "wait.maxMicros", wait.getMax()));
+
+                LatencyHistogram.Snapshot active = activeSamples.get(shard).get(role).snapshot();
+                metrics.add(new Metric<>(prefix + "active.p50", active.percentile(0.5)));
+                metrics.add(new Metric<>(prefix + "active.p99", active.percentile(0.99)));
+                LatencyHistogram.Snapshot idle = idleSamples.get(shard).get(role).snapshot();
+                metrics.add(new Metric<>(prefix + "idle.p50", idle.percentile(0.5)));
+                metrics.add(new Metric<>(prefix + "idle.p01", idle.percentile(0.01)));
+            }
+
+            ReadWriteRoutingDataSource readWriteRoutingDataSource = shardRoutingDataSource.getShards().get(shard);
+            metrics.add(new Metric<>("datasource.route." + shardSuffix + "primary", readWriteRoutingDataSource.getPrimaryRoutes()));
+            metrics.add(new Metric<>("datasource.route." + shardSuffix + "replica", readWriteRoutingDataSource.getReplicaRoutes()));
+            metrics.add(new Metric<>("datasource.route." + shardSuffix + "fallback", readWriteRoutingDataSource.getFallbackRoutes()));
+            List<DruidDataSource> replicas = readWriteRoutingDataSource.getReplicas();
+            for (int i = 0; i < replicas.size(); i++) {
+                String prefix = "datasource.replica." + shardSuffix + i + ".";
+                long lag = readWriteRoutingDataSource.getLagMonitor().getLagMillis(i);
+                metrics.add(new Metric<>(prefix + "lagMillis", lag == Long.MAX_VALUE ? -1 : lag));
+                metrics.add(new Metric<>(prefix + "active", replicas.get(i).getActiveCount()));
+            }
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,23 @@
+package com.company.project.datasource;
+
+/**
+ * 连接池分区，不同调用方使用各自独立的连接池，互不抢占
+ */
+public enum PoolRole {
+    /**
+     * 生产者本地事务（转账扣钱）
+     */
+    PRODUCER,
+    /**
+     * 事务消息状态回查
+     */
+    CHECK_BACK,
+    /**
+     * 消费者入账
+     */
+    CONSUMER,
+    /**
+     * 其他调用：查询接口、定时任务等
+     */
+    DEFAULT
+}
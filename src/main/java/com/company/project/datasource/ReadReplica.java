@@ -0,0 +1,26 @@
+package com.company.project.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注可以容忍少量延迟的读方法（Service 或 Mapper 接口方法/类），查询优先路由到从库
+ * - 复制延迟超过 maxLagMillis 的从库会被跳过，没有可用从库时回到主库
+ * - 已处于读写事务中时不生效，事务内的读仍走事务连接
+ * - 只用于读结果允许滞后的场景，余额等需要读已提交最新值的查询不要标注
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface ReadReplica {
+
+    /**
+     * 可接受的最大复制延迟毫秒数，小于 0 时使用 datasource-pool.replica.max-lag-millis
+     */
+    long maxLagMillis() default -1;
+}
@@ -0,0 +1,73 @@
+package com.company.project.datasource;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ReadReplica} 切面
+ * 注解可以标在实现类或接口（包括 MyBatis Mapper 接口）的方法与类上，查找规则与 @Transactional 一致；
+ * 优先级最高，保证在事务拦截器获取连接之前设置好路由
+ */
+public class ReadReplicaAdvisor extends StaticMethodMatcherPointcutAdvisor {
+
+    private final long defaultMaxLagMillis;
+    private final ConcurrentHashMap<MethodClassKey, Optional<ReadReplica>> annotations = new ConcurrentHashMap<>();
+
+    public ReadReplicaAdvisor(long defaultMaxLagMillis) {
+        this.defaultMaxLagMillis = defaultMaxLagMillis;
+        setOrder(Ordered.HIGHEST_PRECEDENCE);
+        setAdvice((MethodInterceptor) this::invoke);
+    }
+
+    @Override
+    public boolean matches(Method method, Class<?> targetClass) {
+        return findAnnotation(method, targetClass) != null;
+    }
+
+    private Object invoke(MethodInvocation invocation) throws Throwable {
+        Class<?> targetClass = invocation.getThis() != null ? AopUtils.getTargetClass(invocation.getThis()) : null;
+        ReadReplica readReplica = findAnnotation(invocation.getMethod(), targetClass);
+        // 已在读写事务中，连接已绑定，继续沿用
+        if (readReplica == null || (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly())) {
+            return invocation.proceed();
+        }
+        long maxLag = readReplica.maxLagMillis() >= 0 ? readReplica.maxLagMillis() : defaultMaxLagMillis;
+        Long previous = DataSourceContext.switchToReplica(maxLag);
+        try {
+            return invocation.proceed();
+        } finally {
+            DataSourceContext.restoreReplica(previous);
+        }
+    }
+
+    private ReadReplica findAnnotation(Method method, Class<?> targetClass) {
+        return annotations.computeIfAbsent(new MethodClassKey(method, targetClass),
+                key -> Optional.ofNullable(resolve(method, targetClass))).orElse(null);
+    }
+
+    private static ReadReplica resolve(Method method, Class<?> targetClass) {
+        Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+        ReadReplica annotation = AnnotationUtils.findAnnotation(specificMethod, ReadReplica.class);
+        if (annotation == null) {
+            annotation = AnnotationUtils.findAnnotation(method, ReadReplica.class);
+        }
+        if (annotation == null) {
+            annotation = AnnotationUtils.findAnnotation(specificMethod.getDeclaringClass(), ReadReplica.class);
+        }
+        if (annotation == null) {
+            annotation = AnnotationUtils.findAnnotation(method.getDeclaringClass(), ReadReplica.class);
+        }
+        return annotation;
+    }
+}
@@ -0,0 +1,118 @@
+package com.company.project.datasource;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 读写分离数据源
+ * 默认全部走主库（按 {@link PoolRole} 分池的 RoutingDataSource）；
+ * 线程上下文标记了 {@link ReadReplica} 时轮询选择复制延迟在容忍范围内的从库，均不满足时回到主库
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    private final DataSource primary;
+    private final List<DruidDataSource> replicas;
+    private final ReplicaLagMonitor lagMonitor;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder primaryRoutes = new LongAdder();
+    private final LongAdder replicaRoutes = new LongAdder();
+    private final LongAdder fallbackRoutes = new LongAdder();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DruidDataSource> replicas, ReplicaLagMonitor lagMonitor) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(replicas);
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    /**
+     * 与无参方法按同样规则选择主库或从库，用指定的用户名密码获取连接
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection route(ConnectionOpener opener) throws SQLException {
+        Long maxLag = DataSourceContext.getReplicaMaxLag();
+        if (maxLag == null || replicas.isEmpty()) {
+            primaryRoutes.increment();
+            return opener.open(primary);
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (start + i) % replicas.size();
+            if (lagMonitor.getLagMillis(index) > maxLag) {
+                continue;
+            }
+            try {
+                Connection connection = opener.open(replicas.get(index));
+                replicaRoutes.increment();
+                return connection;
+            } catch (SQLException e) {
+                lagMonitor.markUnavailable(index);
+                log.warn("获取从库连接失败，尝试下一个从库或主库 replica={}", replicas.get(index).getName(), e);
+            }
+        }
+        fallbackRoutes.increment();
+        return opener.open(primary);
+    }
+
+    public List<DruidDataSource> getReplicas() {
+        return replicas;
+    }
+
+    public ReplicaLagMonitor getLagMonitor() {
+        return lagMonitor;
+    }
+
+    /**
+     * 走主库的连接数（未标记从库读）
+     */
+    public long getPrimaryRoutes() {
+        return primaryRoutes.sum();
+    }
+
+    /**
+     * 走从库的连接数
+     */
+    public long getReplicaRoutes() {
+        return replicaRoutes.sum();
+    }
+
+    /**
+     * 标记了从库读但没有满足延迟要求的从库、回到主库的连接数
+     */
+    public long getFallbackRoutes() {
+        return fallbackRoutes.sum();
+    }
+
+    /**
+     * 只关闭从库连接池，主库连接池由所属分片的 ShardRoutingDataSource 关闭
+     */
+    public void close() {
+        for (DruidDataSource replica : replicas) {
+            replica.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionOpener {
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+}
@@ -0,0 +1,106 @@
+package com.company.project.datasource;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 从库复制延迟探测（心跳表方式，与 pt-heartbeat 相同）
+ * 定时（由 ShardRoutingDataSource 调度）向主库 replica_heartbeat 写入当前时间戳，再从各从库读回，延迟 = 当前时间 - 从库上的时间戳
+ * 估算值最多偏大一个心跳间隔，偏向保守；从库不可达或尚未探测时延迟视为无穷大
+ * 只使用普通 update/select，MySQL 与 H2 均可运行
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String UPDATE_SQL = "update replica_heartbeat set ts = ? where id = 1";
+    private static final String INSERT_SQL = "insert into replica_heartbeat (id, ts) values (1, ?)";
+    private static final String SELECT_SQL = "select ts from replica_heartbeat where id = 1";
+    private static final int QUERY_TIMEOUT_SECONDS = 1;
+
+    private final DataSource primary;
+    private final List<DruidDataSource> replicas;
+    private final AtomicLongArray lagMillis;
+
+    public ReplicaLagMonitor(DataSource primary, List<DruidDataSource> replicas) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.lagMillis = new AtomicLongArray(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            lagMillis.set(i, Long.MAX_VALUE);
+        }
+    }
+
+    public void heartbeat() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        try {
+            writeHeartbeat(System.currentTimeMillis());
+        } catch (SQLException e) {
+            // 主库写失败不影响探测，从库上的时间戳不再前进，延迟自然变大
+            log.warn("写入复制心跳失败", e);
+        }
+        for (int i = 0; i < replicas.size(); i++) {
+            lagMillis.set(i, probe(replicas.get(i)));
+        }
+    }
+
+    /**
+     * 第 index 个从库的复制延迟毫秒数
+     */
+    public long getLagMillis(int index) {
+        return lagMillis.get(index);
+    }
+
+    /**
+     * 从库连接失败时立即标记为不可用，等待下一次探测恢复
+     */
+    public void markUnavailable(int index) {
+        lagMillis.set(index, Long.MAX_VALUE);
+    }
+
+    public List<DruidDataSource> getReplicas() {
+        return replicas;
+    }
+
+    private void writeHeartbeat(long now) throws SQLException {
+        try (Connection conn = primary.getConnection()) {
+            int updated;
+            try (PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+                ps.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+                ps.setLong(1, now);
+                updated = ps.executeUpdate();
+            }
+            if (updated == 0) {
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+                    ps.setLong(1, now);
+                    ps.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private long probe(DruidDataSource replica) {
+        try (Connection conn = replica.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_SQL)) {
+            ps.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return Long.MAX_VALUE;
+                }
+                return Math.max(0, System.currentTimeMillis() - rs.getLong(1));
+            }
+        } catch (SQLException e) {
+            log.warn("探测从库复制延迟失败 replica={}", replica.getName(), e);
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.company.project.datasource;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.company.project.core.LatencyHistogram;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按 {@link PoolRole} 路由到独立连接池的数据源
+ * 回查风暴只会耗尽回查池，不影响消费者入账；同时记录各池获取连接的等待时间
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    private final Map<PoolRole, DruidDataSource> pools;
+    private final Map<PoolRole, LatencyHistogram> waitMicros = new EnumMap<>(PoolRole.class);
+
+    public RoutingDataSource(Map<PoolRole, DruidDataSource> pools) {
+        this.pools = Collections.unmodifiableMap(new EnumMap<>(pools));
+        Map<Object, Object> targets = new HashMap<>();
+        for (Map.Entry<PoolRole, DruidDataSource> entry : pools.entrySet()) {
+            targets.put(entry.getKey(), entry.getValue());
+            waitMicros.put(entry.getKey(), new LatencyHistogram());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(pools.get(PoolRole.DEFAULT));
+        setLenientFallback(true);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return DataSourceContext.getRole();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        PoolRole role = DataSourceContext.getRole();
+        long start = System.nanoTime();
+        try {
+            return super.getConnection();
+        } finally {
+            LatencyHistogram histogram = waitMicros.get(role);
+            if (histogram != null) {
+                histogram.record((System.nanoTime() - start) / 1000);
+            }
+        }
+    }
+
+    public Map<PoolRole, DruidDataSource> getPools() {
+        return pools;
+    }
+
+    /**
+     * 获取连接等待时间（微秒）
+     */
+    public LatencyHistogram getWaitHistogram(PoolRole role) {
+        return waitMicros.get(role);
+    }
+
+    public void close() {
+        for (DruidDataSource pool : pools.values()) {
+            pool.close();
+        }
+    }
+}
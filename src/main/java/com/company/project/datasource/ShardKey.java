@@ -0,0 +1,19 @@
+package com.company.project.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注分片键参数（用户id），方法执行前按该用户所在分片切换数据源
+ * - 参数类型为 Long/Integer 等数字类型，值为 null 时不切换
+ * - 事务开始时即确定分片，同一事务内访问其他分片会直接报错，不会静默读写错库
+ * - 不带用户id的全分片查询使用 {@link DataSourceContext#callOnShard(int, java.util.function.Supplier)} 逐个分片执行
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ShardKey {
+}
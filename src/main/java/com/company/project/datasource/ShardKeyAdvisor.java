@@ -0,0 +1,69 @@
+package com.company.project.datasource;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.Ordered;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ShardKey} 切面，按分片键参数切换分片
+ * 注解可以标在实现类或接口方法的参数上；优先级最高，保证在事务拦截器获取连接之前切换
+ */
+public class ShardKeyAdvisor extends StaticMethodMatcherPointcutAdvisor {
+
+    private static final int NONE = -1;
+
+    private final ShardRouter shardRouter;
+    private final ConcurrentHashMap<MethodClassKey, Integer> keyIndexes = new ConcurrentHashMap<>();
+
+    public ShardKeyAdvisor(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+        setOrder(Ordered.HIGHEST_PRECEDENCE);
+        setAdvice((MethodInterceptor) this::invoke);
+    }
+
+    @Override
+    public boolean matches(Method method, Class<?> targetClass) {
+        return keyIndex(method, targetClass) != NONE;
+    }
+
+    private Object invoke(MethodInvocation invocation) throws Throwable {
+        Class<?> targetClass = invocation.getThis() != null ? AopUtils.getTargetClass(invocation.getThis()) : null;
+        int index = keyIndex(invocation.getMethod(), targetClass);
+        Object key = index != NONE ? invocation.getArguments()[index] : null;
+        if (!(key instanceof Number)) {
+            return invocation.proceed();
+        }
+        Integer previous = DataSourceContext.switchShard(shardRouter.shardOf(((Number) key).longValue()));
+        try {
+            return invocation.proceed();
+        } finally {
+            DataSourceContext.restoreShard(previous);
+        }
+    }
+
+    private int keyIndex(Method method, Class<?> targetClass) {
+        return keyIndexes.computeIfAbsent(new MethodClassKey(method, targetClass), key -> {
+            int index = findKeyIndex(AopUtils.getMostSpecificMethod(method, targetClass));
+            return index != NONE ? index : findKeyIndex(method);
+        });
+    }
+
+    private static int findKeyIndex(Method method) {
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        for (int i = 0; i < parameterAnnotations.length; i++) {
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation instanceof ShardKey) {
+                    return i;
+                }
+            }
+        }
+        return NONE;
+    }
+}
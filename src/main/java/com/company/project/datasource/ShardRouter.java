@@ -0,0 +1,71 @@
+package com.company.project.datasource;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 按用户id分片的一致性哈希环
+ * 每个分片按名称生成 virtualNodes 个虚拟节点，新增或移除一个分片时只有约 1/N 的用户需要迁移；
+ * 分片名称是哈希环的输入，上线后不能修改，只能增删
+ */
+public class ShardRouter {
+
+    private static final HashFunction HASH = Hashing.murmur3_32();
+
+    private final List<String> shardNames;
+    private final TreeMap<Integer, Integer> ring = new TreeMap<>();
+
+    /**
+     * @param shardNames   分片名称，下标即分片序号
+     * @param virtualNodes 每个分片的虚拟节点数
+     */
+    public ShardRouter(List<String> shardNames, int virtualNodes) {
+        if (shardNames.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个分片");
+        }
+        this.shardNames = Collections.unmodifiableList(new ArrayList<>(shardNames));
+        for (int shard = 0; shard < shardNames.size(); shard++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                int hash = HASH.hashString(shardNames.get(shard) + "#" + v, StandardCharsets.UTF_8).asInt();
+                Integer existing = ring.putIfAbsent(hash, shard);
+                if (existing != null && shardNames.get(existing).compareTo(shardNames.get(shard)) > 0) {
+                    // 极少数虚拟节点哈希冲突时按名称决定归属，保证与分片顺序无关
+                    ring.put(hash, shard);
+                }
+            }
+        }
+    }
+
+    /**
+     * 用户所在分片序号
+     */
+    public int shardOf(long userId) {
+        if (shardNames.size() == 1) {
+            return 0;
+        }
+        Map.Entry<Integer, Integer> entry = ring.ceilingEntry(HASH.hashLong(userId).asInt());
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * 用户所在分片名称
+     */
+    public String shardNameOf(long userId) {
+        return shardNames.get(shardOf(userId));
+    }
+
+    public int getShardCount() {
+        return shardNames.size();
+    }
+
+    public List<String> getShardNames() {
+        return shardNames;
+    }
+}
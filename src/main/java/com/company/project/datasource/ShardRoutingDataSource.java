@@ -0,0 +1,80 @@
+package com.company.project.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按 {@link DataSourceContext#getShard()} 路由到各分片的数据源
+ * 每个分片内部再按读写分离（{@link ReadWriteRoutingDataSource}）与调用方分池（{@link RoutingDataSource}）路由
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final List<String> shardNames;
+    private final List<RoutingDataSource> primaries;
+    private final List<ReadWriteRoutingDataSource> shards;
+
+    public ShardRoutingDataSource(List<String> shardNames, List<RoutingDataSource> primaries,
+                                  List<ReadWriteRoutingDataSource> shards) {
+        this.shardNames = Collections.unmodifiableList(new ArrayList<>(shardNames));
+        this.primaries = Collections.unmodifiableList(new ArrayList<>(primaries));
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        // 分片序号不存在时直接报错，不回落到默认分片
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return DataSourceContext.getShard();
+    }
+
+    /**
+     * 各分片从库复制心跳
+     */
+    @Scheduled(fixedDelayString = "${datasource-pool.replica.heartbeat-interval-millis:200}")
+    public void heartbeat() {
+        for (ReadWriteRoutingDataSource shard : shards) {
+            shard.getLagMonitor().heartbeat();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public List<String> getShardNames() {
+        return shardNames;
+    }
+
+    /**
+     * 各分片主库（按调用方分池）
+     */
+    public List<RoutingDataSource> getPrimaries() {
+        return primaries;
+    }
+
+    /**
+     * 各分片读写分离数据源
+     */
+    public List<ReadWriteRoutingDataSource> getShards() {
+        return shards;
+    }
+
+    public void close() {
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).close();
+            primaries.get(i).close();
+        }
+    }
+}
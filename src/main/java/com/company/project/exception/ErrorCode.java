@@ -10,7 +10,8 @@ public enum ErrorCode  implements IErrorCode{
     LOG_OUT(1000, "用户未登录或登录超时"),
     PARAMS_REQUIRED(1001, "必填参数不能为空"),
     RESULT_EMPTY(1002, "数据为空"),
-    RESULT_ERROR(1003, "操作失败,请联系客服");
+    RESULT_ERROR(1003, "操作失败,请联系客服"),
+    TOO_MANY_REQUESTS(1004, "请求过于频繁，请稍后重试");
 
     private Integer errorCode;
 
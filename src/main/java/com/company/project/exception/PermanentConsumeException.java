@@ -0,0 +1,17 @@
+package com.company.project.exception;
+
+/**
+ * 不可重试的消费失败，如消息体无法解析、参数非法、收款用户不存在
+ * 重新投递也不会成功，消费者直接隔离，不再占用重试
+ */
+public class PermanentConsumeException extends BizException {
+
+    public PermanentConsumeException(String message) {
+        super(message);
+    }
+
+    public PermanentConsumeException(String message, Throwable cause) {
+        super(message);
+        initCause(cause);
+    }
+}
@@ -0,0 +1,21 @@
+package com.company.project.isolation;
+
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.List;
+
+/**
+ * 按账户id选择队列，同一账户的消息总是进入同一个队列
+ * 与 OrderMsgProducer 一致使用 floorMod，队列数不变时映射稳定
+ */
+public class AccountQueueSelector implements MessageQueueSelector {
+
+    @Override
+    public MessageQueue select(List<MessageQueue> mqs, Message msg, Object arg) {
+        Long accountId = (Long) arg;
+        int index = Math.floorMod(Long.hashCode(accountId), mqs.size());
+        return mqs.get(index);
+    }
+}
@@ -0,0 +1,148 @@
+package com.company.project.isolation;
+
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListener;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerOrderly;
+import org.apache.rocketmq.common.message.MessageExt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 按 {@link ConsumeStrategy} 把单条消息的处理逻辑包装成 RocketMQ 监听器
+ * 处理逻辑返回 false 表示需要重试：
+ * - 并发消费只确认失败消息之前的部分（ackIndex），其余消息按 {@link RetryBackoff} 的延迟级别发回重试
+ * - 顺序消费按退避时长暂停当前队列
+ * 处理逻辑需要幂等
+ */
+public class ConsumeEngine {
+
+    private final ConsumeStrategy strategy;
+    private final Function<MessageExt, String> keyExtractor;
+    private final Predicate<MessageExt> handler;
+    private final PerKeySerialExecutor perKeyExecutor;
+    private final RetryBackoff retryBackoff;
+
+    /**
+     * @param serialThreads PER_KEY_SERIAL 策略的串行执行线程数
+     * @param keyExtractor  PER_KEY_SERIAL 策略的串行 key，返回 null 时在消费线程上直接处理
+     * @param handler       单条消息处理逻辑，返回 false 表示需要重试
+     */
+    public ConsumeEngine(ConsumeStrategy strategy, int serialThreads, RetryBackoff retryBackoff,
+                         Function<MessageExt, String> keyExtractor, Predicate<MessageExt> handler) {
+        this.strategy = strategy;
+        this.retryBackoff = retryBackoff;
+        this.keyExtractor = keyExtractor;
+        this.handler = handler;
+        this.perKeyExecutor = strategy == ConsumeStrategy.PER_KEY_SERIAL
+                ? new PerKeySerialExecutor(serialThreads, "per-key-consume-") : null;
+    }
+
+    public MessageListener createListener() {
+        switch (strategy) {
+            case ORDERLY:
+                return new MessageListenerOrderly() {
+                    @Override
+                    public ConsumeOrderlyStatus consumeMessage(List<MessageExt> msgs, ConsumeOrderlyContext context) {
+                        context.setAutoCommit(true);
+                        int failed = consumeInline(msgs);
+                        if (failed < 0) {
+                            return ConsumeOrderlyStatus.SUCCESS;
+                        }
+                        context.setSuspendCurrentQueueTimeMillis(retryBackoff.suspendMillis(msgs.get(failed).getReconsumeTimes()));
+                        return ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT;
+                    }
+                };
+            case PER_KEY_SERIAL:
+                return new MessageListenerConcurrently() {
+                    @Override
+                    public ConsumeConcurrentlyStatus consumeMessage(List<MessageExt> msgs, ConsumeConcurrentlyContext context) {
+                        return ackUntil(msgs, consumePerKey(msgs), context);
+                    }
+                };
+            default:
+                return new MessageListenerConcurrently() {
+                    @Override
+                    public ConsumeConcurrentlyStatus consumeMessage(List<MessageExt> msgs, ConsumeConcurrentlyContext context) {
+                        return ackUntil(msgs, consumeInline(msgs), context);
+                    }
+                };
+        }
+    }
+
+    /**
+     * 确认失败消息之前的部分，失败消息及其后的消息按失败消息的重试次数退避后重新投递
+     */
+    private ConsumeConcurrentlyStatus ackUntil(List<MessageExt> msgs, int failed, ConsumeConcurrentlyContext context) {
+        if (failed >= 0) {
+            context.setAckIndex(failed - 1);
+            context.setDelayLevelWhenNextConsume(retryBackoff.delayLevel(msgs.get(failed).getReconsumeTimes()));
+        }
+        return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+    }
+
+    /**
+     * 在当前线程上逐条处理，遇到失败立即停止
+     *
+     * @return 第一条失败消息的下标，全部成功返回 -1
+     */
+    public int consumeInline(List<MessageExt> msgs) {
+        for (int i = 0; i < msgs.size(); i++) {
+            if (!handler.test(msgs.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按 key 提交到串行执行器，等待本批全部处理完再返回，保证确认消费时消息已经处理
+     * 失败消息之后已成功的消息也会随之重新投递，由处理逻辑的幂等保证不重复入账
+     *
+     * @return 第一条失败消息的下标，全部成功返回 -1
+     */
+    public int consumePerKey(List<MessageExt> msgs) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(msgs.size());
+        for (MessageExt msg : msgs) {
+            String key = keyExtractor.apply(msg);
+            if (key == null) {
+                results.add(CompletableFuture.completedFuture(handler.test(msg)));
+            } else {
+                results.add(perKeyExecutor.submit(key, () -> handler.test(msg)));
+            }
+        }
+        int failed = -1;
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.get(i).exceptionally(t -> false).join() && failed < 0) {
+                failed = i;
+            }
+        }
+        return failed;
+    }
+
+    public ConsumeStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * 清理没有待处理消息的 key，可定时调用
+     */
+    public void cleanupIdleKeys() {
+        if (perKeyExecutor != null) {
+            perKeyExecutor.cleanupIdleKeys();
+        }
+    }
+
+    public void shutdown() {
+        if (perKeyExecutor != null) {
+            perKeyExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.company.project.isolation;
+
+/**
+ * 消费策略
+ */
+public enum ConsumeStrategy {
+
+    /**
+     * MessageListenerConcurrently，消息在消费线程池上并发处理，不保证任何顺序
+     */
+    CONCURRENT,
+
+    /**
+     * MessageListenerOrderly，同一队列同一时刻只有一个线程处理，
+     * 配合生产者按账户选择队列可保证同一账户有序，并发度上限为分配到的队列数
+     */
+    ORDERLY,
+
+    /**
+     * MessageListenerConcurrently 拉取分发，再按消息 key 交给 PerKeySerialExecutor，
+     * 同一 key 串行、不同 key 并行，并发度不受队列数限制
+     */
+    PER_KEY_SERIAL
+}
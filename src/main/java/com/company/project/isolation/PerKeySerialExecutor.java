@@ -4,8 +4,11 @@ import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -59,7 +62,7 @@ public class PerKeySerialExecutor {
     }
 
     private final Map<String, SerialQueue> keyToQueue = new ConcurrentHashMap<>();
-    private final Executor sharedPool;
+    private final ExecutorService sharedPool;
 
     public PerKeySerialExecutor(int parallelism, String threadNamePrefix) {
         this.sharedPool = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
@@ -77,14 +80,47 @@ public class PerKeySerialExecutor {
     public void execute(String key, Runnable task) {
         Objects.requireNonNull(key, "key must not be null");
         Objects.requireNonNull(task, "task must not be null");
-        SerialQueue queue = keyToQueue.computeIfAbsent(key, k -> new SerialQueue(sharedPool));
-        queue.execute(task);
+        // 入队与清理都在 compute 中完成，清理不会移除刚拿到还未入队的队列，避免同一 key 同时存在两个队列
+        keyToQueue.compute(key, (k, queue) -> {
+            SerialQueue target = queue != null ? queue : new SerialQueue(sharedPool);
+            target.execute(task);
+            return target;
+        });
+    }
+
+    /**
+     * 提交有返回值的任务，调用方可等待同一批任务全部完成后再确认消费
+     */
+    public <T> CompletableFuture<T> submit(String key, Callable<T> task) {
+        Objects.requireNonNull(task, "task must not be null");
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(key, () -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
     }
 
     /**
      * 清理空队列，避免 key 无限增长（可定时调用）。
      */
     public void cleanupIdleKeys() {
-        keyToQueue.entrySet().removeIf(e -> e.getValue().isEmpty());
+        for (String key : keyToQueue.keySet()) {
+            keyToQueue.computeIfPresent(key, (k, queue) -> queue.isEmpty() ? null : queue);
+        }
+    }
+
+    public int getKeyCount() {
+        return keyToQueue.size();
+    }
+
+    /**
+     * 停止接收新任务，已提交的任务继续执行完
+     */
+    public void shutdown() {
+        sharedPool.shutdown();
     }
 }
@@ -0,0 +1,39 @@
+package com.company.project.isolation;
+
+import java.util.List;
+
+/**
+ * 按已重试次数计算下一次重试的退避
+ * - 并发消费：使用 broker 延迟级别（1s 5s 10s 30s 1m 2m 3m 4m 5m 6m 7m 8m 9m 10m 20m 30m 1h 2h 对应 1~18）
+ * - 顺序消费：暂停当前队列，时长从 base 开始每次翻倍，不超过 max
+ */
+public class RetryBackoff {
+
+    private final int[] delayLevels;
+    private final long baseSuspendMillis;
+    private final long maxSuspendMillis;
+
+    /**
+     * @param delayLevels 第 n 次重试使用第 n 个延迟级别，超出后一直使用最后一个
+     */
+    public RetryBackoff(List<Integer> delayLevels, long baseSuspendMillis, long maxSuspendMillis) {
+        this.delayLevels = delayLevels.stream().mapToInt(Integer::intValue).toArray();
+        this.baseSuspendMillis = baseSuspendMillis;
+        this.maxSuspendMillis = maxSuspendMillis;
+    }
+
+    /**
+     * @return broker 延迟级别，0 表示交给 broker 按重试次数决定
+     */
+    public int delayLevel(int reconsumeTimes) {
+        if (delayLevels.length == 0) {
+            return 0;
+        }
+        return delayLevels[Math.min(reconsumeTimes, delayLevels.length - 1)];
+    }
+
+    public long suspendMillis(int reconsumeTimes) {
+        int shift = Math.min(Math.max(reconsumeTimes, 0), 20);
+        return Math.min(maxSuspendMillis, baseSuspendMillis << shift);
+    }
+}
@@ -5,6 +5,10 @@ CREATE TABLE `user` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 
+-- 转账记录按月 RANGE 分区，分区键为 create_time
+-- 分区表的主键/唯一键必须包含分区键，create_time 由生产者在构造消息时确定并随消息体透传，
+-- 同一条消息重复执行本地事务时 (record_no, create_time) 不变，唯一键仍然可以去重
+-- 未来分区与过期分区由 TransferRecordArchiver 定时维护，pmax 仅作为兜底
 CREATE TABLE `transfer_record` (
   `id` bigint(20) NOT NULL AUTO_INCREMENT,
   `from_user_id` bigint(20) NOT NULL COMMENT '转账人id',
@@ -12,9 +16,101 @@ CREATE TABLE `transfer_record` (
   `transaction_id` varchar(128) NOT NULL COMMENT '消息事务id',
   `to_user_id` bigint(20) NOT NULL COMMENT '被转账人id',
   `record_no` varchar(64) NOT NULL COMMENT '转账流水编号',
+  `create_time` datetime(3) NOT NULL COMMENT '创建时间（分区键）',
+  PRIMARY KEY (`id`, `create_time`),
+  UNIQUE KEY `idx_record_no` (`record_no`, `create_time`) USING BTREE,
+  KEY `idx_transaction_id` (`transaction_id`, `create_time`) USING BTREE,
+  KEY `idx_from_user_id` (`from_user_id`, `id`) USING BTREE,
+  KEY `idx_to_user_id` (`to_user_id`, `id`) USING BTREE
+) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8mb4
+PARTITION BY RANGE COLUMNS(`create_time`) (
+  PARTITION p202609 VALUES LESS THAN ('2026-10-01'),
+  PARTITION p202610 VALUES LESS THAN ('2026-11-01'),
+  PARTITION p202611 VALUES LESS THAN ('2026-12-01'),
+  PARTITION p202612 VALUES LESS THAN ('2027-01-01'),
+  PARTITION pmax VALUES LESS THAN (MAXVALUE)
+);
+
+-- 已有未分区的 transfer_record 升级方式（历史数据 create_time 以迁移时间兜底）：
+-- ALTER TABLE `transfer_record`
+--   ADD COLUMN `create_time` datetime(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '创建时间（分区键）',
+--   DROP PRIMARY KEY, ADD PRIMARY KEY (`id`, `create_time`),
+--   DROP INDEX `idx_record_no`, ADD UNIQUE KEY `idx_record_no` (`record_no`, `create_time`),
+--   ADD KEY `idx_transaction_id` (`transaction_id`, `create_time`),
+--   ADD KEY `idx_from_user_id` (`from_user_id`, `id`),
+--   ADD KEY `idx_to_user_id` (`to_user_id`, `id`);
+-- ALTER TABLE `transfer_record` PARTITION BY RANGE COLUMNS(`create_time`) (
+--   PARTITION p202610 VALUES LESS THAN ('2026-11-01'),
+--   PARTITION pmax VALUES LESS THAN (MAXVALUE)
+-- );
+
+-- 复制延迟心跳表，应用定时在主库写入当前毫秒时间戳，从库读回计算延迟（见 ReplicaLagMonitor）
+CREATE TABLE `replica_heartbeat` (
+  `id` int(11) NOT NULL,
+  `ts` bigint(20) NOT NULL COMMENT '写入时的毫秒时间戳',
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+INSERT INTO `replica_heartbeat`(`id`, `ts`) VALUES (1, 0);
+
+-- 本地消息表，OUTBOX 投递方式下与扣钱在同一事务中写入，每个分片各一张，由 OutboxRelay 轮询发送
+CREATE TABLE `transfer_outbox` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `message_key` varchar(64) NOT NULL COMMENT '消息key（转账流水号或批次号）',
+  `transfer_type` varchar(32) DEFAULT NULL COMMENT '转账类型，批量转账为 BATCH',
+  `account_key` varchar(32) DEFAULT NULL COMMENT '收款账户，按账户选择队列时使用',
+  `body` mediumtext NOT NULL COMMENT '消息体',
+  `status` tinyint(4) NOT NULL DEFAULT '0' COMMENT '0 待发送 1 已发送',
+  `create_time` datetime(3) NOT NULL COMMENT '创建时间',
+  `shipped_time` datetime(3) DEFAULT NULL COMMENT '发送时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_status_id` (`status`, `id`) USING BTREE,
+  KEY `idx_shipped_time` (`shipped_time`) USING BTREE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 本地消息表中继租约，每个分片一行，持有未过期租约的实例是该分片唯一的中继，保证同一账户的消息按 id 顺序发送
+CREATE TABLE `transfer_outbox_lease` (
+  `id` int(11) NOT NULL,
+  `owner` varchar(128) NOT NULL DEFAULT '' COMMENT '持有租约的中继实例',
+  `lease_until` datetime(3) NOT NULL COMMENT '租约到期时间',
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+INSERT INTO `transfer_outbox_lease`(`id`, `owner`, `lease_until`) VALUES (1, '', '1970-01-01 00:00:01');
+
+-- 入账流水表，消费端入账时与加钱在同一事务中写入，record_no 唯一键保证同一笔转账只入账一次
+-- 建在收款人所在分片，可按 create_time 定期清理超过消息最长重投时间（含人工重放）的流水
+CREATE TABLE `transfer_credit` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `record_no` varchar(64) NOT NULL COMMENT '转账流水编号',
+  `to_user_id` bigint(20) NOT NULL COMMENT '收款人id',
+  `change_money` bigint(20) NOT NULL COMMENT '入账金额',
+  `create_time` datetime(3) NOT NULL COMMENT '入账时间',
   PRIMARY KEY (`id`),
-  UNIQUE KEY `idx_record_no` (`record_no`) USING BTREE
-) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8mb4;
+  UNIQUE KEY `idx_record_no` (`record_no`) USING BTREE,
+  KEY `idx_to_user_id` (`to_user_id`, `id`) USING BTREE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 消费失败隔离表，不可重试或重试耗尽的消息写入此表，修复数据后人工重放；只建在第一个分片
+CREATE TABLE `transfer_quarantine` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `msg_id` varchar(128) NOT NULL COMMENT '消息id',
+  `topic` varchar(255) NOT NULL COMMENT '消息主题',
+  `msg_keys` varchar(255) DEFAULT NULL COMMENT '消息key（转账流水号或批次号）',
+  `transfer_type` varchar(32) DEFAULT NULL COMMENT '转账类型，批量转账为 BATCH',
+  `reconsume_times` int(11) NOT NULL COMMENT '隔离前已重试次数',
+  `reason` varchar(512) NOT NULL COMMENT '隔离原因',
+  `body` mediumtext NOT NULL COMMENT '消息体',
+  `create_time` datetime(3) NOT NULL COMMENT '隔离时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_msg_id` (`msg_id`) USING BTREE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 按用户分片时每个分片执行本脚本，转账记录跨分片合并查询按 id 排序，各分片自增 id 不能重叠：
+-- 分片实例上设置 auto_increment_increment 为分片数上限、auto_increment_offset 为分片序号 + 1，例如
+-- SET GLOBAL auto_increment_increment = 64; SET GLOBAL auto_increment_offset = 1; -- shard-0
+-- SET GLOBAL auto_increment_increment = 64; SET GLOBAL auto_increment_offset = 2; -- shard-1
+-- 迁移用户时 ShardMigrator 保留原 id 写入新分片
 
 INSERT INTO `user`(`id`, `money`) VALUES (1, 100);
-INSERT INTO `user`(`id`, `money`) VALUES (2, 0);
\ No newline at end of file
+INSERT INTO `user`(`id`, `money`) VALUES (2, 0);
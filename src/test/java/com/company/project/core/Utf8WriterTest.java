@@ -0,0 +1,109 @@
+package com.company.project.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * {@link StreamingFastJsonHttpMessageConverter.Utf8Writer} 的编码结果与 String#getBytes(UTF_8) 逐字节一致：
+ * 代理对、不成对的代理字符（替换为 '?'）、代理对被拆到两次 write 调用中，以及在 8KB 字节缓冲写满处刷出
+ */
+public class Utf8WriterTest {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Test
+    public void encodesBmpCharacters() throws IOException {
+        assertSameAsGetBytes("{\"code\":0,\"msg\":\"转账成功\",\"data\":\"é ñ ü € ¥\"}");
+    }
+
+    @Test
+    public void encodesSurrogatePairs() throws IOException {
+        assertSameAsGetBytes("a😀b💰𠀀");
+    }
+
+    @Test
+    public void replacesLoneSurrogates() throws IOException {
+        assertSameAsGetBytes("\uDE00");
+        assertSameAsGetBytes("a\uDE00b");
+        assertSameAsGetBytes("a\uD83Db");
+        assertSameAsGetBytes("\uD83D😀");
+        assertSameAsGetBytes("\uD83D\uD83D");
+        assertSameAsGetBytes("end\uD83D");
+    }
+
+    /**
+     * 多字节字符与代理对落在缓冲写满、触发刷出的位置前后
+     */
+    @Test
+    public void flushesAtBufferBoundary() throws IOException {
+        for (int prefix = BUFFER_SIZE - 8; prefix <= BUFFER_SIZE + 4; prefix++) {
+            String ascii = repeat('x', prefix);
+            assertSameAsGetBytes(ascii + "😀tail");
+            assertSameAsGetBytes(ascii + "转账é😀");
+            assertSameAsGetBytes(ascii + "\uD83D");
+            assertSameAsGetBytes(ascii + "\uD83Dx");
+        }
+        assertSameAsGetBytes(repeat('转', BUFFER_SIZE));
+        assertSameAsGetBytes(repeat('x', BUFFER_SIZE * 3));
+    }
+
+    /**
+     * 随机文本按随机长度分多次写入，代理对可能被拆到两次调用中
+     */
+    @Test
+    public void encodesAcrossWriteCalls() throws IOException {
+        Random random = new Random(42);
+        char[] alphabet = {'a', '"', 'é', '转', '\uD83D', '\uDE00', '\uD840', '\uDC00'};
+        for (int round = 0; round < 200; round++) {
+            char[] chars = new char[random.nextInt(BUFFER_SIZE * 2)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String text = new String(chars);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            StreamingFastJsonHttpMessageConverter.Utf8Writer writer = new StreamingFastJsonHttpMessageConverter.Utf8Writer(out);
+            int pos = 0;
+            while (pos < text.length()) {
+                int len = Math.min(text.length() - pos, random.nextInt(64) + 1);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        writer.write(text, pos, len);
+                        break;
+                    case 1:
+                        writer.write(chars, pos, len);
+                        break;
+                    default:
+                        writer.write(text.charAt(pos));
+                        len = 1;
+                }
+                pos += len;
+            }
+            writer.close();
+            assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+        }
+    }
+
+    /**
+     * 每次新建 Utf8Writer 复用同一个线程缓冲，依次写出的结果互不影响
+     */
+    private static void assertSameAsGetBytes(String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingFastJsonHttpMessageConverter.Utf8Writer writer = new StreamingFastJsonHttpMessageConverter.Utf8Writer(out);
+        writer.write(text);
+        writer.close();
+        assertArrayEquals(text, text.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,208 @@
+package com.company.project.datasource;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.sql.SQLException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 读写分离路由：两个 H2 内存库分别充当主库与从库，互不复制，各自的 marker 表标明身份，手工拷贝心跳模拟复制进度
+ * 服务经与应用相同的 {@link ReadReplicaAdvisor} 与事务拦截器代理，校验：
+ * - 从库延迟在容忍范围内时 @ReadReplica 读与只读事务走从库
+ * - 写、未标注的读与读写事务内的读走主库
+ * - 从库心跳未知、落后超过 maxLagMillis 或连接失败时回到主库
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+    private static final long MAX_LAG_MILLIS = 1000;
+
+    private DruidDataSource primary;
+    private DruidDataSource replica;
+    private ReplicaLagMonitor monitor;
+    private ReadWriteRoutingDataSource routing;
+    private MarkerQueries queries;
+
+    @Before
+    public void setUp() throws SQLException {
+        primary = createPool("primary");
+        replica = createPool("replica");
+        initSchema(primary, "primary");
+        initSchema(replica, "replica");
+        monitor = new ReplicaLagMonitor(primary, Collections.singletonList(replica));
+        routing = new ReadWriteRoutingDataSource(primary, Collections.singletonList(replica), monitor);
+
+        JdbcMarkerQueries target = new JdbcMarkerQueries(new JdbcTemplate(routing));
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.addAdvisor(new ReadReplicaAdvisor(MAX_LAG_MILLIS));
+        factory.addAdvice(new TransactionInterceptor(new DataSourceTransactionManager(routing),
+                new AnnotationTransactionAttributeSource()));
+        queries = (MarkerQueries) factory.getProxy();
+        target.self = queries;
+    }
+
+    @After
+    public void tearDown() {
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    public void readReplicaReadsGoToCaughtUpReplica() {
+        replicate(0);
+        assertEquals("replica", queries.replicaRead());
+        assertEquals("replica", queries.readOnlyTransactionRead());
+        assertEquals(2, routing.getReplicaRoutes());
+        assertEquals(0, routing.getFallbackRoutes());
+    }
+
+    @Test
+    public void writesAndPlainReadsGoToPrimary() {
+        replicate(0);
+        queries.write("w1");
+        assertEquals("primary", queries.primaryRead());
+        assertEquals(1, countNotes(primary));
+        assertEquals(0, countNotes(replica));
+        assertEquals(0, routing.getReplicaRoutes());
+    }
+
+    @Test
+    public void readsInReadWriteTransactionStayOnPrimary() {
+        replicate(0);
+        assertEquals("primary", queries.writeThenReplicaRead("w2"));
+        assertEquals(1, countNotes(primary));
+        assertEquals(0, routing.getReplicaRoutes());
+    }
+
+    @Test
+    public void fallsBackToPrimaryWhenReplicaLagUnknown() {
+        monitor.heartbeat();
+        assertEquals("primary", queries.replicaRead());
+        assertEquals(1, routing.getFallbackRoutes());
+    }
+
+    @Test
+    public void fallsBackToPrimaryWhenReplicaLagged() {
+        replicate(5000);
+        assertEquals("primary", queries.replicaRead());
+        assertEquals(1, routing.getFallbackRoutes());
+    }
+
+    @Test
+    public void fallsBackToPrimaryWhenReplicaUnavailable() {
+        replicate(0);
+        replica.close();
+        assertEquals("primary", queries.replicaRead());
+        assertEquals(1, routing.getFallbackRoutes());
+        assertEquals(Long.MAX_VALUE, monitor.getLagMillis(0));
+    }
+
+    /**
+     * 把主库心跳拷贝到从库再探测一次，lagMillis 为人为叠加的落后时间
+     */
+    private void replicate(long lagMillis) {
+        monitor.heartbeat();
+        long ts = new JdbcTemplate(primary).queryForObject("select ts from replica_heartbeat where id = 1", Long.class);
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.update("delete from replica_heartbeat");
+        replicaJdbc.update("insert into replica_heartbeat (id, ts) values (1, ?)", ts - lagMillis);
+        monitor.heartbeat();
+    }
+
+    private static int countNotes(DruidDataSource dataSource) {
+        return new JdbcTemplate(dataSource).queryForObject("select count(1) from note", Integer.class);
+    }
+
+    private static void initSchema(DruidDataSource dataSource, String name) {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("drop table if exists marker");
+        jdbc.execute("drop table if exists note");
+        jdbc.execute("drop table if exists replica_heartbeat");
+        jdbc.execute("create table marker (name varchar(16) not null)");
+        jdbc.execute("create table note (name varchar(16) not null)");
+        jdbc.execute("create table replica_heartbeat (id int not null primary key, ts bigint not null)");
+        jdbc.update("insert into marker (name) values (?)", name);
+    }
+
+    private static DruidDataSource createPool(String name) throws SQLException {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setName(name);
+        dataSource.setUrl("jdbc:h2:mem:routing_" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setMaxActive(4);
+        dataSource.setMaxWait(1000);
+        dataSource.init();
+        return dataSource;
+    }
+
+    public interface MarkerQueries {
+
+        String replicaRead();
+
+        String readOnlyTransactionRead();
+
+        String primaryRead();
+
+        void write(String name);
+
+        String writeThenReplicaRead(String name);
+    }
+
+    static class JdbcMarkerQueries implements MarkerQueries {
+
+        private final JdbcTemplate jdbcTemplate;
+        private MarkerQueries self;
+
+        JdbcMarkerQueries(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @Override
+        @ReadReplica
+        public String replicaRead() {
+            return marker();
+        }
+
+        @Override
+        @ReadReplica
+        @Transactional(readOnly = true)
+        public String readOnlyTransactionRead() {
+            return marker();
+        }
+
+        @Override
+        public String primaryRead() {
+            return marker();
+        }
+
+        @Override
+        public void write(String name) {
+            jdbcTemplate.update("insert into note (name) values (?)", name);
+        }
+
+        /**
+         * 读写事务中经代理调用 @ReadReplica 方法，仍使用事务绑定的主库连接
+         */
+        @Override
+        @Transactional
+        public String writeThenReplicaRead(String name) {
+            write(name);
+            return self.replicaRead();
+        }
+
+        private String marker() {
+            return jdbcTemplate.queryForObject("select name from marker", String.class);
+        }
+    }
+}
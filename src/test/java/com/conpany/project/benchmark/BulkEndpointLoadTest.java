@@ -0,0 +1,144 @@
+package com.conpany.project.benchmark;
+
+import com.company.project.core.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 批量接口压测：POST /user/balances（一次查询 batchSize 个用户）、GET /transferRecord/outgoing（一页 100 条）
+ * 与 GET /transferRecord/export（NDJSON 流式导出），统计吞吐、耗时分位、每个响应的线上字节数与被压缩的比例
+ * 线上字节数按未解压的响应体计算（HttpURLConnection 不会自动解压 gzip）
+ * <p>
+ * 分别以默认配置和 tuning profile 启动应用后各跑一次，用 label 区分输出：
+ * java ... -jar app.jar --spring.profiles.active=dev          -> -Dbulk.label=default
+ * java ... -jar app.jar --spring.profiles.active=dev,tuning   -> -Dbulk.label=tuning
+ * 账户 1~accounts 需预先存在且有转账记录：
+ * -Dbulk.baseUrl=http://localhost:8091 -Dbulk.concurrency=32 -Dbulk.durationSeconds=30 -Dbulk.accounts=10000
+ * -Dbulk.batchSize=500 -Dbulk.endpoints=balances,outgoing,export -Dbulk.gzip=true -Dbulk.keepAlive=true
+ */
+public class BulkEndpointLoadTest {
+
+    private static final String LABEL = System.getProperty("bulk.label", "default");
+    private static final String BASE_URL = System.getProperty("bulk.baseUrl", "http://localhost:8091");
+    private static final int CONCURRENCY = Integer.getInteger("bulk.concurrency", 32);
+    private static final long DURATION_SECONDS = Long.getLong("bulk.durationSeconds", 30L);
+    private static final int ACCOUNTS = Integer.getInteger("bulk.accounts", 10_000);
+    private static final int BATCH_SIZE = Integer.getInteger("bulk.batchSize", 500);
+    private static final String ENDPOINTS = System.getProperty("bulk.endpoints", "balances,outgoing,export");
+    private static final boolean GZIP = Boolean.parseBoolean(System.getProperty("bulk.gzip", "true"));
+    private static final boolean KEEP_ALIVE = Boolean.parseBoolean(System.getProperty("bulk.keepAlive", "true"));
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("bulk.timeoutMillis", 30_000);
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("http.keepAlive", String.valueOf(KEEP_ALIVE));
+        System.setProperty("http.maxConnections", String.valueOf(CONCURRENCY));
+        for (String endpoint : ENDPOINTS.split(",")) {
+            run(endpoint.trim());
+        }
+    }
+
+    private static void run(String endpoint) throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder wireBytes = new LongAdder();
+        LongAdder compressed = new LongAdder();
+        LongAdder errors = new LongAdder();
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            futures.add(clients.submit(() -> {
+                byte[] chunk = new byte[8192];
+                while (System.nanoTime() < deadline) {
+                    long begin = System.nanoTime();
+                    try {
+                        HttpURLConnection conn = open(endpoint);
+                        int status = conn.getResponseCode();
+                        long bytes = 0;
+                        try (InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+                            // 读完响应体，连接才能回到长连接池复用
+                            int read;
+                            while (in != null && (read = in.read(chunk)) != -1) {
+                                bytes += read;
+                            }
+                        }
+                        if (status >= 400) {
+                            errors.increment();
+                            continue;
+                        }
+                        latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin));
+                        wireBytes.add(bytes);
+                        if ("gzip".equals(conn.getContentEncoding())) {
+                            compressed.increment();
+                        }
+                    } catch (IOException e) {
+                        errors.increment();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        long count = Math.max(1, snapshot.getCount());
+        System.out.printf("[%s] %-9s concurrency=%d throughput=%.0f req/s p50=%dms p99=%dms max=%dms"
+                        + " avgWireBytes=%d compressed=%.0f%% throughputMB=%.1f/s errors=%d%n",
+                LABEL, endpoint, CONCURRENCY, snapshot.getCount() * 1e9 / elapsed, snapshot.percentile(0.5) / 1000,
+                snapshot.percentile(0.99) / 1000, snapshot.getMax() / 1000, wireBytes.sum() / count,
+                compressed.sum() * 100.0 / count, wireBytes.sum() * 1e9 / elapsed / (1 << 20), errors.sum());
+    }
+
+    private static HttpURLConnection open(String endpoint) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long userId = random.nextInt(ACCOUNTS) + 1;
+        HttpURLConnection conn;
+        switch (endpoint) {
+            case "balances":
+                conn = connect("/user/balances");
+                conn.setRequestMethod("POST");
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/json;charset=UTF-8");
+                StringBuilder body = new StringBuilder("[");
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    body.append(i == 0 ? "" : ",").append(random.nextInt(ACCOUNTS) + 1);
+                }
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(body.append(']').toString().getBytes(StandardCharsets.UTF_8));
+                }
+                return conn;
+            case "outgoing":
+                return connect("/transferRecord/outgoing?size=100&userId=" + userId);
+            case "export":
+                return connect("/transferRecord/export?direction=outgoing&userId=" + userId);
+            default:
+                throw new IllegalArgumentException("未知接口 " + endpoint + "，可选 balances,outgoing,export");
+        }
+    }
+
+    private static HttpURLConnection connect(String path) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(BASE_URL + path).openConnection();
+        conn.setConnectTimeout(TIMEOUT_MILLIS);
+        conn.setReadTimeout(TIMEOUT_MILLIS);
+        if (GZIP) {
+            conn.setRequestProperty("Accept-Encoding", "gzip");
+        }
+        return conn;
+    }
+}
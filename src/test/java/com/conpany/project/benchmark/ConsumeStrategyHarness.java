@@ -0,0 +1,168 @@
+package com.conpany.project.benchmark;
+
+import com.company.project.core.LatencyHistogram;
+import com.company.project.core.ProjectConstant;
+import com.company.project.isolation.ConsumeEngine;
+import com.company.project.isolation.ConsumeStrategy;
+import com.company.project.isolation.RetryBackoff;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyContext;
+import org.apache.rocketmq.client.consumer.listener.MessageListener;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerOrderly;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 三种消费策略在同一批消息上的吞吐与延迟对比，不依赖 broker
+ * - 消息按 AccountQueueSelector 的规则落到各队列，部分消息集中在少数热点账户上
+ * - 并发策略模拟 RocketMQ 的消费线程池：同一队列的批次并发回调监听器；顺序策略同一队列同一时刻只有一个线程
+ * - 处理逻辑模拟入账：持有收款账户的“行锁”若干微秒，统计抢锁冲突次数与同一账户的乱序次数
+ * 延迟为所有消息同时到达后到处理完成的时间，反映积压消化速度
+ * <p>
+ * 参数通过系统属性传入：
+ * -Dbench.messages=20000 -Dbench.accounts=1000 -Dbench.hotAccounts=10 -Dbench.hotRatio=0.3
+ * -Dbench.queues=8 -Dbench.consumeThreads=20 -Dbench.serialThreads=16 -Dbench.batchSize=1 -Dbench.workMicros=200
+ */
+public class ConsumeStrategyHarness {
+
+    private static final int MESSAGES = Integer.getInteger("bench.messages", 20_000);
+    private static final int ACCOUNTS = Integer.getInteger("bench.accounts", 1000);
+    private static final int HOT_ACCOUNTS = Integer.getInteger("bench.hotAccounts", 10);
+    private static final double HOT_RATIO = Double.parseDouble(System.getProperty("bench.hotRatio", "0.3"));
+    private static final int QUEUES = Integer.getInteger("bench.queues", 8);
+    private static final int CONSUME_THREADS = Integer.getInteger("bench.consumeThreads", 20);
+    private static final int SERIAL_THREADS = Integer.getInteger("bench.serialThreads", 16);
+    private static final int BATCH_SIZE = Integer.getInteger("bench.batchSize", 1);
+    private static final long WORK_NANOS = TimeUnit.MICROSECONDS.toNanos(Long.getLong("bench.workMicros", 200L));
+
+    public static void main(String[] args) throws Exception {
+        List<List<MessageExt>> queues = workload();
+        System.out.printf("messages=%d accounts=%d hot=%d/%.0f%% queues=%d consumeThreads=%d serialThreads=%d batch=%d work=%dus%n",
+                MESSAGES, ACCOUNTS, HOT_ACCOUNTS, HOT_RATIO * 100, QUEUES, CONSUME_THREADS, SERIAL_THREADS, BATCH_SIZE,
+                TimeUnit.NANOSECONDS.toMicros(WORK_NANOS));
+        // 先跑一轮预热
+        for (ConsumeStrategy strategy : ConsumeStrategy.values()) {
+            run(strategy, queues, false);
+        }
+        for (ConsumeStrategy strategy : ConsumeStrategy.values()) {
+            run(strategy, queues, true);
+        }
+    }
+
+    private static List<List<MessageExt>> workload() {
+        Random random = new Random(42);
+        List<List<MessageExt>> queues = new ArrayList<>(QUEUES);
+        for (int i = 0; i < QUEUES; i++) {
+            queues.add(new ArrayList<>());
+        }
+        for (int i = 0; i < MESSAGES; i++) {
+            long account = random.nextDouble() < HOT_RATIO
+                    ? random.nextInt(HOT_ACCOUNTS) + 1 : random.nextInt(ACCOUNTS) + 1;
+            int queueId = Math.floorMod(Long.hashCode(account), QUEUES);
+            MessageExt msg = new MessageExt();
+            msg.setQueueId(queueId);
+            msg.setQueueOffset(i);
+            msg.setBody(new byte[0]);
+            msg.putUserProperty(ProjectConstant.ACCOUNT_KEY_PROPERTY, String.valueOf(account));
+            queues.get(queueId).add(msg);
+        }
+        return queues;
+    }
+
+    private static void run(ConsumeStrategy strategy, List<List<MessageExt>> queues, boolean report) throws Exception {
+        Map<String, ReentrantLock> rowLocks = new ConcurrentHashMap<>();
+        Map<String, Long> lastOffsets = new ConcurrentHashMap<>();
+        LongAdder contended = new LongAdder();
+        LongAdder outOfOrder = new LongAdder();
+        LatencyHistogram latency = new LatencyHistogram();
+        long start = System.nanoTime();
+
+        ConsumeEngine engine = new ConsumeEngine(strategy, SERIAL_THREADS, new RetryBackoff(Collections.emptyList(), 1000, 60000),
+                msg -> msg.getUserProperty(ProjectConstant.ACCOUNT_KEY_PROPERTY), msg -> {
+            String account = msg.getUserProperty(ProjectConstant.ACCOUNT_KEY_PROPERTY);
+            ReentrantLock lock = rowLocks.computeIfAbsent(account, key -> new ReentrantLock());
+            if (!lock.tryLock()) {
+                contended.increment();
+                lock.lock();
+            }
+            try {
+                Long last = lastOffsets.put(account, msg.getQueueOffset());
+                if (last != null && last > msg.getQueueOffset()) {
+                    outOfOrder.increment();
+                }
+                LockSupport.parkNanos(WORK_NANOS);
+            } finally {
+                lock.unlock();
+            }
+            latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            return true;
+        });
+        MessageListener listener = engine.createListener();
+        ExecutorService consumeThreads = Executors.newFixedThreadPool(CONSUME_THREADS);
+        CountDownLatch done = new CountDownLatch(MESSAGES);
+        try {
+            for (int queueId = 0; queueId < queues.size(); queueId++) {
+                MessageQueue mq = new MessageQueue("TransactionMessage", "broker-a", queueId);
+                List<List<MessageExt>> batches = batches(queues.get(queueId));
+                if (listener instanceof MessageListenerOrderly) {
+                    // 顺序消费：一个队列的批次由同一个任务依次回调
+                    consumeThreads.execute(() -> {
+                        for (List<MessageExt> batch : batches) {
+                            ((MessageListenerOrderly) listener).consumeMessage(batch, new ConsumeOrderlyContext(mq));
+                            countDown(done, batch.size());
+                        }
+                    });
+                } else {
+                    for (List<MessageExt> batch : batches) {
+                        consumeThreads.execute(() -> {
+                            ((MessageListenerConcurrently) listener).consumeMessage(batch, new ConsumeConcurrentlyContext(mq));
+                            countDown(done, batch.size());
+                        });
+                    }
+                }
+            }
+            done.await();
+        } finally {
+            consumeThreads.shutdown();
+            engine.shutdown();
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        if (report) {
+            LatencyHistogram.Snapshot snapshot = latency.snapshot();
+            System.out.printf("%-15s %8.0f msg/s  p50=%6dms p99=%6dms max=%6dms  contended=%6d outOfOrder=%6d%n",
+                    strategy, MESSAGES * 1e9 / elapsedNanos,
+                    snapshot.percentile(0.5) / 1000, snapshot.percentile(0.99) / 1000, snapshot.getMax() / 1000,
+                    contended.sum(), outOfOrder.sum());
+        }
+    }
+
+    private static List<List<MessageExt>> batches(List<MessageExt> queue) {
+        List<List<MessageExt>> batches = new ArrayList<>();
+        for (int i = 0; i < queue.size(); i += BATCH_SIZE) {
+            batches.add(queue.subList(i, Math.min(i + BATCH_SIZE, queue.size())));
+        }
+        return batches;
+    }
+
+    private static void countDown(CountDownLatch latch, int times) {
+        for (int i = 0; i < times; i++) {
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package com.conpany.project.benchmark;
+
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListener;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerOrderly;
+import org.apache.rocketmq.client.producer.LocalTransactionState;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.client.producer.TransactionListener;
+import org.apache.rocketmq.client.producer.TransactionSendResult;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageAccessor;
+import org.apache.rocketmq.common.message.MessageClientIDSetter;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 进程内的事务消息 broker 替身，按 RocketMQ 客户端的接口驱动生产者本地事务与消费者监听器，不需要 NameServer 与 broker
+ * - half 消息：先暂存，再调用 {@link TransactionListener#executeLocalTransaction}，按返回状态提交或回滚
+ * - 按比例丢弃本地事务的提交/回滚结果（模拟 endTransaction 单向请求丢失），由回查线程调用 {@link TransactionListener#checkLocalTransaction} 决定
+ * - 提交的消息进入所在队列的待消费列表，每次回调取出最多 consumeBatchSize 条：
+ *   并发监听器由消费线程池并发回调，顺序监听器每个队列一个线程；积压时自然形成批量
+ * - 并发消费按 ackIndex 与 delayLevelWhenNextConsume 重投，重试次数超过上限进入死信；顺序消费按暂停时长原地重试
+ * - 故障注入（默认关闭）：按比例模拟消费进程在批次中途崩溃（只处理了批次的前一部分，未确认位点，
+ *   整批按原重试次数重新投递），按比例重复投递已提交的消息（模拟生产者重发与位点回退）
+ * 延迟级别与暂停时长按 timeScale 等比缩短，便于在压测中覆盖重试路径
+ * 不实现持久化、消费位点与重平衡
+ */
+public class InMemoryTransactionBroker {
+
+    /**
+     * 与 broker 默认的 messageDelayLevel 一致
+     */
+    private static final long[] DELAY_LEVEL_MILLIS = {1000, 5000, 10000, 30000, 60000, 120000, 180000, 240000, 300000,
+            360000, 420000, 480000, 540000, 600000, 1200000, 1800000, 3600000, 7200000};
+
+    private static class HalfMessage {
+        private final MessageExt message;
+        private final long storeTime = System.currentTimeMillis();
+        private volatile boolean localExecuted;
+        private int checkTimes;
+
+        HalfMessage(MessageExt message) {
+            this.message = message;
+        }
+    }
+
+    private final String topic;
+    private final TransactionListener transactionListener;
+    private final MessageListener messageListener;
+    private final Function<Message, Long> queueKeyExtractor;
+    private final List<MessageQueue> queues = new ArrayList<>();
+    private final int maxReconsumeTimes;
+    private final double lostEndTransactionRatio;
+    private final long checkImmunityMillis;
+    private final int maxCheckTimes;
+    private final int timeScale;
+    private int consumeBatchSize = 1;
+    private double crashRatio;
+    private double duplicateRatio;
+
+    private final Map<String, HalfMessage> halfMessages = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, daemon("broker-scheduler"));
+    private final ExecutorService concurrentExecutor;
+    private final List<ExecutorService> orderlyExecutors = new ArrayList<>();
+    private final List<Queue<MessageExt>> pending = new ArrayList<>();
+
+    private final AtomicLong offsets = new AtomicLong();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private final LongAdder halfSent = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder rolledBack = new LongAdder();
+    private final LongAdder lostEndTransactions = new LongAdder();
+    private final LongAdder checkBacks = new LongAdder();
+    private final LongAdder checkDiscarded = new LongAdder();
+    private final LongAdder deliveries = new LongAdder();
+    private final LongAdder redeliveries = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder crashes = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * @param queueKeyExtractor       选择队列的 key，与 AccountQueueSelector 一致按 floorMod 映射；返回 null 时轮询
+     * @param consumeThreads          并发监听器的消费线程数
+     * @param maxReconsumeTimes       并发消费的最大重试次数，超过后进入死信
+     * @param lostEndTransactionRatio 丢弃本地事务结果的比例，这部分 half 消息只能由回查决定
+     * @param checkImmunityMillis     half 消息本地事务执行完后多久开始回查
+     * @param maxCheckTimes           最大回查次数，超过后丢弃 half 消息（与 broker 的 transactionCheckMax 一致）
+     * @param timeScale               延迟级别与暂停时长的缩短倍数
+     */
+    public InMemoryTransactionBroker(String topic, int queueCount, TransactionListener transactionListener,
+                                     MessageListener messageListener, Function<Message, Long> queueKeyExtractor,
+                                     int consumeThreads, int maxReconsumeTimes, double lostEndTransactionRatio,
+                                     long checkImmunityMillis, int maxCheckTimes, int timeScale) {
+        this.topic = topic;
+        this.transactionListener = transactionListener;
+        this.messageListener = messageListener;
+        this.queueKeyExtractor = queueKeyExtractor;
+        this.maxReconsumeTimes = maxReconsumeTimes;
+        this.lostEndTransactionRatio = lostEndTransactionRatio;
+        this.checkImmunityMillis = checkImmunityMillis;
+        this.maxCheckTimes = maxCheckTimes;
+        this.timeScale = Math.max(1, timeScale);
+        for (int i = 0; i < queueCount; i++) {
+            queues.add(new MessageQueue(topic, "in-memory-broker", i));
+            pending.add(new ConcurrentLinkedQueue<>());
+        }
+        if (messageListener instanceof MessageListenerOrderly) {
+            concurrentExecutor = null;
+            for (int i = 0; i < queueCount; i++) {
+                orderlyExecutors.add(Executors.newSingleThreadExecutor(daemon("broker-orderly-" + i)));
+            }
+        } else {
+            concurrentExecutor = Executors.newFixedThreadPool(consumeThreads, daemon("broker-consume"));
+        }
+    }
+
+    /**
+     * 每次回调的最大消息数，与 consumeMessageBatchMaxSize 一致，start 之前设置
+     */
+    public InMemoryTransactionBroker setConsumeBatchSize(int consumeBatchSize) {
+        this.consumeBatchSize = Math.max(1, consumeBatchSize);
+        return this;
+    }
+
+    /**
+     * 消费批次中途崩溃的比例：只把批次的随机前缀交给监听器，忽略结果后整批重新投递，重试次数不变
+     */
+    public InMemoryTransactionBroker setCrashRatio(double crashRatio) {
+        this.crashRatio = crashRatio;
+        return this;
+    }
+
+    /**
+     * 已提交消息重复投递的比例，重复的一份与原消息的 msgId、消息体相同
+     */
+    public InMemoryTransactionBroker setDuplicateRatio(double duplicateRatio) {
+        this.duplicateRatio = duplicateRatio;
+        return this;
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::checkHalfMessages, checkImmunityMillis, Math.max(10, checkImmunityMillis / 2),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 与 TransactionMQProducer#sendMessageInTransaction 相同的流程：存 half 消息、执行本地事务、按结果提交或回滚
+     */
+    public TransactionSendResult sendMessageInTransaction(Message msg, Object arg) {
+        MessageAccessor.putProperty(msg, MessageConst.PROPERTY_TRANSACTION_PREPARED, "true");
+        MessageClientIDSetter.setUniqID(msg);
+        String transactionId = MessageClientIDSetter.getUniqID(msg);
+        msg.setTransactionId(transactionId);
+        MessageQueue queue = selectQueue(msg);
+
+        HalfMessage half = new HalfMessage(toMessageExt(msg, queue, transactionId, 0));
+        halfMessages.put(transactionId, half);
+        halfSent.increment();
+
+        LocalTransactionState state;
+        try {
+            state = transactionListener.executeLocalTransaction(msg, arg);
+        } catch (Throwable e) {
+            state = LocalTransactionState.UNKNOW;
+        }
+        if (state == null) {
+            state = LocalTransactionState.UNKNOW;
+        }
+        if (state != LocalTransactionState.UNKNOW && ThreadLocalRandom.current().nextDouble() < lostEndTransactionRatio) {
+            lostEndTransactions.increment();
+        } else {
+            endTransaction(transactionId, state);
+        }
+        half.localExecuted = true;
+
+        TransactionSendResult result = new TransactionSendResult();
+        result.setSendStatus(SendStatus.SEND_OK);
+        result.setMsgId(transactionId);
+        result.setTransactionId(transactionId);
+        result.setMessageQueue(queue);
+        result.setLocalTransactionState(state);
+        return result;
+    }
+
+    private void endTransaction(String transactionId, LocalTransactionState state) {
+        if (state == LocalTransactionState.UNKNOW) {
+            return;
+        }
+        HalfMessage half = halfMessages.remove(transactionId);
+        if (half == null) {
+            return;
+        }
+        if (state == LocalTransactionState.COMMIT_MESSAGE) {
+            committed.increment();
+            MessageExt message = half.message;
+            MessageAccessor.clearProperty(message, MessageConst.PROPERTY_TRANSACTION_PREPARED);
+            message.setQueueOffset(offsets.getAndIncrement());
+            message.setStoreTimestamp(System.currentTimeMillis());
+            boolean duplicate = ThreadLocalRandom.current().nextDouble() < duplicateRatio;
+            inFlight.addAndGet(duplicate ? 2 : 1);
+            dispatch(message);
+            if (duplicate) {
+                duplicates.increment();
+                dispatch(copy(message));
+            }
+        } else {
+            rolledBack.increment();
+        }
+    }
+
+    /**
+     * 回查本地事务已执行完且超过免疫期的 half 消息；本地事务仍在执行的不回查，避免把尚未提交的事务误判为回滚
+     */
+    private void checkHalfMessages() {
+        long now = System.currentTimeMillis();
+        for (Iterator<HalfMessage> it = halfMessages.values().iterator(); it.hasNext(); ) {
+            HalfMessage half = it.next();
+            if (!half.localExecuted || now - half.storeTime < checkImmunityMillis) {
+                continue;
+            }
+            if (half.checkTimes >= maxCheckTimes) {
+                it.remove();
+                checkDiscarded.increment();
+                continue;
+            }
+            half.checkTimes++;
+            checkBacks.increment();
+            LocalTransactionState state;
+            try {
+                state = transactionListener.checkLocalTransaction(half.message);
+            } catch (Throwable e) {
+                state = LocalTransactionState.UNKNOW;
+            }
+            endTransaction(half.message.getTransactionId(), state);
+        }
+    }
+
+    /**
+     * 放入队列的待消费列表并提交一次取批任务；消费线程都在忙时后续任务会一次取走多条
+     */
+    private void dispatch(MessageExt message) {
+        deliveries.increment();
+        int queueId = message.getQueueId();
+        pending.get(queueId).add(message);
+        if (concurrentExecutor != null) {
+            concurrentExecutor.execute(() -> drain(queueId));
+        } else {
+            orderlyExecutors.get(queueId).execute(() -> drain(queueId));
+        }
+    }
+
+    private void drain(int queueId) {
+        Queue<MessageExt> queue = pending.get(queueId);
+        List<MessageExt> msgs = new ArrayList<>(consumeBatchSize);
+        MessageExt message;
+        while (msgs.size() < consumeBatchSize && (message = queue.poll()) != null) {
+            msgs.add(message);
+        }
+        if (msgs.isEmpty()) {
+            return;
+        }
+        if (concurrentExecutor != null) {
+            consumeConcurrently(queues.get(queueId), msgs);
+        } else {
+            consumeOrderly(queues.get(queueId), msgs);
+        }
+    }
+
+    /**
+     * 按比例模拟批次中途崩溃：随机前缀交给监听器处理（可能已经入账），结果丢弃
+     *
+     * @return 是否崩溃，崩溃时整批需要重新投递
+     */
+    private boolean crashMidBatch(MessageQueue queue, List<MessageExt> msgs) {
+        if (crashRatio <= 0 || ThreadLocalRandom.current().nextDouble() >= crashRatio) {
+            return false;
+        }
+        crashes.increment();
+        List<MessageExt> prefix = msgs.subList(0, ThreadLocalRandom.current().nextInt(msgs.size()) + 1);
+        try {
+            if (messageListener instanceof MessageListenerOrderly) {
+                ((MessageListenerOrderly) messageListener).consumeMessage(new ArrayList<>(prefix), new ConsumeOrderlyContext(queue));
+            } else {
+                ((MessageListenerConcurrently) messageListener).consumeMessage(new ArrayList<>(prefix),
+                        new ConsumeConcurrentlyContext(queue));
+            }
+        } catch (Throwable ignored) {
+            // 进程已经"崩溃"，处理结果不会回到 broker
+        }
+        return true;
+    }
+
+    private void consumeConcurrently(MessageQueue queue, List<MessageExt> msgs) {
+        if (crashMidBatch(queue, msgs)) {
+            for (MessageExt message : msgs) {
+                redeliveries.increment();
+                dispatch(copy(message));
+            }
+            return;
+        }
+        ConsumeConcurrentlyContext context = new ConsumeConcurrentlyContext(queue);
+        ConsumeConcurrentlyStatus status;
+        try {
+            status = ((MessageListenerConcurrently) messageListener).consumeMessage(msgs, context);
+        } catch (Throwable e) {
+            status = ConsumeConcurrentlyStatus.RECONSUME_LATER;
+        }
+        int ackIndex = status == ConsumeConcurrentlyStatus.CONSUME_SUCCESS
+                ? Math.min(context.getAckIndex(), msgs.size() - 1) : -1;
+        for (int i = ackIndex + 1; i < msgs.size(); i++) {
+            sendBack(msgs.get(i), context.getDelayLevelWhenNextConsume());
+        }
+        for (int i = 0; i <= ackIndex; i++) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 与 broker 处理 consumerSendMsgBack 一致：延迟级别为 0 时按 3 + 重试次数，重试次数超过上限或级别为负时进入死信
+     */
+    private void sendBack(MessageExt message, int delayLevel) {
+        int reconsumeTimes = message.getReconsumeTimes() + 1;
+        if (delayLevel < 0 || reconsumeTimes > maxReconsumeTimes) {
+            deadLettered.increment();
+            inFlight.decrementAndGet();
+            return;
+        }
+        int level = delayLevel == 0 ? 3 + reconsumeTimes : delayLevel;
+        long delayMillis = DELAY_LEVEL_MILLIS[Math.min(level, DELAY_LEVEL_MILLIS.length) - 1] / timeScale;
+        MessageExt retry = copy(message);
+        retry.setReconsumeTimes(reconsumeTimes);
+        redeliveries.increment();
+        scheduler.schedule(() -> dispatch(retry), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void consumeOrderly(MessageQueue queue, List<MessageExt> msgs) {
+        while (true) {
+            if (crashMidBatch(queue, msgs)) {
+                redeliveries.add(msgs.size());
+                continue;
+            }
+            ConsumeOrderlyContext context = new ConsumeOrderlyContext(queue);
+            ConsumeOrderlyStatus status;
+            try {
+                status = ((MessageListenerOrderly) messageListener).consumeMessage(msgs, context);
+            } catch (Throwable e) {
+                status = ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT;
+            }
+            if (status != ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT) {
+                inFlight.addAndGet(-msgs.size());
+                return;
+            }
+            redeliveries.add(msgs.size());
+            for (MessageExt message : msgs) {
+                message.setReconsumeTimes(message.getReconsumeTimes() + 1);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(Math.max(1, context.getSuspendCurrentQueueTimeMillis() / timeScale));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private MessageQueue selectQueue(Message msg) {
+        Long key = queueKeyExtractor != null ? queueKeyExtractor.apply(msg) : null;
+        int index = key != null
+                ? Math.floorMod(Long.hashCode(key), queues.size())
+                : Math.floorMod(roundRobin.getAndIncrement(), queues.size());
+        return queues.get(index);
+    }
+
+    private MessageExt toMessageExt(Message msg, MessageQueue queue, String transactionId, int reconsumeTimes) {
+        MessageExt ext = new MessageExt();
+        ext.setTopic(msg.getTopic());
+        ext.setBody(msg.getBody());
+        ext.setFlag(msg.getFlag());
+        MessageAccessor.setProperties(ext, new HashMap<>(msg.getProperties()));
+        ext.setMsgId(transactionId);
+        ext.setTransactionId(transactionId);
+        ext.setQueueId(queue.getQueueId());
+        ext.setBornTimestamp(System.currentTimeMillis());
+        ext.setReconsumeTimes(reconsumeTimes);
+        return ext;
+    }
+
+    private MessageExt copy(MessageExt message) {
+        MessageExt copy = toMessageExt(message, queues.get(message.getQueueId()), message.getTransactionId(),
+                message.getReconsumeTimes());
+        copy.setQueueOffset(message.getQueueOffset());
+        copy.setStoreTimestamp(message.getStoreTimestamp());
+        return copy;
+    }
+
+    /**
+     * 等待所有 half 消息决议、所有已提交消息消费完成或进入死信
+     *
+     * @return 超时前是否已全部完成
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!halfMessages.isEmpty() || inFlight.get() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return true;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        if (concurrentExecutor != null) {
+            concurrentExecutor.shutdownNow();
+        }
+        for (ExecutorService executor : orderlyExecutors) {
+            executor.shutdownNow();
+        }
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getPendingHalfMessages() {
+        return halfMessages.size();
+    }
+
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getHalfSent() {
+        return halfSent.sum();
+    }
+
+    public long getCommitted() {
+        return committed.sum();
+    }
+
+    public long getRolledBack() {
+        return rolledBack.sum();
+    }
+
+    public long getLostEndTransactions() {
+        return lostEndTransactions.sum();
+    }
+
+    public long getCheckBacks() {
+        return checkBacks.sum();
+    }
+
+    public long getCheckDiscarded() {
+        return checkDiscarded.sum();
+    }
+
+    public long getDeliveries() {
+        return deliveries.sum();
+    }
+
+    public long getRedeliveries() {
+        return redeliveries.sum();
+    }
+
+    public long getDeadLettered() {
+        return deadLettered.sum();
+    }
+
+    public long getCrashes() {
+        return crashes.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package com.conpany.project.benchmark;
+
+import com.company.project.MainApplication;
+import com.company.project.biz.OutboxRelay;
+import com.company.project.biz.TransactionProducer;
+import com.company.project.core.LatencyHistogram;
+import org.apache.rocketmq.client.producer.LocalTransactionState;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 转账消息投递方式吞吐对比：RocketMQ 事务消息（half消息 + 本地事务 + commit）与本地消息表（同事务写 outbox + OutboxRelay 批量中继）
+ * 两种方式各启动一次应用上下文，通过 TransactionProducer#sendTransfer 发起转账，走的是线上同一套 BusinessService、
+ * 分片数据源与 OutboxRelay，消费端也在同一进程中入账。统计转账吞吐、p50/p99，以及本地消息表全部发送完成的时间
+ * <p>
+ * 会修改账户余额（转出与入账总额守恒），必须用指向专用压测库的 profile 运行，账户 1~accounts 需预先存在且余额充足，
+ * 本地消息表方式需先按 table.sql 建好 transfer_outbox 与 transfer_outbox_lease：
+ * -Dbench.profile=bench -Dbench.transfers=20000 -Dbench.threads=16 -Dbench.accounts=10000 -Dbench.amount=1
+ * -Dbench.drainTimeoutSeconds=120 -Dbench.quiet=true
+ * 其余应用配置用程序参数覆盖，如 --rocketmq.outbox.batch-size=500
+ */
+public class OutboxDeliveryBenchmark {
+
+    private static final String PROFILE = System.getProperty("bench.profile");
+    private static final int TRANSFERS = Integer.getInteger("bench.transfers", 20_000);
+    private static final int THREADS = Integer.getInteger("bench.threads", 16);
+    private static final int ACCOUNTS = Integer.getInteger("bench.accounts", 10_000);
+    private static final long AMOUNT = Long.getLong("bench.amount", 1L);
+    private static final long DRAIN_TIMEOUT_SECONDS = Long.getLong("bench.drainTimeoutSeconds", 120L);
+    private static final boolean QUIET = Boolean.parseBoolean(System.getProperty("bench.quiet", "true"));
+
+    private static final PrintStream REPORT = System.out;
+
+    public static void main(String[] args) throws Exception {
+        if (PROFILE == null || PROFILE.isEmpty()) {
+            throw new IllegalArgumentException("需通过 -Dbench.profile 指定指向专用压测库的 profile，压测会修改账户余额");
+        }
+        if (QUIET) {
+            // 业务代码按条打印日志，压测时丢弃，避免控制台成为瓶颈
+            PrintStream discard = new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            });
+            System.setOut(discard);
+            System.setErr(discard);
+        }
+        run("TRANSACTIONAL", args);
+        run("OUTBOX", args);
+    }
+
+    private static void run(String deliveryMode, String[] args) throws Exception {
+        List<String> appArgs = new ArrayList<>();
+        appArgs.add("--spring.profiles.active=" + PROFILE);
+        appArgs.add("--rocketmq.delivery-mode=" + deliveryMode);
+        for (String arg : args) {
+            appArgs.add(arg);
+        }
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MainApplication.class)
+                .web(false).run(appArgs.toArray(new String[0]))) {
+            TransactionProducer transactionProducer = context.getBean(TransactionProducer.class);
+            OutboxRelay outboxRelay = context.getBean(OutboxRelay.class);
+            long shippedBefore = shipped(outboxRelay);
+
+            LatencyHistogram latency = new LatencyHistogram();
+            LongAdder committed = new LongAdder();
+            LongAdder rolledBack = new LongAdder();
+            long start = System.nanoTime();
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int perThread = TRANSFERS / THREADS + (t < TRANSFERS % THREADS ? 1 : 0);
+                futures.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < perThread; i++) {
+                        long from = random.nextInt(ACCOUNTS) + 1;
+                        long to = random.nextInt(ACCOUNTS - 1) + 1;
+                        to = to >= from ? to + 1 : to;
+                        long begin = System.nanoTime();
+                        LocalTransactionState state = transactionProducer.sendTransfer(from, to, AMOUNT);
+                        latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin));
+                        (state == LocalTransactionState.COMMIT_MESSAGE ? committed : rolledBack).increment();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            pool.shutdown();
+
+            String drained = "-";
+            if ("OUTBOX".equals(deliveryMode)) {
+                // 中继按 poll-interval-millis 轮询，等待本轮提交的消息全部发送到 broker
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+                while (shipped(outboxRelay) - shippedBefore < committed.sum() && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                long shipped = shipped(outboxRelay) - shippedBefore;
+                drained = shipped >= committed.sum()
+                        ? String.format("%.1fs", (System.nanoTime() - start) / 1e9)
+                        : "timeout(shipped=" + shipped + ")";
+            }
+            LatencyHistogram.Snapshot snapshot = latency.snapshot();
+            REPORT.printf("%-13s transfers=%d threads=%d elapsed=%.1fs throughput=%.0f transfers/s p50=%.1fms p99=%.1fms"
+                            + " committed=%d rolledBack=%d drained=%s%n",
+                    deliveryMode.toLowerCase(), TRANSFERS, THREADS, elapsed / 1e9, TRANSFERS * 1e9 / elapsed,
+                    snapshot.percentile(0.5) / 1000.0, snapshot.percentile(0.99) / 1000.0,
+                    committed.sum(), rolledBack.sum(), drained);
+        }
+    }
+
+    private static long shipped(OutboxRelay outboxRelay) {
+        for (Metric<?> metric : outboxRelay.metrics()) {
+            if ("rocketmq.outbox.shipped".equals(metric.getName())) {
+                return metric.getValue().longValue();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,129 @@
+package com.conpany.project.benchmark;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.ReadWriteRoutingDataSource;
+import com.company.project.datasource.ReplicaLagMonitor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+
+/**
+ * 读写分离路由验证：用两个互不复制的库分别充当主库与从库，手工推进从库心跳来模拟复制进度
+ * 1. 从库心跳为空：延迟未知，从库读回到主库
+ * 2. 把主库心跳拷贝到从库（模拟复制追上）：从库读路由到从库
+ * 3. 从库心跳回退 5 秒（模拟复制落后）：从库读回到主库
+ * <p>
+ * 两个本地 MySQL 库或两个 H2 实例均可，参数通过系统属性传入：
+ * -Dbench.primaryUrl=jdbc:mysql://localhost/fescar -Dbench.replicaUrl=jdbc:mysql://localhost/fescar_replica
+ * -Dbench.user=root -Dbench.password=123456 -Dbench.maxLagMillis=1000
+ */
+public class ReadReplicaRoutingHarness {
+
+    private static final String PRIMARY_URL = System.getProperty("bench.primaryUrl",
+            "jdbc:mysql://localhost/fescar?useUnicode=true&characterEncoding=UTF-8&serverTimezone=GMT%2B8");
+    private static final String REPLICA_URL = System.getProperty("bench.replicaUrl",
+            "jdbc:mysql://localhost/fescar_replica?useUnicode=true&characterEncoding=UTF-8&serverTimezone=GMT%2B8");
+    private static final String USER = System.getProperty("bench.user", "root");
+    private static final String PASSWORD = System.getProperty("bench.password", "123456");
+    private static final long MAX_LAG_MILLIS = Long.getLong("bench.maxLagMillis", 1000L);
+
+    public static void main(String[] args) throws Exception {
+        DruidDataSource primary = createPool("primary", PRIMARY_URL);
+        DruidDataSource replica = createPool("replica", REPLICA_URL);
+        try {
+            createHeartbeatTable(primary);
+            createHeartbeatTable(replica);
+            execute(replica, "delete from replica_heartbeat");
+
+            ReplicaLagMonitor monitor = new ReplicaLagMonitor(primary, Collections.singletonList(replica));
+            ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary,
+                    Collections.singletonList(replica), monitor);
+
+            monitor.heartbeat();
+            check("从库无心跳", routing, monitor, false);
+
+            monitor.heartbeat();
+            copyHeartbeat(primary, replica, 0);
+            monitor.heartbeat();
+            check("从库追上主库", routing, monitor, true);
+
+            copyHeartbeat(primary, replica, 5000);
+            monitor.heartbeat();
+            check("从库落后5秒", routing, monitor, false);
+
+            System.out.printf("routes primary=%d replica=%d fallback=%d%n",
+                    routing.getPrimaryRoutes(), routing.getReplicaRoutes(), routing.getFallbackRoutes());
+        } finally {
+            primary.close();
+            replica.close();
+        }
+    }
+
+    private static void check(String scenario, ReadWriteRoutingDataSource routing, ReplicaLagMonitor monitor,
+                              boolean expectReplica) throws Exception {
+        Long previous = DataSourceContext.switchToReplica(MAX_LAG_MILLIS);
+        String routedTo;
+        try (Connection conn = routing.getConnection()) {
+            routedTo = conn.getMetaData().getURL();
+        } finally {
+            DataSourceContext.restoreReplica(previous);
+        }
+        boolean onReplica = routedTo.equals(connectionUrl(routing.getReplicas().get(0)));
+        long lag = monitor.getLagMillis(0);
+        System.out.printf("%-8s lag=%sms routedTo=%s%n", scenario, lag == Long.MAX_VALUE ? "unknown" : lag, routedTo);
+        if (onReplica != expectReplica) {
+            throw new IllegalStateException(scenario + " 路由结果不符合预期，期望" + (expectReplica ? "从库" : "主库"));
+        }
+    }
+
+    private static String connectionUrl(DruidDataSource dataSource) throws Exception {
+        try (Connection conn = dataSource.getConnection()) {
+            return conn.getMetaData().getURL();
+        }
+    }
+
+    /**
+     * 模拟复制：把主库心跳写到从库，lagMillis 为人为叠加的落后时间
+     */
+    private static void copyHeartbeat(DruidDataSource primary, DruidDataSource replica, long lagMillis) throws Exception {
+        long ts;
+        try (Connection conn = primary.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("select ts from replica_heartbeat where id = 1")) {
+            rs.next();
+            ts = rs.getLong(1);
+        }
+        execute(replica, "delete from replica_heartbeat");
+        try (Connection conn = replica.getConnection();
+             PreparedStatement ps = conn.prepareStatement("insert into replica_heartbeat (id, ts) values (1, ?)")) {
+            ps.setLong(1, ts - lagMillis);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void createHeartbeatTable(DruidDataSource dataSource) throws Exception {
+        execute(dataSource, "create table if not exists replica_heartbeat (id int not null primary key, ts bigint not null)");
+    }
+
+    private static void execute(DruidDataSource dataSource, String sql) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private static DruidDataSource createPool(String name, String url) throws Exception {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setName(name);
+        dataSource.setUrl(url);
+        dataSource.setUsername(USER);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaxActive(4);
+        dataSource.init();
+        return dataSource;
+    }
+}
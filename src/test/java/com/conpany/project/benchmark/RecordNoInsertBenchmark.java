@@ -0,0 +1,107 @@
+package com.conpany.project.benchmark;
+
+import com.company.project.core.SnowflakeIdGenerator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * transfer_record 插入吞吐对比：随机 UUID 与有序 Snowflake 流水号
+ * 两种 key 分别写入一张与 transfer_record 结构相同的临时表，多线程批量插入后输出 rows/s
+ * <p>
+ * 运行前需要可用的 MySQL，参数通过系统属性传入：
+ * -Dbench.url=jdbc:mysql://localhost/fescar?rewriteBatchedStatements=true -Dbench.user=root -Dbench.password=123456
+ * -Dbench.rows=2000000 -Dbench.threads=8
+ */
+public class RecordNoInsertBenchmark {
+
+    private static final String URL = System.getProperty("bench.url",
+            "jdbc:mysql://localhost/fescar?useUnicode=true&characterEncoding=UTF-8&serverTimezone=GMT%2B8&rewriteBatchedStatements=true");
+    private static final String USER = System.getProperty("bench.user", "root");
+    private static final String PASSWORD = System.getProperty("bench.password", "123456");
+    private static final int ROWS = Integer.getInteger("bench.rows", 1_000_000);
+    private static final int THREADS = Integer.getInteger("bench.threads", 8);
+    private static final int BATCH = 500;
+
+    public static void main(String[] args) throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 1556640000000L);
+        run("uuid", () -> UUID.randomUUID().toString());
+        run("snowflake", generator::nextRecordNo);
+    }
+
+    private static void run(String name, Supplier<String> keys) throws Exception {
+        String table = "transfer_record_bench_" + name;
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement st = conn.createStatement()) {
+            st.execute("drop table if exists " + table);
+            st.execute("create table " + table + " like transfer_record");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        int perThread = ROWS / THREADS;
+        long start = System.nanoTime();
+        Future<?>[] futures = new Future<?>[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            futures[t] = pool.submit(() -> {
+                insert(table, perThread, keys);
+                return null;
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        long total = (long) perThread * THREADS;
+        System.out.printf("%-10s rows=%d threads=%d elapsed=%.1fs throughput=%.0f rows/s%n",
+                name, total, THREADS, elapsed / 1e9, total * 1e9 / elapsed);
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement st = conn.createStatement()) {
+            st.execute("analyze table " + table);
+            try (ResultSet rs = st.executeQuery("select index_length, data_length from information_schema.tables"
+                    + " where table_schema = database() and table_name = '" + table + "'")) {
+                if (rs.next()) {
+                    System.out.printf("%-10s index_length=%dMB data_length=%dMB%n",
+                            name, rs.getLong(1) >> 20, rs.getLong(2) >> 20);
+                }
+            }
+        }
+    }
+
+    private static void insert(String table, int rows, Supplier<String> keys) throws Exception {
+        String sql = "insert into " + table
+                + " (from_user_id, change_money, transaction_id, to_user_id, record_no, create_time) values (?, ?, ?, ?, ?, ?)";
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 1; i <= rows; i++) {
+                String recordNo = keys.get();
+                ps.setLong(1, random.nextLong(1, 10_000));
+                ps.setLong(2, random.nextLong(1, 1_000));
+                ps.setString(3, recordNo);
+                ps.setLong(4, random.nextLong(1, 10_000));
+                ps.setString(5, recordNo);
+                ps.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
+                ps.addBatch();
+                if (i % BATCH == 0) {
+                    ps.executeBatch();
+                    conn.commit();
+                }
+            }
+            ps.executeBatch();
+            conn.commit();
+        }
+    }
+}
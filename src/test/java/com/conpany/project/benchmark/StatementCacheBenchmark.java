@@ -0,0 +1,151 @@
+package com.conpany.project.benchmark;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.company.project.core.LatencyHistogram;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 语句缓存对比：模拟消费者入账路径，每个事务借连接、查收款人、addMoney、提交、归还连接
+ * 分别在不开缓存、Druid PSCache + 客户端预编译、Druid PSCache + 服务端预编译三种配置下运行，
+ * 输出事务吞吐、prepareStatement 调用耗时分位以及服务端 Com_stmt_prepare 增量
+ * <p>
+ * 入账写在按 user 表结构新建的 user_stmt_bench 中（启动时重建并写入 id 1~bench.users，结束后删除），不修改业务账户余额
+ * 运行前需要可用的 MySQL，参数通过系统属性传入：
+ * -Dbench.url=jdbc:mysql://localhost/fescar -Dbench.user=root -Dbench.password=123456
+ * -Dbench.txns=200000 -Dbench.threads=8 -Dbench.users=1000
+ */
+public class StatementCacheBenchmark {
+
+    private static final String URL = System.getProperty("bench.url",
+            "jdbc:mysql://localhost/fescar?useUnicode=true&characterEncoding=UTF-8&serverTimezone=GMT%2B8");
+    private static final String USER = System.getProperty("bench.user", "root");
+    private static final String PASSWORD = System.getProperty("bench.password", "123456");
+    private static final int TXNS = Integer.getInteger("bench.txns", 200_000);
+    private static final int THREADS = Integer.getInteger("bench.threads", 8);
+    private static final int USERS = Integer.getInteger("bench.users", 1000);
+
+    private static final String TABLE = "user_stmt_bench";
+    private static final String SELECT_SQL = "select id, money from " + TABLE + " where id = ?";
+    private static final String ADD_MONEY_SQL = "update " + TABLE + " set money = money + ? where id = ?";
+
+    public static void main(String[] args) throws Exception {
+        prepareTable();
+        try {
+            run("no-cache", false, "useServerPrepStmts=false;cachePrepStmts=false");
+            run("client", true, "useServerPrepStmts=false;cachePrepStmts=true;prepStmtCacheSize=250;prepStmtCacheSqlLimit=2048");
+            run("server", true, "useServerPrepStmts=true;cachePrepStmts=true;prepStmtCacheSize=250;prepStmtCacheSqlLimit=2048");
+        } finally {
+            try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
+                 Statement st = conn.createStatement()) {
+                st.execute("drop table if exists " + TABLE);
+            }
+        }
+    }
+
+    private static void prepareTable() throws Exception {
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement st = conn.createStatement()) {
+            st.execute("drop table if exists " + TABLE);
+            st.execute("create table " + TABLE + " like user");
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement("insert into " + TABLE + " (id, money) values (?, 0)")) {
+                for (int id = 1; id <= USERS; id++) {
+                    ps.setLong(1, id);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    private static void run(String name, boolean psCache, String connectionProperties) throws Exception {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setUrl(URL);
+        dataSource.setUsername(USER);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setInitialSize(THREADS);
+        dataSource.setMaxActive(THREADS);
+        dataSource.setPoolPreparedStatements(psCache);
+        dataSource.setMaxPoolPreparedStatementPerConnectionSize(50);
+        dataSource.setConnectionProperties(connectionProperties);
+        dataSource.init();
+
+        LatencyHistogram prepareNanos = new LatencyHistogram();
+        long preparedBefore = serverPrepareCount(dataSource);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        int perThread = TXNS / THREADS;
+        long start = System.nanoTime();
+        Future<?>[] futures = new Future<?>[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            futures[t] = pool.submit(() -> {
+                credit(dataSource, perThread, prepareNanos);
+                return null;
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        long serverPrepares = serverPrepareCount(dataSource) - preparedBefore;
+        dataSource.close();
+
+        long total = (long) perThread * THREADS;
+        LatencyHistogram.Snapshot prepare = prepareNanos.snapshot();
+        System.out.printf("%-8s txns=%d threads=%d elapsed=%.1fs throughput=%.0f txn/s"
+                        + " prepare p50=%dns p99=%dns mean=%.0fns Com_stmt_prepare=%d%n",
+                name, total, THREADS, elapsed / 1e9, total * 1e9 / elapsed,
+                prepare.percentile(0.5), prepare.percentile(0.99), prepare.getMean(), serverPrepares);
+    }
+
+    private static void credit(DruidDataSource dataSource, int txns, LatencyHistogram prepareNanos) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < txns; i++) {
+            long userId = random.nextLong(1, USERS + 1);
+            try (Connection conn = dataSource.getConnection()) {
+                conn.setAutoCommit(false);
+                long begin = System.nanoTime();
+                PreparedStatement select = conn.prepareStatement(SELECT_SQL);
+                prepareNanos.record(System.nanoTime() - begin);
+                try {
+                    select.setLong(1, userId);
+                    try (ResultSet rs = select.executeQuery()) {
+                        rs.next();
+                    }
+                } finally {
+                    select.close();
+                }
+
+                begin = System.nanoTime();
+                PreparedStatement update = conn.prepareStatement(ADD_MONEY_SQL);
+                prepareNanos.record(System.nanoTime() - begin);
+                try {
+                    update.setLong(1, 1);
+                    update.setLong(2, userId);
+                    update.executeUpdate();
+                } finally {
+                    update.close();
+                }
+                conn.commit();
+            }
+        }
+    }
+
+    private static long serverPrepareCount(DruidDataSource dataSource) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("show global status like 'Com_stmt_prepare'")) {
+            return rs.next() ? rs.getLong(2) : 0;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.conpany.project.benchmark;
+
+import com.company.project.MainApplication;
+import com.company.project.biz.ConsumeQuarantine;
+import com.company.project.biz.TransactionListenerImpl;
+import com.company.project.biz.TransactionProducer;
+import com.company.project.biz.TransferConsumeHandler;
+import com.company.project.biz.service.ConsumerService;
+import com.company.project.configurer.RocketMQConfigurer;
+import com.company.project.core.LatencyHistogram;
+import com.company.project.core.ProjectConstant;
+import com.company.project.core.SnowflakeIdGenerator;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.ShardRouter;
+import com.company.project.isolation.ConsumeEngine;
+import com.company.project.isolation.RetryBackoff;
+import org.apache.rocketmq.client.producer.LocalTransactionState;
+import org.apache.rocketmq.client.producer.TransactionSendResult;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 转账全链路压测：TransactionListenerImpl（本地事务扣钱）-> 进程内 broker -> ConsumeEngine -> ConsumerService（入账）
+ * 不需要 NameServer、broker 与 MySQL，使用 application-loadtest.yml 中两个 H2 内存分片与 {@link InMemoryTransactionBroker}
+ * - N 个线程并发发起随机账户间的转账，消息由 TransactionProducer#buildTransferMessage 构造
+ * - 按比例发起余额不足的转账（本地事务回滚），按比例丢弃本地事务结果（走事务回查）
+ * - 消费处理与 Consumer 相同，使用同一个 TransferConsumeHandler：消费者连接池、失败分类、重试与隔离
+ * 输出本地事务与端到端（发送到入账完成）的吞吐与 p50/p99，并校验资金守恒、转账记录数与消费数一致、没有隔离和死信消息
+ * main 运行时校验失败以非 0 状态退出；mvn test 运行 {@link #invariantsHold()}，只发送 load.testTransfers（默认 2000）笔，
+ * 校验失败时测试失败
+ * <p>
+ * 参数通过系统属性传入，消费策略等应用配置直接用 -Drocketmq.xxx 覆盖：
+ * -Dload.transfers=20000 -Dload.threads=16 -Dload.accounts=1000 -Dload.initialBalance=1000000 -Dload.maxAmount=100
+ * -Dload.overdraftRatio=0.01 -Dload.lostEndRatio=0.01 -Dload.queues=8 -Dload.timeScale=100 -Dload.timeoutSeconds=120
+ * -Dload.quiet=true -Drocketmq.consume-strategy=PER_KEY_SERIAL
+ */
+public class TransferPipelineLoadTest {
+
+    private static final int TRANSFERS = Integer.getInteger("load.transfers", 20_000);
+    private static final int THREADS = Integer.getInteger("load.threads", 16);
+    private static final int ACCOUNTS = Integer.getInteger("load.accounts", 1000);
+    private static final long INITIAL_BALANCE = Long.getLong("load.initialBalance", 1_000_000L);
+    private static final int MAX_AMOUNT = Integer.getInteger("load.maxAmount", 100);
+    private static final double OVERDRAFT_RATIO = Double.parseDouble(System.getProperty("load.overdraftRatio", "0.01"));
+    private static final double LOST_END_RATIO = Double.parseDouble(System.getProperty("load.lostEndRatio", "0.01"));
+    private static final int QUEUES = Integer.getInteger("load.queues", 8);
+    private static final int TIME_SCALE = Integer.getInteger("load.timeScale", 100);
+    private static final long TIMEOUT_SECONDS = Long.getLong("load.timeoutSeconds", 120L);
+    private static final boolean QUIET = Boolean.parseBoolean(System.getProperty("load.quiet", "true"));
+
+    private static final PrintStream REPORT = System.out;
+
+    private final LatencyHistogram localLatency = new LatencyHistogram();
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+    private final Map<String, Long> sendStarts = new ConcurrentHashMap<>();
+    private final LongAdder consumed = new LongAdder();
+
+    private int transfers = TRANSFERS;
+
+    private ConfigurableApplicationContext context;
+    private RocketMQConfigurer rocketMQConfigurer;
+    private TransferConsumeHandler consumeHandler;
+    private ShardRouter shardRouter;
+    private JdbcTemplate jdbcTemplate;
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new TransferPipelineLoadTest().run().isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * 少量转账走完全链路后校验资金守恒、转账记录数与入账数一致
+     */
+    @Test
+    public void invariantsHold() throws Exception {
+        transfers = Integer.getInteger("load.testTransfers", 2000);
+        assertEquals(Collections.emptyList(), run());
+    }
+
+    /**
+     * @return 违反的不变量，为空表示校验通过
+     */
+    private List<String> run() throws Exception {
+        context = new SpringApplicationBuilder(MainApplication.class).web(false).run("--spring.profiles.active=loadtest");
+        try {
+            rocketMQConfigurer = context.getBean(RocketMQConfigurer.class);
+            shardRouter = context.getBean(ShardRouter.class);
+            DataSource dataSource = context.getBean(DataSource.class);
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            initSchema(dataSource);
+
+            RocketMQConfigurer.RetryProperties retry = rocketMQConfigurer.getRetry();
+            // 进程内 broker 没有死信投递，重试耗尽的消息总是隔离
+            consumeHandler = new TransferConsumeHandler(context.getBean(ConsumerService.class),
+                    context.getBean(ConsumeQuarantine.class), retry, null);
+            ConsumeEngine engine = new ConsumeEngine(rocketMQConfigurer.getConsumeStrategy(),
+                    rocketMQConfigurer.getAccountSerialThreads(),
+                    new RetryBackoff(retry.getDelayLevels(), retry.getBaseSuspendMillis(), retry.getMaxSuspendMillis()),
+                    msg -> msg.getUserProperty(ProjectConstant.ACCOUNT_KEY_PROPERTY), this::consume);
+            InMemoryTransactionBroker broker = new InMemoryTransactionBroker(rocketMQConfigurer.getTransactionTopic(), QUEUES,
+                    context.getBean(TransactionListenerImpl.class), engine.createListener(),
+                    rocketMQConfigurer.isOrderedByAccount() ? TransferPipelineLoadTest::accountKey : null,
+                    rocketMQConfigurer.getConsumeThreadMin(), retry.getMaxRetries() + 1, LOST_END_RATIO, 100, 15, TIME_SCALE)
+                    .setConsumeBatchSize(rocketMQConfigurer.getConsumeMessageBatchMaxSize());
+            broker.start();
+
+            REPORT.printf("transfers=%d threads=%d accounts=%d shards=%d queues=%d strategy=%s orderedByAccount=%s"
+                            + " overdraft=%.1f%% lostEnd=%.1f%%%n",
+                    transfers, THREADS, ACCOUNTS, shardRouter.getShardCount(), QUEUES, engine.getStrategy(),
+                    rocketMQConfigurer.isOrderedByAccount(), OVERDRAFT_RATIO * 100, LOST_END_RATIO * 100);
+            PrintStream out = System.out;
+            PrintStream err = System.err;
+            if (QUIET) {
+                // 业务代码按条打印日志，压测时丢弃，避免控制台成为瓶颈
+                PrintStream discard = new PrintStream(new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                    }
+                });
+                System.setOut(discard);
+                System.setErr(discard);
+            }
+            long sendElapsed;
+            long totalElapsed;
+            boolean drained;
+            try {
+                long start = System.nanoTime();
+                sendElapsed = sendTransfers(broker);
+                drained = broker.awaitIdle(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                totalElapsed = System.nanoTime() - start;
+            } finally {
+                System.setOut(out);
+                System.setErr(err);
+                broker.shutdown();
+                engine.shutdown();
+            }
+            report(broker, sendElapsed, totalElapsed);
+            return verify(broker, drained);
+        } finally {
+            context.close();
+        }
+    }
+
+    private void initSchema(DataSource dataSource) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("loadtest/schema.sql"));
+        List<List<Object[]>> users = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            users.add(new ArrayList<>());
+        }
+        for (long id = 1; id <= ACCOUNTS; id++) {
+            users.get(shardRouter.shardOf(id)).add(new Object[]{id, INITIAL_BALANCE});
+        }
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            List<Object[]> shardUsers = users.get(shard);
+            DataSourceContext.callOnShard(shard, () -> {
+                populator.execute(dataSource);
+                return jdbcTemplate.batchUpdate("insert into user (id, money) values (?, ?)", shardUsers);
+            });
+        }
+    }
+
+    private long sendTransfers(InMemoryTransactionBroker broker) throws Exception {
+        SnowflakeIdGenerator idGenerator = context.getBean(SnowflakeIdGenerator.class);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        int perThread = transfers / THREADS;
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < perThread; i++) {
+                    long from = random.nextInt(ACCOUNTS) + 1;
+                    long to = random.nextInt(ACCOUNTS - 1) + 1;
+                    if (to >= from) {
+                        to++;
+                    }
+                    long amount = random.nextDouble() < OVERDRAFT_RATIO ? Long.MAX_VALUE / 2 : random.nextInt(MAX_AMOUNT) + 1;
+                    send(broker, idGenerator.nextRecordNo(), from, to, amount);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 与 TransactionProducer#sendTransfer 构造相同的事务消息
+     */
+    private void send(InMemoryTransactionBroker broker, String recordNo, long from, long to, long amount) {
+        Message msg = TransactionProducer.buildTransferMessage(rocketMQConfigurer.getTransactionTopic(),
+                rocketMQConfigurer.getMessageTag(), TransactionProducer.newTransferRecord(recordNo, from, to, amount));
+
+        long start = System.nanoTime();
+        sendStarts.put(recordNo, start);
+        TransactionSendResult result = broker.sendMessageInTransaction(msg, null);
+        localLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        if (result.getLocalTransactionState() == LocalTransactionState.ROLLBACK_MESSAGE) {
+            sendStarts.remove(recordNo);
+        }
+    }
+
+    /**
+     * 经 TransferConsumeHandler 消费，入账成功后记录端到端耗时
+     */
+    private boolean consume(MessageExt msg) {
+        Exception failure = null;
+        try {
+            if (consumeHandler.process(msg)) {
+                consumed.increment();
+                Long start = sendStarts.remove(msg.getKeys());
+                if (start != null) {
+                    endToEndLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                }
+                return true;
+            }
+        } catch (Exception e) {
+            failure = e;
+        }
+        return consumeHandler.handleFailure(msg, failure);
+    }
+
+    private void report(InMemoryTransactionBroker broker, long sendElapsed, long totalElapsed) {
+        LatencyHistogram.Snapshot local = localLatency.snapshot();
+        LatencyHistogram.Snapshot endToEnd = endToEndLatency.snapshot();
+        REPORT.printf("local tx    : %.0f transfers/s elapsed=%.2fs p50=%dus p99=%dus max=%dus%n",
+                local.getCount() * 1e9 / sendElapsed, sendElapsed / 1e9,
+                local.percentile(0.5), local.percentile(0.99), local.getMax());
+        REPORT.printf("end to end  : %.0f transfers/s elapsed=%.2fs p50=%dus p99=%dus max=%dus%n",
+                endToEnd.getCount() * 1e9 / totalElapsed, totalElapsed / 1e9,
+                endToEnd.percentile(0.5), endToEnd.percentile(0.99), endToEnd.getMax());
+        REPORT.printf("broker      : half=%d committed=%d rolledBack=%d lostEnd=%d checkBacks=%d checkDiscarded=%d"
+                        + " deliveries=%d redeliveries=%d deadLettered=%d%n",
+                broker.getHalfSent(), broker.getCommitted(), broker.getRolledBack(), broker.getLostEndTransactions(),
+                broker.getCheckBacks(), broker.getCheckDiscarded(), broker.getDeliveries(), broker.getRedeliveries(),
+                broker.getDeadLettered());
+        REPORT.printf("consumer    : consumed=%d retried=%d quarantined=%d%n",
+                consumed.sum(), consumeHandler.getRetries(), consumeHandler.getQuarantined());
+    }
+
+    /**
+     * 校验不变量：全部消息已决议并消费、资金守恒、转账记录数与提交数一致、没有隔离与死信
+     *
+     * @return 违反的不变量
+     */
+    private List<String> verify(InMemoryTransactionBroker broker, boolean drained) {
+        long totalMoney = 0;
+        long records = 0;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            totalMoney += DataSourceContext.callOnShard(shard,
+                    () -> jdbcTemplate.queryForObject("select coalesce(sum(money), 0) from user", Long.class));
+            records += DataSourceContext.callOnShard(shard,
+                    () -> jdbcTemplate.queryForObject("select count(1) from transfer_record", Long.class));
+        }
+        long expectedMoney = ACCOUNTS * INITIAL_BALANCE;
+        List<String> violations = new ArrayList<>();
+        if (!drained) {
+            violations.add("超时未消费完 pendingHalf=" + broker.getPendingHalfMessages() + " inFlight=" + broker.getInFlight());
+        }
+        if (totalMoney != expectedMoney) {
+            violations.add("资金不守恒 total=" + totalMoney + " expected=" + expectedMoney);
+        }
+        if (records != broker.getCommitted()) {
+            violations.add("转账记录数 " + records + " 与提交的消息数 " + broker.getCommitted() + " 不一致");
+        }
+        if (consumed.sum() != broker.getCommitted()) {
+            violations.add("入账数 " + consumed.sum() + " 与提交的消息数 " + broker.getCommitted() + " 不一致");
+        }
+        if (consumeHandler.getQuarantined() > 0 || broker.getDeadLettered() > 0 || broker.getCheckDiscarded() > 0) {
+            violations.add("存在隔离/死信/丢弃的消息 quarantined=" + consumeHandler.getQuarantined() + " deadLettered=" + broker.getDeadLettered()
+                    + " checkDiscarded=" + broker.getCheckDiscarded());
+        }
+        REPORT.printf("invariants  : totalMoney=%d expected=%d records=%d -> %s%n",
+                totalMoney, expectedMoney, records, violations.isEmpty() ? "OK" : "FAILED");
+        for (String violation : violations) {
+            REPORT.println("  " + violation);
+        }
+        return violations;
+    }
+
+    private static Long accountKey(Message msg) {
+        String account = msg.getUserProperty(ProjectConstant.ACCOUNT_KEY_PROPERTY);
+        return account != null ? Long.valueOf(account) : null;
+    }
+}
@@ -0,0 +1,475 @@
+package com.conpany.project.benchmark;
+
+import com.company.project.MainApplication;
+import com.company.project.bean.BatchTransfer;
+import com.company.project.biz.ConsumeQuarantine;
+import com.company.project.biz.TransactionListenerImpl;
+import com.company.project.biz.TransactionProducer;
+import com.company.project.biz.TransferConsumeHandler;
+import com.company.project.biz.entity.TransferRecord;
+import com.company.project.biz.mapper.TransferRecordMapper;
+import com.company.project.biz.mapper.UserMapper;
+import com.company.project.biz.service.ConsumerService;
+import com.company.project.configurer.RocketMQConfigurer;
+import com.company.project.core.ProjectConstant;
+import com.company.project.core.SnowflakeIdGenerator;
+import com.company.project.datasource.DataSourceContext;
+import com.company.project.datasource.ShardRouter;
+import com.company.project.isolation.ConsumeEngine;
+import com.company.project.isolation.RetryBackoff;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.junit.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 转账长时间混沌测试：在 {@link TransferPipelineLoadTest} 的全链路上持续注入故障，结束后校验资金正确性
+ * 不需要 NameServer、broker 与 MySQL，使用 application-loadtest.yml 中两个 H2 内存分片与 {@link InMemoryTransactionBroker}
+ * 注入的故障：
+ * - 本地事务：doTransfer/doBatchTransfer 写入转账记录之后抛异常（事务回滚，消息回滚）
+ * - 提交确认丢失：本地事务的提交/回滚结果按比例丢弃，只能由 checkLocalTransaction 回查决定
+ * - 入账事务：写入入账流水之后、加钱时抛可重试异常（事务回滚后重试）
+ * - 消费确认丢失：入账事务已提交但处理结果按比例报告为失败，消息重试
+ * - 消费者崩溃：批次只处理了前一部分就"崩溃"，整批重新投递
+ * - 重复投递：已提交的消息按比例投递两次
+ * 按时长持续发起单笔与批量转账（含余额不足），排空后校验：
+ * 资金总额守恒；每个账户余额 = 初始余额 - 转出 + 转入（按各分片 transfer_record 计算）；
+ * 入账流水与转账记录的流水号集合一致（没有漏入账，也没有同一流水号入账两次）；没有隔离、死信与丢弃的消息
+ * main 运行时校验失败以非 0 状态退出；mvn test 运行 {@link #invariantsHoldUnderFaults()}，
+ * 只持续 soak.testDurationSeconds（默认 10 秒），校验失败时测试失败
+ * <p>
+ * 参数通过系统属性传入，消费策略等应用配置直接用 -Drocketmq.xxx 覆盖：
+ * -Dsoak.durationSeconds=60 -Dsoak.threads=32 -Dsoak.accounts=2000 -Dsoak.initialBalance=100000 -Dsoak.maxAmount=100
+ * -Dsoak.batchRatio=0.05 -Dsoak.maxLegs=8 -Dsoak.overdraftRatio=0.01 -Dsoak.queues=8 -Dsoak.consumeBatchSize=8
+ * -Dsoak.localFaultRatio=0.02 -Dsoak.lostEndRatio=0.05 -Dsoak.creditFaultRatio=0.02 -Dsoak.ackLossRatio=0.02
+ * -Dsoak.crashRatio=0.02 -Dsoak.duplicateRatio=0.05 -Dsoak.timeScale=100 -Dsoak.reportSeconds=10
+ * -Dsoak.drainTimeoutSeconds=300 -Dsoak.quiet=true -Drocketmq.consume-strategy=PER_KEY_SERIAL
+ */
+public class TransferSoakTest {
+
+    private static final long DURATION_SECONDS = Long.getLong("soak.durationSeconds", 60L);
+    private static final int THREADS = Integer.getInteger("soak.threads", 32);
+    private static final int ACCOUNTS = Integer.getInteger("soak.accounts", 2000);
+    private static final long INITIAL_BALANCE = Long.getLong("soak.initialBalance", 100_000L);
+    private static final int MAX_AMOUNT = Integer.getInteger("soak.maxAmount", 100);
+    private static final double BATCH_RATIO = Double.parseDouble(System.getProperty("soak.batchRatio", "0.05"));
+    private static final int MAX_LEGS = Integer.getInteger("soak.maxLegs", 8);
+    private static final double OVERDRAFT_RATIO = Double.parseDouble(System.getProperty("soak.overdraftRatio", "0.01"));
+    private static final int QUEUES = Integer.getInteger("soak.queues", 8);
+    private static final int CONSUME_BATCH_SIZE = Integer.getInteger("soak.consumeBatchSize", 8);
+    private static final double LOCAL_FAULT_RATIO = Double.parseDouble(System.getProperty("soak.localFaultRatio", "0.02"));
+    private static final double LOST_END_RATIO = Double.parseDouble(System.getProperty("soak.lostEndRatio", "0.05"));
+    private static final double CREDIT_FAULT_RATIO = Double.parseDouble(System.getProperty("soak.creditFaultRatio", "0.02"));
+    private static final double ACK_LOSS_RATIO = Double.parseDouble(System.getProperty("soak.ackLossRatio", "0.02"));
+    private static final double CRASH_RATIO = Double.parseDouble(System.getProperty("soak.crashRatio", "0.02"));
+    private static final double DUPLICATE_RATIO = Double.parseDouble(System.getProperty("soak.duplicateRatio", "0.05"));
+    private static final int TIME_SCALE = Integer.getInteger("soak.timeScale", 100);
+    private static final long REPORT_SECONDS = Long.getLong("soak.reportSeconds", 10L);
+    private static final long DRAIN_TIMEOUT_SECONDS = Long.getLong("soak.drainTimeoutSeconds", 300L);
+    private static final boolean QUIET = Boolean.parseBoolean(System.getProperty("soak.quiet", "true"));
+
+    private static final PrintStream REPORT = System.out;
+
+    private static final LongAdder LOCAL_FAULTS = new LongAdder();
+    private static final LongAdder CREDIT_FAULTS = new LongAdder();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder batchesSent = new LongAdder();
+    private final LongAdder consumed = new LongAdder();
+    private final LongAdder ackLosses = new LongAdder();
+
+    private long durationSeconds = DURATION_SECONDS;
+
+    private ConfigurableApplicationContext context;
+    private RocketMQConfigurer rocketMQConfigurer;
+    private TransferConsumeHandler consumeHandler;
+    private ShardRouter shardRouter;
+    private SnowflakeIdGenerator idGenerator;
+    private JdbcTemplate jdbcTemplate;
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new TransferSoakTest().run().isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * 短时注入全部故障后校验资金守恒、没有漏入账与重复入账
+     */
+    @Test
+    public void invariantsHoldUnderFaults() throws Exception {
+        durationSeconds = Long.getLong("soak.testDurationSeconds", 10L);
+        assertEquals(Collections.emptyList(), run());
+    }
+
+    /**
+     * @return 违反的不变量，为空表示校验通过
+     */
+    private List<String> run() throws Exception {
+        context = new SpringApplicationBuilder(MainApplication.class, FaultInjectionConfiguration.class)
+                .web(false).run("--spring.profiles.active=loadtest");
+        try {
+            rocketMQConfigurer = context.getBean(RocketMQConfigurer.class);
+            shardRouter = context.getBean(ShardRouter.class);
+            idGenerator = context.getBean(SnowflakeIdGenerator.class);
+            DataSource dataSource = context.getBean(DataSource.class);
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            initSchema(dataSource);
+
+            RocketMQConfigurer.RetryProperties retry = rocketMQConfigurer.getRetry();
+            // 进程内 broker 没有死信投递，重试耗尽的消息总是隔离
+            consumeHandler = new TransferConsumeHandler(context.getBean(ConsumerService.class),
+                    context.getBean(ConsumeQuarantine.class), retry, null);
+            ConsumeEngine engine = new ConsumeEngine(rocketMQConfigurer.getConsumeStrategy(),
+                    rocketMQConfigurer.getAccountSerialThreads(),
+                    new RetryBackoff(retry.getDelayLevels(), retry.getBaseSuspendMillis(), retry.getMaxSuspendMillis()),
+                    msg -> msg.getUserProperty(ProjectConstant.ACCOUNT_KEY_PROPERTY), this::consume);
+            InMemoryTransactionBroker broker = new InMemoryTransactionBroker(rocketMQConfigurer.getTransactionTopic(), QUEUES,
+                    context.getBean(TransactionListenerImpl.class), engine.createListener(),
+                    rocketMQConfigurer.isOrderedByAccount() ? TransferSoakTest::accountKey : null,
+                    rocketMQConfigurer.getConsumeThreadMin(), retry.getMaxRetries() + 1, LOST_END_RATIO, 100, 15, TIME_SCALE)
+                    .setConsumeBatchSize(CONSUME_BATCH_SIZE)
+                    .setCrashRatio(CRASH_RATIO)
+                    .setDuplicateRatio(DUPLICATE_RATIO);
+            broker.start();
+
+            REPORT.printf("duration=%ds threads=%d accounts=%d shards=%d queues=%d strategy=%s orderedByAccount=%s"
+                            + " consumeBatch=%d%n",
+                    durationSeconds, THREADS, ACCOUNTS, shardRouter.getShardCount(), QUEUES, engine.getStrategy(),
+                    rocketMQConfigurer.isOrderedByAccount(), CONSUME_BATCH_SIZE);
+            REPORT.printf("faults: localFault=%.1f%% lostEnd=%.1f%% creditFault=%.1f%% ackLoss=%.1f%% crash=%.1f%%"
+                            + " duplicate=%.1f%% overdraft=%.1f%% batch=%.1f%%%n",
+                    LOCAL_FAULT_RATIO * 100, LOST_END_RATIO * 100, CREDIT_FAULT_RATIO * 100, ACK_LOSS_RATIO * 100,
+                    CRASH_RATIO * 100, DUPLICATE_RATIO * 100, OVERDRAFT_RATIO * 100, BATCH_RATIO * 100);
+            PrintStream out = System.out;
+            PrintStream err = System.err;
+            if (QUIET) {
+                // 业务代码按条打印日志，注入的异常还会打印堆栈，测试时丢弃
+                PrintStream discard = new PrintStream(new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                    }
+                });
+                System.setOut(discard);
+                System.setErr(discard);
+            }
+            boolean drained;
+            try {
+                sendTransfers(broker);
+                long drainStart = System.nanoTime();
+                drained = broker.awaitIdle(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                REPORT.printf("drained in %.1fs%n", (System.nanoTime() - drainStart) / 1e9);
+            } finally {
+                System.setOut(out);
+                System.setErr(err);
+                broker.shutdown();
+                engine.shutdown();
+            }
+            progress(broker, "final");
+            return verify(broker, drained);
+        } finally {
+            context.close();
+        }
+    }
+
+    private void initSchema(DataSource dataSource) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("loadtest/schema.sql"));
+        List<List<Object[]>> users = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            users.add(new ArrayList<>());
+        }
+        for (long id = 1; id <= ACCOUNTS; id++) {
+            users.get(shardRouter.shardOf(id)).add(new Object[]{id, INITIAL_BALANCE});
+        }
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            List<Object[]> shardUsers = users.get(shard);
+            DataSourceContext.callOnShard(shard, () -> {
+                populator.execute(dataSource);
+                return jdbcTemplate.batchUpdate("insert into user (id, money) values (?, ?)", shardUsers);
+            });
+        }
+    }
+
+    /**
+     * 按时长持续发送，期间按 reportSeconds 输出进度
+     */
+    private void sendTransfers(InMemoryTransactionBroker broker) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    long from = random.nextInt(ACCOUNTS) + 1;
+                    if (random.nextDouble() < BATCH_RATIO) {
+                        sendBatch(broker, from, random.nextInt(MAX_LEGS - 1) + 2);
+                    } else {
+                        sendSingle(broker, from);
+                    }
+                }
+                return null;
+            }));
+        }
+        pool.shutdown();
+        long nextReport = System.nanoTime() + TimeUnit.SECONDS.toNanos(REPORT_SECONDS);
+        while (!pool.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+            if (System.nanoTime() >= nextReport) {
+                progress(broker, "running");
+                nextReport += TimeUnit.SECONDS.toNanos(REPORT_SECONDS);
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * 与 TransactionProducer#sendTransfer 构造相同的事务消息
+     */
+    private void sendSingle(InMemoryTransactionBroker broker, long from) {
+        TransferRecord transferRecord = TransactionProducer.newTransferRecord(idGenerator.nextRecordNo(), from,
+                otherAccount(from), amount(ThreadLocalRandom.current()));
+        broker.sendMessageInTransaction(TransactionProducer.buildTransferMessage(rocketMQConfigurer.getTransactionTopic(),
+                rocketMQConfigurer.getMessageTag(), transferRecord), null);
+        sent.increment();
+    }
+
+    /**
+     * 与 TransactionProducer#sendBatchTransfer 构造相同的批量事务消息，收款人可以重复
+     */
+    private void sendBatch(InMemoryTransactionBroker broker, long from, int legCount) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<TransferRecord> legs = new ArrayList<>(legCount);
+        for (int i = 0; i < legCount; i++) {
+            TransferRecord leg = new TransferRecord();
+            leg.setToUserId(otherAccount(from));
+            leg.setChangeMoney(amount(random));
+            legs.add(leg);
+        }
+        BatchTransfer batchTransfer = TransactionProducer.newBatchTransfer(idGenerator, from, legs);
+        broker.sendMessageInTransaction(TransactionProducer.buildBatchTransferMessage(rocketMQConfigurer.getTransactionTopic(),
+                rocketMQConfigurer.getMessageTag(), batchTransfer), null);
+        batchesSent.increment();
+    }
+
+    private static long otherAccount(long from) {
+        long to = ThreadLocalRandom.current().nextInt(ACCOUNTS - 1) + 1;
+        return to >= from ? to + 1 : to;
+    }
+
+    private static long amount(ThreadLocalRandom random) {
+        return random.nextDouble() < OVERDRAFT_RATIO ? Long.MAX_VALUE / 64 : random.nextInt(MAX_AMOUNT) + 1;
+    }
+
+    /**
+     * 经 TransferConsumeHandler 消费，与 Consumer 相同
+     * 入账成功后按比例报告为失败，模拟入账已提交但消费确认没有回到 broker
+     */
+    private boolean consume(MessageExt msg) {
+        Exception failure = null;
+        try {
+            if (consumeHandler.process(msg)) {
+                if (ThreadLocalRandom.current().nextDouble() < ACK_LOSS_RATIO) {
+                    ackLosses.increment();
+                    throw new TransientDataAccessResourceException("注入故障：入账已提交，消费确认丢失");
+                }
+                consumed.increment();
+                return true;
+            }
+        } catch (Exception e) {
+            failure = e;
+        }
+        return consumeHandler.handleFailure(msg, failure);
+    }
+
+    private void progress(InMemoryTransactionBroker broker, String phase) {
+        REPORT.printf("[%s] sent=%d batches=%d committed=%d rolledBack=%d consumed=%d inFlight=%d pendingHalf=%d"
+                        + " | localFaults=%d lostEnd=%d checkBacks=%d creditFaults=%d ackLosses=%d crashes=%d duplicates=%d"
+                        + " retried=%d redeliveries=%d quarantined=%d deadLettered=%d%n",
+                phase, sent.sum(), batchesSent.sum(), broker.getCommitted(), broker.getRolledBack(), consumed.sum(),
+                broker.getInFlight(), broker.getPendingHalfMessages(), LOCAL_FAULTS.sum(), broker.getLostEndTransactions(),
+                broker.getCheckBacks(), CREDIT_FAULTS.sum(), ackLosses.sum(), broker.getCrashes(), broker.getDuplicates(),
+                consumeHandler.getRetries(), broker.getRedeliveries(), consumeHandler.getQuarantined(), broker.getDeadLettered());
+    }
+
+    /**
+     * 校验不变量：全部消息已决议并消费、资金守恒、每个账户余额与转账记录一致、入账流水与转账记录一一对应、没有隔离与死信
+     *
+     * @return 违反的不变量
+     */
+    private List<String> verify(InMemoryTransactionBroker broker, boolean drained) {
+        Map<Long, Long> balances = new HashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Set<String> recordNos = new HashSet<>();
+        Set<String> creditedRecordNos = new HashSet<>();
+        long creditRows = 0;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            DataSourceContext.callOnShard(shard, () -> {
+                jdbcTemplate.query("select id, money from user", rs -> {
+                    balances.put(rs.getLong(1), rs.getLong(2));
+                });
+                jdbcTemplate.query("select from_user_id, to_user_id, change_money, record_no from transfer_record", rs -> {
+                    expected.merge(rs.getLong(1), -rs.getLong(3), Long::sum);
+                    expected.merge(rs.getLong(2), rs.getLong(3), Long::sum);
+                    recordNos.add(rs.getString(4));
+                });
+                jdbcTemplate.query("select record_no from transfer_credit", rs -> {
+                    creditedRecordNos.add(rs.getString(1));
+                });
+                return null;
+            });
+            creditRows += DataSourceContext.callOnShard(shard,
+                    () -> jdbcTemplate.queryForObject("select count(1) from transfer_credit", Long.class));
+        }
+
+        List<String> violations = new ArrayList<>();
+        if (!drained) {
+            violations.add("超时未消费完 pendingHalf=" + broker.getPendingHalfMessages() + " inFlight=" + broker.getInFlight());
+        }
+        long totalMoney = 0;
+        for (Long money : balances.values()) {
+            totalMoney += money;
+        }
+        long expectedMoney = ACCOUNTS * INITIAL_BALANCE;
+        if (totalMoney != expectedMoney) {
+            violations.add("资金不守恒 total=" + totalMoney + " expected=" + expectedMoney);
+        }
+        long mismatchedAccounts = 0;
+        for (long id = 1; id <= ACCOUNTS; id++) {
+            long expectedBalance = INITIAL_BALANCE + expected.getOrDefault(id, 0L);
+            Long balance = balances.get(id);
+            if (balance == null || balance != expectedBalance) {
+                if (mismatchedAccounts++ < 10) {
+                    violations.add("账户余额与转账记录不一致 userId=" + id + " money=" + balance + " expected=" + expectedBalance);
+                }
+            }
+        }
+        if (mismatchedAccounts > 10) {
+            violations.add("另有 " + (mismatchedAccounts - 10) + " 个账户余额不一致");
+        }
+        if (creditRows != creditedRecordNos.size()) {
+            violations.add("入账流水存在重复的流水号 rows=" + creditRows + " distinct=" + creditedRecordNos.size());
+        }
+        Set<String> missing = new HashSet<>(recordNos);
+        missing.removeAll(creditedRecordNos);
+        Set<String> orphan = new HashSet<>(creditedRecordNos);
+        orphan.removeAll(recordNos);
+        if (!missing.isEmpty()) {
+            violations.add("转账记录未入账 " + missing.size() + " 条，例如 " + missing.iterator().next());
+        }
+        if (!orphan.isEmpty()) {
+            violations.add("入账流水没有对应的转账记录 " + orphan.size() + " 条，例如 " + orphan.iterator().next());
+        }
+        if (consumeHandler.getQuarantined() > 0 || broker.getDeadLettered() > 0 || broker.getCheckDiscarded() > 0) {
+            violations.add("存在隔离/死信/丢弃的消息 quarantined=" + consumeHandler.getQuarantined() + " deadLettered=" + broker.getDeadLettered()
+                    + " checkDiscarded=" + broker.getCheckDiscarded());
+        }
+        REPORT.printf("invariants  : totalMoney=%d expected=%d records=%d credits=%d -> %s%n",
+                totalMoney, expectedMoney, recordNos.size(), creditRows, violations.isEmpty() ? "OK" : "FAILED");
+        for (String violation : violations) {
+            REPORT.println("  " + violation);
+        }
+        return violations;
+    }
+
+    private static Long accountKey(Message msg) {
+        String account = msg.getUserProperty(ProjectConstant.ACCOUNT_KEY_PROPERTY);
+        return account != null ? Long.valueOf(account) : null;
+    }
+
+    /**
+     * 在 mapper 上注入故障：真实调用成功之后按比例抛异常，所在事务随之回滚
+     * - TransferRecordMapper#insert/insertBatch：本地事务写入转账记录之后失败
+     * - UserMapper#addMoney/addMoneyBatch：入账事务写入入账流水、加钱之后失败，抛可重试异常
+     * 批量入账使用 batchSqlSessionTemplate 创建的 Mapper，同样在其 getMapper 返回的 Mapper 上注入
+     */
+    @Configuration
+    public static class FaultInjectionConfiguration {
+
+        @Bean
+        public static BeanPostProcessor faultInjectingMapperPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                    return bean;
+                }
+
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof TransferRecordMapper) {
+                        return inject(bean, LOCAL_FAULT_RATIO, LOCAL_FAULTS, "insert", "insertBatch");
+                    }
+                    if (bean instanceof UserMapper) {
+                        return inject(bean, CREDIT_FAULT_RATIO, CREDIT_FAULTS, "addMoney", "addMoneyBatch");
+                    }
+                    if ("batchSqlSessionTemplate".equals(beanName)) {
+                        SqlSessionTemplate template = (SqlSessionTemplate) bean;
+                        return new SqlSessionTemplate(template.getSqlSessionFactory(), template.getExecutorType()) {
+                            @Override
+                            public <T> T getMapper(Class<T> type) {
+                                T mapper = super.getMapper(type);
+                                return type == UserMapper.class
+                                        ? type.cast(inject(mapper, CREDIT_FAULT_RATIO, CREDIT_FAULTS, "addMoneyBatch"))
+                                        : mapper;
+                            }
+                        };
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        private static Object inject(Object target, double ratio, LongAdder counter, String... methods) {
+            Set<String> faulty = new HashSet<>(Arrays.asList(methods));
+            return Proxy.newProxyInstance(target.getClass().getClassLoader(),
+                    ClassUtils.getAllInterfaces(target), (proxy, method, args) -> {
+                        Object result;
+                        try {
+                            result = method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                        if (faulty.contains(method.getName()) && ThreadLocalRandom.current().nextDouble() < ratio) {
+                            counter.increment();
+                            throw new TransientDataAccessResourceException("注入故障：" + method.getName() + " 之后失败");
+                        }
+                        return result;
+                    });
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.conpany.project.benchmark;
+
+import com.company.project.core.LatencyHistogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 转账提交接口并发对比：同步 POST /transfer/sync 与异步 POST /transfer（DeferredResult）
+ * 每个并发级别下 N 个客户端线程各自保持一个长连接循环提交，统计完成吞吐、耗时分位与失败数
+ * 同步接口的并发上限是 Tomcat 工作线程数，超出的连接在 accept 队列中排队；异步接口等待本地事务结果时不占工作线程，
+ * 并发受提交池队列（rocketmq.submit.queue-capacity，默认按 threads × timeout-millis / expected-latency-millis 计算）与 maxConnections 限制，
+ * 排队超过 timeout-millis 的转账被取消并返回失败
+ * <p>
+ * 先启动应用（建议 -Dserver.tomcat.max-threads=50 放大差异，并以 -Dadmission.enabled=false 关闭按 IP 的准入限流），
+ * 账户 1~accounts 需预先存在且余额充足：
+ * -Dsubmit.baseUrl=http://localhost:8091 -Dsubmit.concurrency=50,200,1000 -Dsubmit.durationSeconds=30
+ * -Dsubmit.accounts=10000 -Dsubmit.endpoints=/transfer/sync,/transfer -Dsubmit.timeoutMillis=30000
+ */
+public class TransferSubmitLoadTest {
+
+    private static final String BASE_URL = System.getProperty("submit.baseUrl", "http://localhost:8091");
+    private static final String CONCURRENCY = System.getProperty("submit.concurrency", "50,200,1000");
+    private static final long DURATION_SECONDS = Long.getLong("submit.durationSeconds", 30L);
+    private static final int ACCOUNTS = Integer.getInteger("submit.accounts", 10_000);
+    private static final String ENDPOINTS = System.getProperty("submit.endpoints", "/transfer/sync,/transfer");
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("submit.timeoutMillis", 30_000);
+
+    public static void main(String[] args) throws Exception {
+        // 默认每个目标地址只保持 5 个空闲长连接，并发测试需要放大
+        System.setProperty("http.maxConnections", String.valueOf(maxConcurrency()));
+        for (String concurrency : CONCURRENCY.split(",")) {
+            for (String endpoint : ENDPOINTS.split(",")) {
+                run(endpoint.trim(), Integer.parseInt(concurrency.trim()));
+            }
+        }
+    }
+
+    private static void run(String endpoint, int concurrency) throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder succeeded = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder errors = new LongAdder();
+        URL url = new URL(BASE_URL + endpoint);
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(clients.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    long from = random.nextInt(ACCOUNTS) + 1;
+                    long to = random.nextInt(ACCOUNTS - 1) + 1;
+                    if (to >= from) {
+                        to++;
+                    }
+                    String body = "{\"fromUserId\":" + from + ",\"toUserId\":" + to + ",\"changeMoney\":1}";
+                    long begin = System.nanoTime();
+                    try {
+                        String response = post(url, body);
+                        latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin));
+                        if (response.contains("\"success\":true")) {
+                            succeeded.increment();
+                        } else {
+                            rejected.increment();
+                        }
+                    } catch (IOException e) {
+                        errors.increment();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        System.out.printf("%-14s concurrency=%-5d throughput=%.0f req/s p50=%dms p99=%dms max=%dms"
+                        + " succeeded=%d failed=%d errors=%d%n",
+                endpoint, concurrency, snapshot.getCount() * 1e9 / elapsed, snapshot.percentile(0.5) / 1000,
+                snapshot.percentile(0.99) / 1000, snapshot.getMax() / 1000, succeeded.sum(), rejected.sum(), errors.sum());
+    }
+
+    private static String post(URL url, String body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setConnectTimeout(TIMEOUT_MILLIS);
+        conn.setReadTimeout(TIMEOUT_MILLIS);
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "application/json;charset=UTF-8");
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = conn.getResponseCode();
+        try (InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+            // 读完响应体，连接才能回到长连接池复用
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1024];
+            int read;
+            while (in != null && (read = in.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+            if (status >= 400) {
+                throw new IOException("HTTP " + status);
+            }
+            return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static int maxConcurrency() {
+        int max = 1;
+        for (String concurrency : CONCURRENCY.split(",")) {
+            max = Math.max(max, Integer.parseInt(concurrency.trim()));
+        }
+        return max;
+    }
+}
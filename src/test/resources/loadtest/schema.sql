@@ -0,0 +1,73 @@
+-- 压测替身使用的 H2 表结构（MODE=MySQL），与 sql/table.sql 对应，去掉了分区与 MySQL 专有选项
+-- 每个分片执行一次，由 TransferPipelineLoadTest 在启动后初始化
+DROP TABLE IF EXISTS `user`;
+CREATE TABLE `user` (
+  `id` bigint NOT NULL,
+  `money` bigint NOT NULL,
+  PRIMARY KEY (`id`)
+);
+
+DROP TABLE IF EXISTS `transfer_record`;
+CREATE TABLE `transfer_record` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `from_user_id` bigint NOT NULL,
+  `change_money` bigint NOT NULL,
+  `transaction_id` varchar(128) NOT NULL,
+  `to_user_id` bigint NOT NULL,
+  `record_no` varchar(64) NOT NULL,
+  `create_time` timestamp NOT NULL,
+  PRIMARY KEY (`id`)
+);
+CREATE UNIQUE INDEX `idx_record_no` ON `transfer_record` (`record_no`, `create_time`);
+CREATE INDEX `idx_transaction_id` ON `transfer_record` (`transaction_id`, `create_time`);
+CREATE INDEX `idx_from_user_id` ON `transfer_record` (`from_user_id`, `id`);
+CREATE INDEX `idx_to_user_id` ON `transfer_record` (`to_user_id`, `id`);
+
+DROP TABLE IF EXISTS `transfer_outbox`;
+CREATE TABLE `transfer_outbox` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `message_key` varchar(64) NOT NULL,
+  `transfer_type` varchar(32) DEFAULT NULL,
+  `account_key` varchar(32) DEFAULT NULL,
+  `body` clob NOT NULL,
+  `status` tinyint NOT NULL DEFAULT 0,
+  `create_time` timestamp NOT NULL,
+  `shipped_time` timestamp DEFAULT NULL,
+  PRIMARY KEY (`id`)
+);
+
+DROP TABLE IF EXISTS `transfer_outbox_lease`;
+CREATE TABLE `transfer_outbox_lease` (
+  `id` int NOT NULL,
+  `owner` varchar(128) NOT NULL DEFAULT '',
+  `lease_until` timestamp NOT NULL,
+  PRIMARY KEY (`id`)
+);
+
+INSERT INTO `transfer_outbox_lease`(`id`, `owner`, `lease_until`) VALUES (1, '', '1970-01-01 00:00:01');
+
+DROP TABLE IF EXISTS `transfer_credit`;
+CREATE TABLE `transfer_credit` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `record_no` varchar(64) NOT NULL,
+  `to_user_id` bigint NOT NULL,
+  `change_money` bigint NOT NULL,
+  `create_time` timestamp NOT NULL,
+  PRIMARY KEY (`id`)
+);
+CREATE UNIQUE INDEX `idx_credit_record_no` ON `transfer_credit` (`record_no`);
+CREATE INDEX `idx_credit_to_user_id` ON `transfer_credit` (`to_user_id`, `id`);
+
+DROP TABLE IF EXISTS `transfer_quarantine`;
+CREATE TABLE `transfer_quarantine` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `msg_id` varchar(128) NOT NULL,
+  `topic` varchar(255) NOT NULL,
+  `msg_keys` varchar(255) DEFAULT NULL,
+  `transfer_type` varchar(32) DEFAULT NULL,
+  `reconsume_times` int NOT NULL,
+  `reason` varchar(512) NOT NULL,
+  `body` clob NOT NULL,
+  `create_time` timestamp NOT NULL,
+  PRIMARY KEY (`id`)
+);